@@ -0,0 +1,103 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.dom;
+
+import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.internal.services.MarkupWriterImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building and rendering a DOM shaped like a large Grid: a table of rows, each with several
+ * cells carrying a few attributes. Run with the GC profiler ({@code -prof gc}) to see allocation per operation; divide
+ * by {@link #ELEMENTS} for allocation per rendered element.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementBenchmark
+{
+    private static final int ROWS = 100;
+
+    private static final int COLUMNS = 8;
+
+    /**
+     * Elements per operation: a table, a tbody, and the rows and cells.
+     */
+    public static final int ELEMENTS = 2 + ROWS * (1 + COLUMNS);
+
+    private final String[] values = new String[ROWS * COLUMNS];
+
+    @Setup
+    public void setup()
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = i % 5 == 0 ? "Smith & Sons <" + i + ">" : "Value " + i;
+        }
+    }
+
+    private Document build()
+    {
+        MarkupWriter writer = new MarkupWriterImpl();
+
+        writer.element("table", "class", "t-data-grid", "id", "grid");
+        writer.element("tbody");
+
+        for (int row = 0; row < ROWS; row++)
+        {
+            writer.element("tr", "class", row % 2 == 0 ? "t-first even" : "odd");
+
+            for (int column = 0; column < COLUMNS; column++)
+            {
+                writer.element("td", "class", "column" + column, "title", "Column " + column);
+                writer.write(values[row * COLUMNS + column]);
+                writer.end();
+            }
+
+            writer.end();
+        }
+
+        writer.end();
+        writer.end();
+
+        return writer.getDocument();
+    }
+
+    @Benchmark
+    public Document buildDocument()
+    {
+        return build();
+    }
+
+    @Benchmark
+    public int buildAndRenderDocument()
+    {
+        StringWriter buffer = new StringWriter(64 * 1024);
+        PrintWriter writer = new PrintWriter(buffer);
+
+        build().toMarkup(writer);
+
+        writer.flush();
+
+        return buffer.getBuffer().length();
+    }
+}
@@ -0,0 +1,180 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.PropertyConduit;
+import org.apache.tapestry5.ioc.Registry;
+import org.apache.tapestry5.ioc.RegistryBuilder;
+import org.apache.tapestry5.ioc.services.PlasticProxyFactory;
+import org.apache.tapestry5.ioc.services.PropertyAccess;
+import org.apache.tapestry5.ioc.services.TypeCoercer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and updating typical property expressions through conduits created by
+ * {@link PropertyConduitSourceImpl}, including the coercions applied to method arguments and by
+ * {@link CoercingPropertyConduitWrapper}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyConduitBenchmark
+{
+    public static class Address
+    {
+        private String city = "Portland";
+
+        public String getCity()
+        {
+            return city;
+        }
+
+        public void setCity(String city)
+        {
+            this.city = city;
+        }
+    }
+
+    public static class User
+    {
+        private final Address address = new Address();
+
+        public Address getAddress()
+        {
+            return address;
+        }
+    }
+
+    public static class Root
+    {
+        private final User user = new User();
+
+        private final List<String> list = Arrays.asList("alpha", "beta");
+
+        private boolean flag;
+
+        private int count;
+
+        public User getUser()
+        {
+            return user;
+        }
+
+        public List<String> getList()
+        {
+            return list;
+        }
+
+        public boolean isFlag()
+        {
+            return flag;
+        }
+
+        public void setFlag(boolean flag)
+        {
+            this.flag = flag;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public void setCount(int count)
+        {
+            this.count = count;
+        }
+
+        public String label(String prefix, int index)
+        {
+            return prefix;
+        }
+    }
+
+    private Registry registry;
+
+    private final Root root = new Root();
+
+    private PropertyConduit city, listElement, notFlag, label, count;
+
+    @Setup
+    public void setup()
+    {
+        registry = new RegistryBuilder().build();
+
+        PropertyConduitSourceImpl source = new PropertyConduitSourceImpl(registry.getService(PropertyAccess.class),
+                registry.getService(PlasticProxyFactory.class), registry.getService(TypeCoercer.class),
+                new StringInternerImpl());
+
+        city = source.create(Root.class, "user.address.city");
+
+        // Property expressions have no index operator; this is the equivalent of "list[0]".
+
+        listElement = source.create(Root.class, "list.get(0)");
+        notFlag = source.create(Root.class, "!flag");
+        label = source.create(Root.class, "label(count, 1)");
+        count = new CoercingPropertyConduitWrapper(source.create(Root.class, "count"),
+                registry.getService(TypeCoercer.class));
+    }
+
+    @TearDown
+    public void shutdown()
+    {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public Object getNestedProperty()
+    {
+        return city.get(root);
+    }
+
+    @Benchmark
+    public void setNestedProperty()
+    {
+        city.set(root, "Boston");
+    }
+
+    @Benchmark
+    public Object getListElement()
+    {
+        return listElement.get(root);
+    }
+
+    @Benchmark
+    public Object getInvertedFlag()
+    {
+        return notFlag.get(root);
+    }
+
+    @Benchmark
+    public Object invokeWithCoercedArguments()
+    {
+        return label.get(root);
+    }
+
+    @Benchmark
+    public void setCoercedProperty()
+    {
+        count.set(root, 97);
+    }
+}
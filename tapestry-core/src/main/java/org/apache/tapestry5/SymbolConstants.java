@@ -1,4 +1,4 @@
-// Copyright 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -351,8 +351,196 @@ public class SymbolConstants
      */
     public static final String ASSET_URL_FULL_QUALIFIED = "tapestry.asset-url-fully-qualified";
 
+    /**
+     * If true, then asset URLs include a digest of the asset's content in place of the {@linkplain
+     * #APPLICATION_VERSION application version}; a combined JavaScript stack uses a digest of the digests of its
+     * libraries. An asset's URL then only changes when its content changes, so unchanged assets remain in client (and
+     * proxy) caches across new deployments of the application. Digests are computed from the original content (before
+     * any transformation or minification).
+     * <p/>
+     * The default is false.
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_URL_CONTENT_DIGEST = "tapestry.asset-url-content-digest";
+
     /**
      * Prefix to be used for all asset paths
      */
     public static final String ASSET_PATH_PREFIX = "tapestry.asset-path-prefix";
+
+    /**
+     * The maximum number of page instances retained by the page cache. A page instance exists for each combination of
+     * page name and {@link org.apache.tapestry5.services.pageload.ComponentResourceSelector} (typically, the locale).
+     * When the limit is exceeded, the least recently used page instance is discarded, and will be re-assembled
+     * if it is needed again. A value of zero (or less) removes the limit entirely.
+     * <p/>
+     * The default is 1000.
+     *
+     * @since 5.4
+     */
+    public static final String PAGE_CACHE_MAX_SIZE = "tapestry.page-cache-max-size";
+
+    /**
+     * The maximum time a request will wait for a page that is being loaded by another request. Only one request loads
+     * any particular page; other requests for the same page wait for that load to complete, and receive the same page
+     * (or the same exception, if the load fails). A request that waits longer than this will fail.
+     * <p/>
+     * The default is "2 m" (two minutes).
+     *
+     * @since 5.4
+     */
+    public static final String PAGE_LOAD_TIMEOUT = "tapestry.page-load-timeout";
+
+    /**
+     * A comma-separated list of page names to load at application startup, before the first request is processed.
+     * Each entry may be a glob pattern ("*" matches any sequence of characters, "?" matches a single
+     * character), matched case-insensitively against the names of all pages; for example, "Index,admin/*", or just "*"
+     * to load every page. Pages are loaded in parallel using the {@link org.apache.tapestry5.ioc.services.ParallelExecutor}.
+     * <p/>
+     * The default is the empty string, which disables page preloading.
+     *
+     * @see org.apache.tapestry5.services.pageload.PagePreloader
+     * @since 5.4
+     */
+    public static final String PRELOAD_PAGES = "tapestry.preload-pages";
+
+    /**
+     * A comma-separated list of locales for which the {@linkplain #PRELOAD_PAGES preloaded pages} are loaded. The
+     * default is the empty string, meaning the first of the {@linkplain #SUPPORTED_LOCALES supported locales}.
+     *
+     * @since 5.4
+     */
+    public static final String PRELOAD_LOCALES = "tapestry.preload-locales";
+
+    /**
+     * A directory in which parsed component templates are stored, so that templates that have not changed need not be
+     * parsed again when the application is restarted. Stored templates are identified by a checksum of the template's
+     * content; a template that has been changed is parsed as normal (and the result stored). The directory is created
+     * if it does not exist, and may be shared by several instances of the same application.
+     * <p/>
+     * The default is the empty string, which disables the template store.
+     *
+     * @see org.apache.tapestry5.internal.services.TemplateStore
+     * @since 5.4
+     */
+    public static final String TEMPLATE_CACHE_DIR = "tapestry.template-cache-dir";
+
+    /**
+     * If true, then during a page render, content inside the &lt;body&gt; element is converted to markup text as soon
+     * as rendering moves past it, rather than being kept as DOM nodes until the entire page has rendered. This reduces
+     * the memory used to render large pages. Flattened content can no longer be found or modified through the DOM, so
+     * this should only be enabled if no components modify elements rendered before other, later, elements (the
+     * &lt;head&gt; and &lt;body&gt; elements themselves, and content inside a Form, are never flattened). Partial
+     * (Ajax) renders are not affected.
+     * <p/>
+     * The default is false.
+     *
+     * @see org.apache.tapestry5.dom.Element#flattenChildren(org.apache.tapestry5.dom.Node, org.apache.tapestry5.dom.Node)
+     * @since 5.4
+     */
+    public static final String FLATTEN_RENDERED_MARKUP = "tapestry.flatten-rendered-markup";
+
+    /**
+     * If true, then when a page is loaded, complete elements in component templates that contain no components,
+     * expansions or namespaces are combined into blocks of pre-rendered markup. Such blocks are written into the
+     * rendered document as raw markup, so the elements inside them can not be found or modified through the DOM (for
+     * example, by a {@link org.apache.tapestry5.services.MarkupRendererFilter}, or by tests using
+     * {@link org.apache.tapestry5.test.PageTester}).
+     * <p/>
+     * The default is false.
+     *
+     * @since 5.4
+     */
+    public static final String COMBINE_STATIC_MARKUP = "tapestry.combine-static-markup";
+
+    /**
+     * If true, then the JavaScript libraries and stylesheets linked by a page are remembered, and sent with later
+     * renders of the same page as {@code Link: <url>; rel=preload} response headers, added before the page renders.
+     * Browsers, and front-end servers that push preloaded assets over HTTP/2, can then start fetching the assets
+     * without waiting to parse the page's &lt;head&gt;. The remembered assets are discarded when component classes or
+     * resources change.
+     * <p/>
+     * The default is false.
+     *
+     * @since 5.4
+     */
+    public static final String PRELOAD_HINTS = "tapestry.preload-hints";
+
+    /**
+     * The directory containing an asset bundle: copies of the application's assets and combined JavaScript stacks
+     * that were minimized and compressed ahead of time (by
+     * {@code org.apache.tapestry5.internal.services.assets.AssetBundleGenerator}), along with a manifest. Assets found
+     * in the bundle are streamed from it directly, with no minimization, compression or aggregation at runtime. The
+     * bundle's index of resource digests is used when building asset URLs, rather than reading each resource. Changes
+     * to the original files are not noticed, so a bundle should only be used in production.
+     * <p/>
+     * The default is the empty string, meaning no asset bundle is used.
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_BUNDLE_DIRECTORY = "tapestry.asset-bundle-directory";
+
+    /**
+     * A directory into which the content of large, processed (minimized, compressed or combined), assets is written,
+     * so that the cached content is memory-mapped from those files rather than held in the Java heap. Files of an
+     * {@linkplain #ASSET_BUNDLE_DIRECTORY asset bundle} above the same {@linkplain #ASSET_SPOOL_THRESHOLD size} are
+     * memory-mapped as well.
+     * <p/>
+     * Tapestry deletes the files it has spooled here (and any left by an earlier run) as needed, so the directory
+     * should not be shared with other content.
+     * <p/>
+     * The default is the empty string, meaning assets are cached on the heap.
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_SPOOL_DIRECTORY = "tapestry.asset-spool-directory";
+
+    /**
+     * The minimum size, in bytes, of an asset's content for it to be {@linkplain #ASSET_SPOOL_DIRECTORY spooled}.
+     * The default is 65536 (64 KB).
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_SPOOL_THRESHOLD = "tapestry.asset-spool-threshold";
+
+    /**
+     * The maximum combined size, in bytes, of the cached content of assets (and of combined JavaScript stacks), both
+     * compressed and uncompressed. When the limit is reached, the least recently used content is discarded.
+     * <p/>
+     * The default is 33554432 (32 MB).
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_CACHE_SIZE = "tapestry.asset-cache-size";
+
+    /**
+     * If true, then the cached content of assets that are not {@linkplain #ASSET_SPOOL_THRESHOLD spooled} is stored in
+     * direct buffers, outside of the Java heap. The default is false.
+     *
+     * @since 5.4
+     */
+    public static final String ASSET_CACHE_OFF_HEAP = "tapestry.asset-cache-off-heap";
+
+    /**
+     * If true, then compressed assets (and combined JavaScript stacks) are compressed a second time, at the highest
+     * compression level, in a background thread; the smaller result then replaces the cached content that was
+     * compressed (quickly) at the default level for the first request.
+     * <p/>
+     * The default is true in production mode, false otherwise.
+     *
+     * @since 5.4
+     */
+    public static final String GZIP_BEST_COMPRESSION = "tapestry.gzip-best-compression";
+
+    /**
+     * If true (and {@link #MINIFICATION_ENABLED minification is enabled}), then assets (and combined JavaScript stacks)
+     * are minimized in a background thread; until the minimized content is available, requests for the asset are
+     * served the (compressed) unminimized content, which is not cached.
+     * <p/>
+     * The default is false: the first request for an asset waits for the asset to be minimized.
+     *
+     * @since 5.4
+     */
+    public static final String ASYNC_MINIFICATION = "tapestry.async-minification";
 }
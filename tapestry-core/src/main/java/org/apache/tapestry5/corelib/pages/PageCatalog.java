@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import org.apache.tapestry5.corelib.components.Zone;
 import org.apache.tapestry5.func.*;
 import org.apache.tapestry5.internal.PageCatalogTotals;
 import org.apache.tapestry5.internal.services.ComponentInstantiatorSource;
+import org.apache.tapestry5.internal.services.PageCache;
 import org.apache.tapestry5.internal.services.PageSource;
 import org.apache.tapestry5.internal.structure.Page;
 import org.apache.tapestry5.ioc.Messages;
@@ -59,6 +60,9 @@ public class PageCatalog
     @Inject
     private PageSource pageSource;
 
+    @Inject
+    private PageCache pageCache;
+
     @Inject
     private ComponentResourceSelector selector;
 
@@ -143,6 +147,12 @@ public class PageCatalog
         }).toSet();
 
         totals.selectors = InternalUtils.joinSorted(selectorIds);
+
+        PageCache.Stats stats = pageCache.getStats();
+
+        totals.cacheHits = stats.hits;
+        totals.cacheMisses = stats.misses;
+        totals.cacheEvictions = stats.evictions;
     }
 
     public List<String> getPageNames()
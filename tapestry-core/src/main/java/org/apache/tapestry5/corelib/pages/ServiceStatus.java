@@ -1,4 +1,4 @@
-// Copyright 2007, 2008 The Apache Software Foundation
+// Copyright 2007, 2008, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -68,6 +68,10 @@ public class ServiceStatus
 
         model.addEmpty("serviceInterface");
 
+        // Realization profiling is better viewed in aggregate, via the scoreboard's profile.
+
+        model.exclude("realizationTime", "nestedRealizationTime", "realizationAllocatedBytes");
+
         // There's no line number information for interfaces, so we'll reorder the
         // proprieties manually.
 
@@ -1,4 +1,4 @@
-// Copyright 2009 The Apache Software Foundation
+// Copyright 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,35 +14,28 @@
 
 package org.apache.tapestry5.dom;
 
-import org.apache.tapestry5.internal.TapestryInternalUtils;
-
-import java.util.Map;
-
 /**
  * An attribute within an {@link org.apache.tapestry5.dom.Element}. Each attribute has a namespace URI, a local name
  * within the namespace, and a value.
+ * <p/>
+ * Elements store their attributes compactly, and create Attribute instances only as needed, by
+ * {@link Element#getAttributes()}; an Attribute is a snapshot and does not reflect later changes to the element.
  *
  * @since 5.1.0.2
  */
 public class Attribute
 {
-    private final Element element;
-
     private final String namespace;
 
     private final String name;
 
-    String value;
+    private final String value;
 
-    Attribute nextAttribute;
-
-    Attribute(Element element, String namespace, String name, String value, Attribute nextAttribute)
+    Attribute(String namespace, String name, String value)
     {
-        this.element = element;
         this.namespace = namespace;
         this.name = name;
         this.value = value;
-        this.nextAttribute = nextAttribute;
     }
 
     public String getName()
@@ -59,20 +52,4 @@ public class Attribute
     {
         return value;
     }
-
-    void render(MarkupModel model, StringBuilder builder, Map<String, String> namespaceURIToPrefix)
-    {
-        builder.append(" ");
-        builder.append(element.toPrefixedName(namespaceURIToPrefix, namespace, name));
-        builder.append("=");
-        builder.append(model.getAttributeQuote());
-        model.encodeQuoted(value, builder);
-        builder.append(model.getAttributeQuote());
-    }
-
-    boolean matches(String namespace, String name)
-    {
-        return TapestryInternalUtils.isEqual(this.namespace, namespace) &&
-                this.name.equalsIgnoreCase(name);
-    }
 }
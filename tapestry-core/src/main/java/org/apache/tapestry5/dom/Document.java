@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -50,6 +50,13 @@ public final class Document extends Node
      */
     private List<Node> preamble;
 
+    /**
+     * Reused by each element, as it renders, to assemble its start tag.
+     */
+    private final StringBuilder markupBuffer = new StringBuilder(200);
+
+    private char[] markupChars = new char[200];
+
     public Document(MarkupModel model)
     {
         this(model, null);
@@ -158,12 +165,45 @@ public final class Document extends Node
         if (rootElement == null)
             return;
 
-        Map<String, String> initialNamespaceMap = CollectionFactory.newMap();
+        rootElement.toMarkup(document, writer, createInitialNamespaceMap());
+    }
+
+    /**
+     * Returns the namespace mappings in effect for the root element.
+     */
+    static Map<String, String> createInitialNamespaceMap()
+    {
+        Map<String, String> result = CollectionFactory.newMap();
+
+        result.put("xml", XML_NAMESPACE_URI);
+        result.put("xmlns", XMLNS_NAMESPACE_URI);
+
+        return result;
+    }
+
+    /**
+     * Returns the (empty) buffer into which an element assembles its markup; the buffer must be emptied, via
+     * {@link #writeMarkupBuffer(java.io.PrintWriter)}, before rendering any other node.
+     */
+    StringBuilder getMarkupBuffer()
+    {
+        return markupBuffer;
+    }
+
+    /**
+     * Writes the content of the markup buffer to the writer, and empties the buffer.
+     */
+    void writeMarkupBuffer(PrintWriter writer)
+    {
+        int length = markupBuffer.length();
+
+        if (length > markupChars.length)
+            markupChars = new char[Math.max(length, 2 * markupChars.length)];
 
-        initialNamespaceMap.put("xml", "http://www.w3.org/XML/1998/namespace");
-        initialNamespaceMap.put("xmlns", "http://www.w3.org/2000/xmlns/");
+        markupBuffer.getChars(0, length, markupChars, 0);
+        markupBuffer.setLength(0);
 
-        rootElement.toMarkup(document, writer, initialNamespaceMap);
+        writer.write(markupChars, 0, length);
     }
 
     public Element getRootElement()
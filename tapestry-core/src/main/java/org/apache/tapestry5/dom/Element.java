@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -39,7 +39,16 @@ public final class Element extends Node
 
     private Node lastChild;
 
-    private Attribute firstAttribute;
+    /**
+     * Attributes, stored as consecutive namespace, name and value triples (rather than as individual objects), in the
+     * order they were added. Null until the first attribute is added.
+     */
+    private String[] attributes;
+
+    /**
+     * The number of attributes (not the number of array slots in use).
+     */
+    private int attributeCount;
 
     private final Document document;
 
@@ -118,42 +127,60 @@ public final class Element extends Node
         if (!force && value == null)
             return;
 
-        Attribute prior = null;
-        Attribute cursor = firstAttribute;
-
-        while (cursor != null)
+        for (int i = 0; i < attributeCount; i++)
         {
-            if (cursor.matches(namespace, name))
+            int base = 3 * i;
+
+            if (TapestryInternalUtils.isEqual(attributes[base], namespace)
+                    && attributes[base + 1].equalsIgnoreCase(name))
             {
                 if (!force)
                     return;
 
                 if (value != null)
                 {
-                    cursor.value = value;
+                    attributes[base + 2] = value;
                     return;
                 }
 
-                // Remove this Attribute node from the linked list
+                // Remove the attribute, shifting any later attributes down.
 
-                if (prior == null)
-                    firstAttribute = cursor.nextAttribute;
-                else
-                    prior.nextAttribute = cursor.nextAttribute;
+                System.arraycopy(attributes, base + 3, attributes, base, 3 * (attributeCount - i - 1));
+
+                attributeCount--;
+
+                Arrays.fill(attributes, 3 * attributeCount, 3 * attributeCount + 3, null);
 
                 return;
             }
-
-            prior = cursor;
-            cursor = cursor.nextAttribute;
         }
 
-        // Don't add a Attribute if the value is null.
+        // Don't add an attribute if the value is null.
 
         if (value == null)
             return;
 
-        firstAttribute = new Attribute(this, namespace, name, value, firstAttribute);
+        int base = 3 * attributeCount;
+
+        if (attributes == null)
+        {
+            // Most elements have just a few attributes.
+
+            attributes = new String[6];
+        } else if (base == attributes.length)
+        {
+            String[] expanded = new String[2 * attributes.length];
+
+            System.arraycopy(attributes, 0, expanded, 0, base);
+
+            attributes = expanded;
+        }
+
+        attributes[base] = namespace;
+        attributes[base + 1] = name;
+        attributes[base + 2] = value;
+
+        attributeCount++;
     }
 
     /**
@@ -336,18 +363,27 @@ public final class Element extends Node
 
         MarkupModel markupModel = document.getMarkupModel();
 
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = document.getMarkupBuffer();
 
         String prefixedElementName = toPrefixedName(localNamespacePrefixToURI, namespace, name);
 
-        builder.append("<").append(prefixedElementName);
+        builder.append('<').append(prefixedElementName);
 
         // Output order used to be alpha sorted, but now it tends to be the inverse
         // of the order in which attributes were added.
 
-        for (Attribute attr = firstAttribute; attr != null; attr = attr.nextAttribute)
+        char quote = markupModel.getAttributeQuote();
+
+        for (int i = attributeCount - 1; i >= 0; i--)
         {
-            attr.render(markupModel, builder, localNamespacePrefixToURI);
+            int base = 3 * i;
+
+            builder.append(' ');
+            builder.append(toPrefixedName(localNamespacePrefixToURI, attributes[base], attributes[base + 1]));
+            builder.append('=');
+            builder.append(quote);
+            markupModel.encodeQuoted(attributes[base + 2], builder);
+            builder.append(quote);
         }
 
         // Next, emit namespace declarations for each namespace.
@@ -384,7 +420,7 @@ public final class Element extends Node
 
         builder.append(close);
 
-        writer.print(builder.toString());
+        document.writeMarkupBuffer(writer);
 
         if (hasChildren)
             writeChildMarkup(document, writer, localNamespacePrefixToURI);
@@ -574,10 +610,10 @@ public final class Element extends Node
 
     public String getAttribute(String attributeName)
     {
-        for (Attribute attr = firstAttribute; attr != null; attr = attr.nextAttribute)
+        for (int i = 0; i < attributeCount; i++)
         {
-            if (attr.getName().equalsIgnoreCase(attributeName))
-                return attr.value;
+            if (attributes[3 * i + 1].equalsIgnoreCase(attributeName))
+                return attributes[3 * i + 2];
         }
 
         return null;
@@ -689,6 +725,11 @@ public final class Element extends Node
      */
     private Map<String, String> createNamespaceURIToPrefix(Map<String, String> containerNamespaceURIToPrefix)
     {
+        // The most common case: no namespaces defined, and nothing in a namespace.
+
+        if (namespaceToPrefix == null && InternalUtils.isBlank(namespace) && !hasNamespacedAttributes())
+            return containerNamespaceURIToPrefix;
+
         MapHolder holder = new MapHolder(containerNamespaceURIToPrefix);
 
         holder.putAll(namespaceToPrefix);
@@ -711,12 +752,23 @@ public final class Element extends Node
 
         // And for any attributes that have a namespace.
 
-        for (Attribute attr = firstAttribute; attr != null; attr = attr.nextAttribute)
-            addMappingIfNeeded(holder, attr.getNamespace());
+        for (int i = 0; i < attributeCount; i++)
+            addMappingIfNeeded(holder, attributes[3 * i]);
 
         return holder.getResult();
     }
 
+    private boolean hasNamespacedAttributes()
+    {
+        for (int i = 0; i < attributeCount; i++)
+        {
+            if (InternalUtils.isNonBlank(attributes[3 * i]))
+                return true;
+        }
+
+        return false;
+    }
+
     private void addMappingIfNeeded(MapHolder holder, String namespace)
     {
         if (InternalUtils.isBlank(namespace))
@@ -916,6 +968,68 @@ public final class Element extends Node
         return collector.getPrintOut();
     }
 
+    /**
+     * Replaces a run of this element's children with a single {@link Raw} node containing the equivalent markup. This
+     * allows content that is known to be complete to be converted to markup while the rest of the document is still
+     * being rendered, so that the nodes (and attributes) that represent it can be discarded early. The replaced nodes
+     * are detached from the document, and must not be used afterwards.
+     *
+     * @param after the child after which replacement starts, or null to start with the first child
+     * @param stop  the child at which replacement stops (this child is not replaced), or null to replace through the
+     *              last child
+     * @return the new Raw node, or after if there were no children to replace
+     * @since 5.4
+     */
+    public Node flattenChildren(Node after, Node stop)
+    {
+        assert after == null || after.container == this;
+
+        Node first = after == null ? firstChild : after.nextSibling;
+
+        if (first == null || first == stop)
+            return after;
+
+        Document document = getDocument();
+
+        // Replicate the namespace mappings that will be in effect when the document is rendered.
+
+        List<Element> ancestors = CollectionFactory.newList();
+
+        for (Element cursor = this; cursor != null; cursor = cursor.container)
+        {
+            ancestors.add(cursor);
+        }
+
+        Map<String, String> namespaceURIToPrefix = Document.createInitialNamespaceMap();
+
+        for (int i = ancestors.size() - 1; i >= 0; i--)
+        {
+            namespaceURIToPrefix = ancestors.get(i).createNamespaceURIToPrefix(namespaceURIToPrefix);
+        }
+
+        PrintOutCollector collector = new PrintOutCollector();
+        PrintWriter writer = collector.getPrintWriter();
+
+        for (Node cursor = first; cursor != stop; cursor = cursor.nextSibling)
+        {
+            cursor.toMarkup(document, writer, namespaceURIToPrefix);
+        }
+
+        Raw raw = new Raw(this, collector.getPrintOut());
+
+        raw.nextSibling = stop;
+
+        if (after == null)
+            firstChild = raw;
+        else
+            after.nextSibling = raw;
+
+        if (stop == null)
+            lastChild = raw;
+
+        return raw;
+    }
+
     /**
      * Returns an unmodifiable list of children for this element. Only {@link org.apache.tapestry5.dom.Element}s will
      * have children. Also, note that unlike W3C DOM, attributes are not represented as
@@ -1025,9 +1139,9 @@ public final class Element extends Node
     {
         Collection<Attribute> result = CollectionFactory.newList();
 
-        for (Attribute a = firstAttribute; a != null; a = a.nextAttribute)
+        for (int i = attributeCount - 1; i >= 0; i--)
         {
-            result.add(a);
+            result.add(new Attribute(attributes[3 * i], attributes[3 * i + 1], attributes[3 * i + 2]));
         }
 
         return result;
@@ -1,4 +1,4 @@
-// Copyright 2006, 2008, 2009 The Apache Software Foundation
+// Copyright 2006, 2008, 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -22,19 +22,33 @@ import java.util.Map;
  */
 public final class Text extends Node
 {
-    private final StringBuilder buffer;
+    /**
+     * The text, when it was provided in a single write (the common case).
+     */
+    private String text;
+
+    /**
+     * Created (replacing text) only when text is written to the node more than once.
+     */
+    private StringBuilder buffer;
 
     Text(Element container, String text)
     {
         super(container);
 
-        buffer = new StringBuilder(text.length());
+        this.text = text;
+    }
 
-        write(text);
+    private String getText()
+    {
+        return buffer == null ? text : buffer.toString();
     }
 
     boolean isEmpty()
     {
+        if (buffer == null)
+            return text.length() == 0 || text.trim().length() == 0;
+
         return buffer.length() == 0 || buffer.toString().trim().length() == 0;
     }
 
@@ -43,6 +57,23 @@ public final class Text extends Node
      */
     public void write(String text)
     {
+        if (buffer == null)
+        {
+            if (this.text.length() == 0)
+            {
+                this.text = text;
+                return;
+            }
+
+            if (text.length() == 0)
+                return;
+
+            buffer = new StringBuilder(this.text.length() + text.length());
+            buffer.append(this.text);
+
+            this.text = null;
+        }
+
         buffer.append(text);
     }
 
@@ -54,7 +85,7 @@ public final class Text extends Node
     @Override
     void toMarkup(Document document, PrintWriter writer, Map<String, String> namespaceURIToPrefix)
     {
-        String encoded = document.getMarkupModel().encode(buffer.toString());
+        String encoded = document.getMarkupModel().encode(getText());
 
         writer.print(encoded);
     }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,7 +21,7 @@ import java.io.IOException;
  * the operation may throw an {@link IOException}.
  * 
  * @since 5.3
- * @see TapestryInternalUtils#performIO(org.apache.tapestry5.ioc.OperationTracker, String, IOOperation)
+ * @see TapestryInternalUtils#performIO(org.apache.tapestry5.ioc.OperationTracker, IOOperation, String, Object[])
  */
 public interface IOOperation
 {
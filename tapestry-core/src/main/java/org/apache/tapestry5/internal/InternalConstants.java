@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -156,4 +156,14 @@ public final class InternalConstants
      * @see org.apache.tapestry5.internal.services.PageRenderRequestHandlerImpl
      */
     public static final String BYPASS_ACTIVATION = "tapestry.bypass-page-activation";
+
+    /**
+     * Request attribute key; if non-null, an asset is streamed without a far-future Expires header. Set when the
+     * content digest in the asset's URL can not be verified.
+     *
+     * @since 5.4
+     * @see org.apache.tapestry5.internal.services.AssetDispatcher
+     * @see org.apache.tapestry5.internal.services.ResourceStreamerImpl
+     */
+    public static final String SUPPRESS_FAR_FUTURE_EXPIRES = "tapestry.suppress-far-future-expires";
 }
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -232,13 +232,21 @@ public class TapestryAppInitializer
                 unrealized++;
         }
 
-        String formatString = "%" + longest + "s: %s\n";
+        String formatString = "%" + longest + "s: %s";
 
         // A second pass to output all the services
 
         for (ServiceActivity activity : serviceActivity)
         {
             f.format(formatString, activity.getServiceId(), activity.getStatus().name());
+
+            // Only non-zero when service realization profiling is enabled.
+
+            if (activity.getRealizationTime() > 0)
+                f.format(" %,.1f ms (%,.1f ms nested)", activity.getRealizationTime() / 1000000.,
+                        activity.getNestedRealizationTime() / 1000000.);
+
+            buffer.append('\n');
         }
 
         f.format("\n%4.2f%% unrealized services (%d/%d)\n", 100. * unrealized / serviceActivity.size(), unrealized,
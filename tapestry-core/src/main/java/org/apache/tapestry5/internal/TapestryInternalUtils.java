@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -566,14 +566,17 @@ public class TapestryInternalUtils
     }
 
     /**
-     * Performs an operation and re-throws the IOException that may occur.
+     * Performs an operation and re-throws the IOException that may occur. The operation's description is only
+     * formatted if the operation fails (or operations are being logged).
+     *
+     * @since 5.4
      */
-    public static void performIO(OperationTracker tracker, String description, final IOOperation operation)
-            throws IOException
+    public static void performIO(OperationTracker tracker, final IOOperation operation, String format,
+                                 Object... arguments) throws IOException
     {
         final Holder<IOException> exceptionHolder = Holder.create();
 
-        tracker.run(description, new Runnable()
+        tracker.run(new Runnable()
         {
             public void run()
             {
@@ -585,7 +588,7 @@ public class TapestryInternalUtils
                     exceptionHolder.put(ex);
                 }
             }
-        });
+        }, format, arguments);
 
         if (exceptionHolder.hasValue())
             throw exceptionHolder.get();
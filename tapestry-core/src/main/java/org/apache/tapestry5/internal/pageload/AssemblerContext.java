@@ -1,4 +1,4 @@
-// Copyright 2009 The Apache Software Foundation
+// Copyright 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,32 +14,45 @@
 
 package org.apache.tapestry5.internal.pageload;
 
-import org.apache.tapestry5.internal.parser.TemplateToken;
-import org.apache.tapestry5.internal.parser.TokenType;
+import org.apache.tapestry5.internal.parser.*;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.util.Stack;
 import org.apache.tapestry5.runtime.RenderCommand;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Used when constructing a {@link org.apache.tapestry5.internal.pageload.AssemblerContext}, encapsulating the
  * assembler, the {@link org.apache.tapestry5.internal.pageload.TokenStream} for the component's template, and helping
  * to consolidate composable render commands (that is, a series of render commands that are not components can be
  * replaced with a single {@link org.apache.tapestry5.internal.pageload.CompositeRenderCommand} which reduces the number
- * of render operations for the page).
+ * of render operations for the page). Optionally, complete static elements within such a series are further combined
+ * into {@link org.apache.tapestry5.internal.pageload.StaticMarkupFragment}s.
  */
 class AssemblerContext implements TokenStream
 {
+    /**
+     * Elements that the {@link org.apache.tapestry5.internal.services.DocumentLinker} searches for in the rendered
+     * document, and so are always rendered as DOM elements.
+     */
+    private static final Set<String> LINKED_ELEMENTS = CollectionFactory.newSet("html", "head", "body", "meta",
+            "style");
+
     final ComponentAssembler assembler;
 
     final TokenStream stream;
 
+    private final boolean combineStaticMarkup;
+
     private final List<RenderCommand> composable = CollectionFactory.newList();
 
-    AssemblerContext(ComponentAssembler assembler, TokenStream stream)
+    AssemblerContext(ComponentAssembler assembler, TokenStream stream, boolean combineStaticMarkup)
     {
         this.assembler = assembler;
         this.stream = stream;
+        this.combineStaticMarkup = combineStaticMarkup;
     }
 
     public boolean more()
@@ -69,6 +82,9 @@ class AssemblerContext implements TokenStream
 
     void flushComposable()
     {
+        if (combineStaticMarkup)
+            combineStaticMarkup();
+
         switch (composable.size())
         {
             case 0:
@@ -86,6 +102,132 @@ class AssemblerContext implements TokenStream
         composable.clear();
     }
 
+    /**
+     * Replaces each run of complete static elements (along with any text, comments or CDATA between them) in the
+     * composable list with a single {@link StaticMarkupFragment}.
+     */
+    private void combineStaticMarkup()
+    {
+        int count = composable.size();
+
+        // For each start element, the index of its matching end element, if the element and all its content
+        // is static; otherwise -1.
+
+        int[] staticEnd = new int[count];
+
+        Stack<Integer> open = CollectionFactory.newStack();
+
+        // Parallel to open: true if the open element contains any non-static content.
+
+        Stack<Boolean> dirty = CollectionFactory.newStack();
+
+        for (int i = 0; i < count; i++)
+        {
+            RenderCommand command = composable.get(i);
+
+            staticEnd[i] = -1;
+
+            if (command instanceof StartElementToken)
+            {
+                open.push(i);
+                dirty.push(!isStaticElement((StartElementToken) command));
+                continue;
+            }
+
+            if (command == PageLoaderImpl.END_ELEMENT)
+            {
+                // The end of an element started in an earlier series of commands.
+
+                if (open.isEmpty())
+                    continue;
+
+                int start = open.pop();
+                boolean startDirty = dirty.pop();
+
+                if (!startDirty)
+                    staticEnd[start] = i;
+                else if (!dirty.isEmpty())
+                {
+                    dirty.pop();
+                    dirty.push(true);
+                }
+
+                continue;
+            }
+
+            if (!isStaticContent(command) && !dirty.isEmpty())
+            {
+                dirty.pop();
+                dirty.push(true);
+            }
+        }
+
+        List<RenderCommand> result = CollectionFactory.newList();
+        List<RenderCommand> run = CollectionFactory.newList();
+        boolean runHasElement = false;
+
+        int i = 0;
+
+        while (i < count)
+        {
+            RenderCommand command = composable.get(i);
+
+            if (staticEnd[i] >= 0)
+            {
+                run.addAll(composable.subList(i, staticEnd[i] + 1));
+                runHasElement = true;
+
+                i = staticEnd[i] + 1;
+                continue;
+            }
+
+            if (command instanceof TextToken || command instanceof CommentToken || command instanceof CDATAToken)
+            {
+                run.add(command);
+                i++;
+                continue;
+            }
+
+            flushRun(result, run, runHasElement);
+            runHasElement = false;
+
+            result.add(command);
+            i++;
+        }
+
+        flushRun(result, run, runHasElement);
+
+        composable.clear();
+        composable.addAll(result);
+    }
+
+    private static void flushRun(List<RenderCommand> result, List<RenderCommand> run, boolean runHasElement)
+    {
+        if (runHasElement)
+            result.add(new StaticMarkupFragment(run.toArray(new RenderCommand[run.size()])));
+        else
+            result.addAll(run);
+
+        run.clear();
+    }
+
+    private static boolean isStaticElement(StartElementToken token)
+    {
+        return InternalUtils.isBlank(token.namespaceURI) && !LINKED_ELEMENTS.contains(token.name.toLowerCase());
+    }
+
+    /**
+     * Returns true for commands that may appear inside a static element. Attributes with expansions are not composable
+     * and so never get this far.
+     */
+    private static boolean isStaticContent(RenderCommand command)
+    {
+        if (command instanceof AttributeToken)
+            return InternalUtils.isBlank(((AttributeToken) command).namespaceURI);
+
+        return command instanceof TextToken || command instanceof CommentToken || command instanceof CDATAToken;
+    }
+
     void add(PageAssemblyAction action)
     {
         flushComposable();
@@ -1,4 +1,4 @@
-// Copyright 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ import org.apache.tapestry5.Binding;
 import org.apache.tapestry5.BindingConstants;
 import org.apache.tapestry5.ComponentResources;
 import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.internal.InternalComponentResources;
 import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.internal.bindings.LiteralBinding;
@@ -26,6 +27,7 @@ import org.apache.tapestry5.internal.services.*;
 import org.apache.tapestry5.internal.structure.*;
 import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.Location;
+import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.OperationTracker;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
@@ -108,7 +110,7 @@ public class PageLoaderImpl implements PageLoader, InvalidationListener, Compone
         }
     };
 
-    private static final RenderCommand END_ELEMENT = new RenderCommand()
+    static final RenderCommand END_ELEMENT = new RenderCommand()
     {
         public void render(MarkupWriter writer, RenderQueue queue)
         {
@@ -138,6 +140,8 @@ public class PageLoaderImpl implements PageLoader, InvalidationListener, Compone
 
     private final StringInterner interner;
 
+    private final boolean combineStaticMarkup;
+
     private final OperationTracker tracker;
 
     private final PerthreadManager perThreadManager;
@@ -150,7 +154,9 @@ public class PageLoaderImpl implements PageLoader, InvalidationListener, Compone
                           PageElementFactory elementFactory, ComponentPageElementResourcesSource resourcesSource,
                           ComponentClassResolver componentClassResolver, PersistentFieldManager persistentFieldManager,
                           StringInterner interner, OperationTracker tracker, PerthreadManager perThreadManager, Request request,
-                          SymbolSource symbolSource)
+                          SymbolSource symbolSource,
+                          @Symbol(SymbolConstants.COMBINE_STATIC_MARKUP)
+                          boolean combineStaticMarkup)
     {
         this.instantiatorSource = instantiatorSource;
         this.templateSource = templateSource;
@@ -163,6 +169,7 @@ public class PageLoaderImpl implements PageLoader, InvalidationListener, Compone
         this.perThreadManager = perThreadManager;
         this.request = request;
         this.symbolSource = symbolSource;
+        this.combineStaticMarkup = combineStaticMarkup;
     }
 
     public void objectWasInvalidated()
@@ -251,7 +258,7 @@ public class PageLoaderImpl implements PageLoader, InvalidationListener, Compone
     {
         TokenStream stream = createTokenStream(assembler, template);
 
-        AssemblerContext context = new AssemblerContext(assembler, stream);
+        AssemblerContext context = new AssemblerContext(assembler, stream, combineStaticMarkup);
 
         if (template.isMissing())
         {
@@ -0,0 +1,235 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.pageload;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.internal.services.PageSource;
+import org.apache.tapestry5.internal.util.LocaleUtils;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.services.ComponentClassResolver;
+import org.apache.tapestry5.services.pageload.PagePreloader;
+import org.slf4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+public class PagePreloaderImpl implements PagePreloader
+{
+    private final Logger logger;
+
+    private final ComponentClassResolver resolver;
+
+    private final PageSource pageSource;
+
+    private final ThreadLocale threadLocale;
+
+    private final ParallelExecutor executor;
+
+    private final List<Pattern> pagePatterns = CollectionFactory.newList();
+
+    private final List<Locale> locales = CollectionFactory.newList();
+
+    public PagePreloaderImpl(Logger logger, ComponentClassResolver resolver, PageSource pageSource,
+                             ThreadLocale threadLocale, ParallelExecutor executor,
+
+                             @Symbol(SymbolConstants.PRELOAD_PAGES)
+                             String pages,
+
+                             @Symbol(SymbolConstants.PRELOAD_LOCALES)
+                             String locales,
+
+                             @Symbol(SymbolConstants.SUPPORTED_LOCALES)
+                             String supportedLocales)
+    {
+        this.logger = logger;
+        this.resolver = resolver;
+        this.pageSource = pageSource;
+        this.threadLocale = threadLocale;
+        this.executor = executor;
+
+        for (String glob : TapestryInternalUtils.splitAtCommas(pages))
+        {
+            pagePatterns.add(toPattern(glob));
+        }
+
+        String[] localeNames = TapestryInternalUtils.splitAtCommas(locales);
+
+        if (localeNames.length == 0)
+        {
+            // Just the default locale, unless the locales are explicitly specified.
+
+            localeNames = new String[]{TapestryInternalUtils.splitAtCommas(supportedLocales)[0]};
+        }
+
+        for (String name : localeNames)
+        {
+            this.locales.add(LocaleUtils.toLocale(name));
+        }
+    }
+
+    private static Pattern toPattern(String glob)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (char ch : glob.toCharArray())
+        {
+            switch (ch)
+            {
+                case '*':
+                    builder.append(".*");
+                    break;
+
+                case '?':
+                    builder.append('.');
+                    break;
+
+                default:
+                    builder.append(Pattern.quote(String.valueOf(ch)));
+            }
+        }
+
+        return Pattern.compile(builder.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    public void preloadPages()
+    {
+        List<String> pageNames = findPageNames();
+
+        if (pageNames.isEmpty())
+        {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        Map<String, Future<Long>> loads = new LinkedHashMap<String, Future<Long>>();
+
+        for (Locale locale : locales)
+        {
+            for (String pageName : pageNames)
+            {
+                final FutureTask<Long> load = createLoad(pageName, locale);
+
+                try
+                {
+                    executor.invoke(new Invokable<Void>()
+                    {
+                        public Void invoke()
+                        {
+                            load.run();
+
+                            return null;
+                        }
+                    });
+                } catch (RejectedExecutionException ex)
+                {
+                    // The thread pool's queue is full; do the work in this thread instead.
+
+                    load.run();
+                }
+
+                loads.put(String.format("%s (%s)", pageName, locale), load);
+            }
+        }
+
+        int failures = 0;
+
+        for (Map.Entry<String, Future<Long>> entry : loads.entrySet())
+        {
+            try
+            {
+                logger.info(String.format("Preloaded page %s in %,d ms.", entry.getKey(), entry.getValue().get()));
+            } catch (ExecutionException ex)
+            {
+                failures++;
+
+                logger.error(String.format("Page %s could not be preloaded: %s", entry.getKey(),
+                        InternalUtils.toMessage(ex.getCause())), ex.getCause());
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+
+                logger.warn("Interrupted while preloading pages.");
+
+                return;
+            }
+        }
+
+        logger.info(String.format("Preloaded %,d pages (%,d failed) in %,d ms.", loads.size() - failures, failures,
+                System.currentTimeMillis() - startTime));
+    }
+
+    private List<String> findPageNames()
+    {
+        List<String> result = CollectionFactory.newList();
+
+        if (pagePatterns.isEmpty())
+        {
+            return result;
+        }
+
+        for (String pageName : resolver.getPageNames())
+        {
+            for (Pattern pattern : pagePatterns)
+            {
+                if (pattern.matcher(pageName).matches())
+                {
+                    result.add(pageName);
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private FutureTask<Long> createLoad(final String pageName, final Locale locale)
+    {
+        return new FutureTask<Long>(new Callable<Long>()
+        {
+            public Long call()
+            {
+                long startTime = System.currentTimeMillis();
+
+                Locale oldLocale = threadLocale.getLocale();
+
+                // The PageSource determines the selector from the current thread's locale, exactly as
+                // it would for a request.
+
+                threadLocale.setLocale(locale);
+
+                try
+                {
+                    pageSource.getPage(pageName);
+                } finally
+                {
+                    threadLocale.setLocale(oldLocale);
+                }
+
+                return System.currentTimeMillis() - startTime;
+            }
+        });
+    }
+}
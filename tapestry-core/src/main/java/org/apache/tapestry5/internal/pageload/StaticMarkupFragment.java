@@ -0,0 +1,100 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.pageload;
+
+import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.MarkupModel;
+import org.apache.tapestry5.internal.services.MarkupWriterImpl;
+import org.apache.tapestry5.runtime.RenderCommand;
+import org.apache.tapestry5.runtime.RenderQueue;
+
+/**
+ * A run of completely static template content (elements without namespaces, with their literal attributes, text,
+ * comments and CDATA) that is rendered as a single block of pre-serialized, pre-escaped markup, rather than as a series
+ * of DOM elements. The markup depends on the {@link MarkupModel} (for attribute quoting and end tag style), so it is
+ * created on first use for each model, and then reused for every later render.
+ * <p/>
+ * When the markup can't be written as raw markup (there's no current element, or {@link org.apache.tapestry5.MarkupWriterListener}s
+ * expect to see each element), the original render commands are replayed instead. The
+ * {@link org.apache.tapestry5.internal.services.MarkupFlattener} doesn't count as such a listener.
+ *
+ * @since 5.4
+ */
+class StaticMarkupFragment implements RenderCommand
+{
+    private final RenderCommand commands;
+
+    /**
+     * Alternating MarkupModel and String markup; replaced (never modified) as new models are encountered. Pages are
+     * shared between threads, and a race only results in the markup being created more than once.
+     */
+    private volatile Object[] markup = new Object[0];
+
+    StaticMarkupFragment(RenderCommand[] commands)
+    {
+        this.commands = new CompositeRenderCommand(commands);
+    }
+
+    public void render(MarkupWriter writer, RenderQueue queue)
+    {
+        if (writer.getElement() == null || !(writer instanceof MarkupWriterImpl)
+                || ((MarkupWriterImpl) writer).hasListeners())
+        {
+            commands.render(writer, queue);
+            return;
+        }
+
+        writer.writeRaw(getMarkup(writer.getDocument().getMarkupModel()));
+    }
+
+    String getMarkup(MarkupModel model)
+    {
+        Object[] current = markup;
+
+        for (int i = 0; i < current.length; i += 2)
+        {
+            if (current[i] == model)
+                return (String) current[i + 1];
+        }
+
+        MarkupWriterImpl writer = new MarkupWriterImpl(model);
+
+        Element container = writer.element("fragment");
+
+        commands.render(writer, null);
+
+        writer.end();
+
+        String result = container.getChildMarkup();
+
+        Object[] expanded = new Object[current.length + 2];
+
+        System.arraycopy(current, 0, expanded, 0, current.length);
+
+        expanded[current.length] = model;
+        expanded[current.length + 1] = result;
+
+        markup = expanded;
+
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StaticMarkupFragment[" + commands + "]";
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2006, 2008, 2009 The Apache Software Foundation
+// Copyright 2006, 2008, 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -85,4 +85,15 @@ public class ComponentTemplateImpl implements ComponentTemplate
     {
         return extension;
     }
+
+    /**
+     * Returns the overrides (by extension point id), which may be null; used when storing the template.
+     *
+     * @see ComponentTemplateSerializer
+     * @since 5.4
+     */
+    Map<String, List<TemplateToken>> getOverrides()
+    {
+        return overrides;
+    }
 }
@@ -0,0 +1,350 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.parser;
+
+import org.apache.tapestry5.ioc.Location;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.LocationImpl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes a compact binary representation of a parsed {@link ComponentTemplate}, so that the result of
+ * parsing a template can be stored and later reconstituted without re-parsing the XML. {@link Location}s are stored as
+ * just a line and column; when a template is read, they are re-attached to the template's {@link Resource}.
+ *
+ * @since 5.4
+ */
+public final class ComponentTemplateSerializer
+{
+    private static final int MAGIC = 0x54355450;
+
+    /**
+     * Incremented whenever the format changes, or the tokens produced by the template parser change; stored data in an
+     * older format is simply ignored.
+     */
+    private static final int VERSION = 1;
+
+    private ComponentTemplateSerializer()
+    {
+    }
+
+    public static void write(ComponentTemplateImpl template, DataOutputStream out) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeBoolean(template.isExtension());
+
+        writeTokens(template.getTokens(), out);
+
+        Map<String, Location> componentIds = template.getComponentIds();
+
+        out.writeInt(componentIds.size());
+
+        for (Map.Entry<String, Location> e : componentIds.entrySet())
+        {
+            writeString(e.getKey(), out);
+            writeLocation(e.getValue(), out);
+        }
+
+        Map<String, List<TemplateToken>> overrides = template.getOverrides();
+
+        out.writeInt(overrides == null ? -1 : overrides.size());
+
+        if (overrides != null)
+        {
+            for (Map.Entry<String, List<TemplateToken>> e : overrides.entrySet())
+            {
+                writeString(e.getKey(), out);
+                writeTokens(e.getValue(), out);
+            }
+        }
+    }
+
+    /**
+     * Reads a template previously written by {@link #write(ComponentTemplateImpl, java.io.DataOutputStream)}.
+     *
+     * @param resource the resource from which the template was originally parsed
+     * @param in       stream to read from
+     * @return the template
+     * @throws IOException if the data is truncated, or was written in a different version of the format
+     */
+    public static ComponentTemplate read(Resource resource, DataInputStream in) throws IOException
+    {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a stored component template.");
+
+        int version = in.readInt();
+
+        if (version != VERSION)
+            throw new IOException(String.format("Stored component template is version %d, not version %d.", version,
+                    VERSION));
+
+        boolean extension = in.readBoolean();
+
+        List<TemplateToken> tokens = readTokens(resource, in);
+
+        Map<String, Location> componentIds = CollectionFactory.newCaseInsensitiveMap();
+
+        int count = in.readInt();
+
+        for (int i = 0; i < count; i++)
+        {
+            String id = readString(in);
+
+            componentIds.put(id, readLocation(resource, in));
+        }
+
+        Map<String, List<TemplateToken>> overrides = null;
+
+        count = in.readInt();
+
+        if (count >= 0)
+        {
+            overrides = CollectionFactory.newCaseInsensitiveMap();
+
+            for (int i = 0; i < count; i++)
+            {
+                String id = readString(in);
+
+                overrides.put(id, readTokens(resource, in));
+            }
+        }
+
+        return new ComponentTemplateImpl(resource, tokens, componentIds, extension, overrides);
+    }
+
+    private static void writeTokens(List<TemplateToken> tokens, DataOutputStream out) throws IOException
+    {
+        out.writeInt(tokens.size());
+
+        for (TemplateToken token : tokens)
+        {
+            writeToken(token, out);
+        }
+    }
+
+    private static void writeToken(TemplateToken token, DataOutputStream out) throws IOException
+    {
+        TokenType type = token.getTokenType();
+
+        out.writeByte(type.ordinal());
+
+        writeLocation(token.getLocation(), out);
+
+        switch (type)
+        {
+            case ATTRIBUTE:
+                AttributeToken attribute = (AttributeToken) token;
+                writeString(attribute.namespaceURI, out);
+                writeString(attribute.name, out);
+                writeString(attribute.value, out);
+                break;
+
+            case BLOCK:
+                writeString(((BlockToken) token).getId(), out);
+                break;
+
+            case CDATA:
+                writeString(((CDATAToken) token).content, out);
+                break;
+
+            case COMMENT:
+                writeString(((CommentToken) token).comment, out);
+                break;
+
+            case DEFINE_NAMESPACE_PREFIX:
+                DefineNamespacePrefixToken define = (DefineNamespacePrefixToken) token;
+                writeString(define.namespaceURI, out);
+                writeString(define.namespacePrefix, out);
+                break;
+
+            case DTD:
+                DTDToken dtd = (DTDToken) token;
+                writeString(dtd.name, out);
+                writeString(dtd.publicId, out);
+                writeString(dtd.systemId, out);
+                break;
+
+            case EXPANSION:
+                writeString(((ExpansionToken) token).getExpression(), out);
+                break;
+
+            case EXTENSION_POINT:
+                writeString(((ExtensionPointToken) token).getExtensionPointId(), out);
+                break;
+
+            case PARAMETER:
+                writeString(((ParameterToken) token).name, out);
+                break;
+
+            case START_COMPONENT:
+                StartComponentToken component = (StartComponentToken) token;
+                writeString(component.getElementName(), out);
+                writeString(component.getId(), out);
+                writeString(component.getComponentType(), out);
+                writeString(component.getMixins(), out);
+                break;
+
+            case START_ELEMENT:
+                StartElementToken element = (StartElementToken) token;
+                writeString(element.namespaceURI, out);
+                writeString(element.name, out);
+                break;
+
+            case TEXT:
+                writeString(((TextToken) token).text, out);
+                break;
+
+            default:
+                // BODY and END_ELEMENT have no content beyond their location.
+                break;
+        }
+    }
+
+    private static List<TemplateToken> readTokens(Resource resource, DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+
+        List<TemplateToken> result = CollectionFactory.newList();
+
+        for (int i = 0; i < count; i++)
+        {
+            result.add(readToken(resource, in));
+        }
+
+        return result;
+    }
+
+    private static TemplateToken readToken(Resource resource, DataInputStream in) throws IOException
+    {
+        int ordinal = in.readByte();
+
+        TokenType[] types = TokenType.values();
+
+        if (ordinal < 0 || ordinal >= types.length)
+            throw new IOException(String.format("Unknown token type %d.", ordinal));
+
+        Location location = readLocation(resource, in);
+
+        switch (types[ordinal])
+        {
+            case ATTRIBUTE:
+                return new AttributeToken(readString(in), readString(in), readString(in), location);
+
+            case BLOCK:
+                return new BlockToken(readString(in), location);
+
+            case BODY:
+                return new BodyToken(location);
+
+            case CDATA:
+                return new CDATAToken(readString(in), location);
+
+            case COMMENT:
+                return new CommentToken(readString(in), location);
+
+            case DEFINE_NAMESPACE_PREFIX:
+                return new DefineNamespacePrefixToken(readString(in), readString(in), location);
+
+            case DTD:
+                return new DTDToken(readString(in), readString(in), readString(in), location);
+
+            case END_ELEMENT:
+                return new EndElementToken(location);
+
+            case EXPANSION:
+                return new ExpansionToken(readString(in), location);
+
+            case EXTENSION_POINT:
+                return new ExtensionPointToken(readString(in), location);
+
+            case PARAMETER:
+                return new ParameterToken(readString(in), location);
+
+            case START_COMPONENT:
+                return new StartComponentToken(readString(in), readString(in), readString(in), readString(in),
+                        location);
+
+            case START_ELEMENT:
+                return new StartElementToken(readString(in), readString(in), location);
+
+            case TEXT:
+                return new TextToken(readString(in), location);
+        }
+
+        throw new IOException(String.format("Unexpected token type %s.", types[ordinal]));
+    }
+
+    private static void writeLocation(Location location, DataOutputStream out) throws IOException
+    {
+        out.writeBoolean(location != null);
+
+        if (location != null)
+        {
+            out.writeInt(location.getLine());
+            out.writeInt(location.getColumn());
+        }
+    }
+
+    private static Location readLocation(Resource resource, DataInputStream in) throws IOException
+    {
+        if (!in.readBoolean())
+            return null;
+
+        int line = in.readInt();
+        int column = in.readInt();
+
+        return new LocationImpl(resource, line, column);
+    }
+
+    /**
+     * Strings are written as a length and UTF-8 bytes, rather than with {@link DataOutputStream#writeUTF(String)},
+     * which is limited to 64K (a large block of template text may exceed that). A length of -1 indicates null.
+     */
+    private static void writeString(String value, DataOutputStream out) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes("UTF-8");
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+
+        in.readFully(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2006, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
 package org.apache.tapestry5.internal.services;
 
 import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.annotations.UsesMappedConfiguration;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
@@ -22,6 +23,7 @@ import org.apache.tapestry5.services.ClasspathAssetAliasManager;
 import org.apache.tapestry5.services.Dispatcher;
 import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.assets.AssetPathConstructor;
 import org.apache.tapestry5.services.assets.AssetRequestHandler;
 
 import javax.servlet.http.HttpServletResponse;
@@ -54,6 +56,16 @@ public class AssetDispatcher implements Dispatcher
 
     private final String pathPrefix;
 
+    /**
+     * The prefix before the application version, when asset URLs contain content digests (which take the place of
+     * the application version); otherwise null.
+     */
+    private final String digestPrefix;
+
+    private final String applicationVersion;
+
+    private final AssetPathConstructor assetPathConstructor;
+
     public AssetDispatcher(Map<String, AssetRequestHandler> configuration,
 
                            @Symbol(SymbolConstants.APPLICATION_VERSION)
@@ -63,12 +75,20 @@ public class AssetDispatcher implements Dispatcher
                            String applicationFolder,
 
                            @Symbol(SymbolConstants.ASSET_PATH_PREFIX)
-                           String assetPathPrefix
-                           )
+                           String assetPathPrefix,
+
+                           @Symbol(SymbolConstants.ASSET_URL_CONTENT_DIGEST)
+                           boolean contentDigest,
+
+                           AssetPathConstructor assetPathConstructor)
     {
+        this.applicationVersion = applicationVersion;
+        this.assetPathConstructor = assetPathConstructor;
+
         String folder = applicationFolder.equals("") ? "" : "/" + applicationFolder;
 
         this.pathPrefix = folder + assetPathPrefix + applicationVersion + "/";
+        this.digestPrefix = contentDigest ? folder + assetPathPrefix : null;
 
         for (String path : configuration.keySet())
         {
@@ -94,6 +114,38 @@ public class AssetDispatcher implements Dispatcher
     {
         String path = request.getPath();
 
+        // The current content is always provided. A client holding an outdated content digest is redirected to the
+        // current URL; an unknown digest (there's no current URL for the asset yet, as after a restart) is
+        // accepted, but the content must not be cached under it for long.
+
+        if (digestPrefix != null && path.startsWith(digestPrefix))
+        {
+            int slashx = path.indexOf('/', digestPrefix.length());
+
+            if (slashx > 0)
+            {
+                String digest = path.substring(digestPrefix.length(), slashx);
+                String assetPath = path.substring(slashx + 1);
+
+                if (!digest.equals(applicationVersion))
+                {
+                    String currentDigest = assetPathConstructor.getContentDigest(assetPath);
+
+                    if (currentDigest == null)
+                    {
+                        request.setAttribute(InternalConstants.SUPPRESS_FAR_FUTURE_EXPIRES, true);
+                    } else if (!currentDigest.equals(digest))
+                    {
+                        response.sendRedirect(request.getContextPath() + digestPrefix + currentDigest + "/" + assetPath);
+
+                        return true;
+                    }
+                }
+
+                path = pathPrefix + assetPath;
+            }
+        }
+
         // Remember that the request path does not include the context path, so we can simply start
         // looking for the asset path prefix right off the bat.
 
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2009, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2009, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,7 @@
 
 package org.apache.tapestry5.internal.services;
 
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.util.AvailableValues;
 import org.apache.tapestry5.ioc.util.UnknownValueException;
@@ -100,7 +101,8 @@ public class ClasspathAssetAliasManagerImpl implements ClasspathAssetAliasManage
 
                 String virtualPath = resourcePath.substring(pathPrefix.length() + 1);
 
-                return assetPathConstructor.constructAssetPath(virtualFolder, virtualPath);
+                return assetPathConstructor.constructAssetPath(virtualFolder, virtualPath,
+                        new ClasspathResource(resourcePath));
             }
         }
 
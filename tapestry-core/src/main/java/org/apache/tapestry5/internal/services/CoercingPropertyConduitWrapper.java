@@ -1,4 +1,4 @@
-// Copyright 2007 The Apache Software Foundation
+// Copyright 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@ package org.apache.tapestry5.internal.services;
 
 import org.apache.tapestry5.PropertyConduit;
 import org.apache.tapestry5.ioc.services.TypeCoercer;
+import org.apache.tapestry5.plastic.PlasticUtils;
 
 import java.lang.annotation.Annotation;
 
@@ -25,10 +26,17 @@ public class CoercingPropertyConduitWrapper implements PropertyConduit
 
     private final TypeCoercer coercer;
 
+    /**
+     * The property type, or its wrapper type for a primitive property.
+     */
+    private final Class wrapperType;
+
     public CoercingPropertyConduitWrapper(final PropertyConduit conduit, final TypeCoercer coercer)
     {
         this.conduit = conduit;
         this.coercer = coercer;
+
+        wrapperType = PlasticUtils.toWrapperType(conduit.getPropertyType());
     }
 
     public Object get(Object instance)
@@ -49,7 +57,9 @@ public class CoercingPropertyConduitWrapper implements PropertyConduit
     @SuppressWarnings("unchecked")
     public void set(Object instance, Object value)
     {
-        Object coerced = coercer.coerce(value, getPropertyType());
+        // Values that are already of the correct type (the usual case) don't need to go through the TypeCoercer.
+
+        Object coerced = wrapperType.isInstance(value) ? value : coercer.coerce(value, getPropertyType());
 
         conduit.set(instance, coerced);
     }
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -49,6 +49,8 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
 {
     private final TemplateParser parser;
 
+    private final TemplateStore store;
+
     private final URLChangeTracker tracker;
 
     private final ComponentResourceLocator locator;
@@ -100,18 +102,19 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
 
     public ComponentTemplateSourceImpl(@Inject
     @Symbol(SymbolConstants.PRODUCTION_MODE)
-    boolean productionMode, TemplateParser parser, ComponentResourceLocator locator,
+    boolean productionMode, TemplateParser parser, TemplateStore store, ComponentResourceLocator locator,
             ClasspathURLConverter classpathURLConverter)
     {
-        this(productionMode, parser, locator, new URLChangeTracker(classpathURLConverter));
+        this(productionMode, parser, store, locator, new URLChangeTracker(classpathURLConverter));
     }
 
-    ComponentTemplateSourceImpl(boolean productionMode, TemplateParser parser, ComponentResourceLocator locator,
-            URLChangeTracker tracker)
+    ComponentTemplateSourceImpl(boolean productionMode, TemplateParser parser, TemplateStore store,
+            ComponentResourceLocator locator, URLChangeTracker tracker)
     {
         super(productionMode);
 
         this.parser = parser;
+        this.store = store;
         this.locator = locator;
         this.tracker = tracker;
     }
@@ -172,7 +175,18 @@ public final class ComponentTemplateSourceImpl extends InvalidationEventHubImpl
 
         tracker.add(r.toURL());
 
-        return parser.parseTemplate(r);
+        // A template stored by an earlier execution is only found if the template content is unchanged.
+
+        ComponentTemplate result = store.load(r);
+
+        if (result == null)
+        {
+            result = parser.parseTemplate(r);
+
+            store.store(r, result);
+        }
+
+        return result;
     }
 
     private Resource locateTemplateResource(ComponentModel initialModel, ComponentResourceSelector selector)
@@ -1,4 +1,4 @@
-// Copyright 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.apache.tapestry5.internal.services;
 import org.apache.tapestry5.dom.Document;
 import org.apache.tapestry5.dom.Element;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.json.JSONObject;
 import org.apache.tapestry5.services.javascript.InitializationPriority;
 import org.apache.tapestry5.services.javascript.StylesheetLink;
@@ -66,6 +67,35 @@ public class DocumentLinkerImpl implements DocumentLinker
         scripts.add(scriptURL);
     }
 
+    /**
+     * Returns the URLs of the JavaScript libraries linked so far, in order.
+     *
+     * @since 5.4
+     */
+    public List<String> getScriptURLs()
+    {
+        return scripts;
+    }
+
+    /**
+     * Returns the URLs of the stylesheets linked so far, in order, omitting any with a condition (those are only
+     * loaded by some browsers).
+     *
+     * @since 5.4
+     */
+    public List<String> getStylesheetURLs()
+    {
+        List<String> result = CollectionFactory.newList();
+
+        for (StylesheetLink sheet : includedStylesheets)
+        {
+            if (InternalUtils.isBlank(sheet.getOptions().condition))
+                result.add(sheet.getURL());
+        }
+
+        return result;
+    }
+
     public void addScript(InitializationPriority priority, String script)
     {
 
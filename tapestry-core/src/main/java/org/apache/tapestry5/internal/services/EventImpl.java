@@ -1,4 +1,4 @@
-// Copyright 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2007, 2008, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -82,13 +82,13 @@ public class EventImpl implements Event
         if (result != null)
         {
             boolean handleResult =
-                    tracker.invoke(String.format("Handling result from method %s.", methodDescription), new Invokable<Boolean>()
+                    tracker.invoke(new Invokable<Boolean>()
                     {
                         public Boolean invoke()
                         {
                             return handler.handleResult(result);
                         }
-                    });
+                    }, "Handling result from method %s.", methodDescription);
 
             aborted |= handleResult;
         }
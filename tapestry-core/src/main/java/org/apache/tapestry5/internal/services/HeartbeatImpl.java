@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2010 The Apache Software Foundation
+// Copyright 2006, 2007, 2010, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -26,6 +26,11 @@ public class HeartbeatImpl implements Heartbeat
 {
     private final Stack<List<Runnable>> stack = newStack();
 
+    /**
+     * Number of deferred commands, across all heartbeats, that have not yet executed.
+     */
+    private int pendingCount;
+
     public void begin()
     {
         List<Runnable> beat = CollectionFactory.newList();
@@ -39,14 +44,28 @@ public class HeartbeatImpl implements Heartbeat
 
         stack.peek().add(command);
 
+        pendingCount++;
     }
 
     public void end()
     {
         List<Runnable> beat = stack.pop();
 
+        pendingCount -= beat.size();
+
         for (Runnable r : beat)
             r.run();
     }
 
+    /**
+     * Returns true if no commands are currently deferred, in any active heartbeat. When this is true, nothing rendered
+     * so far will be modified by a deferred command.
+     *
+     * @since 5.4
+     */
+    public boolean isQuiescent()
+    {
+        return pendingCount == 0;
+    }
+
 }
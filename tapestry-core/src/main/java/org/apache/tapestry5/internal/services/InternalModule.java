@@ -1,4 +1,4 @@
-// Copyright 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -60,6 +60,7 @@ public class InternalModule
     {
         binder.bind(PersistentFieldManager.class, PersistentFieldManagerImpl.class);
         binder.bind(TemplateParser.class, TemplateParserImpl.class);
+        binder.bind(TemplateStore.class, TemplateStoreImpl.class);
         binder.bind(PageResponseRenderer.class, PageResponseRendererImpl.class);
         binder.bind(PageMarkupRenderer.class, PageMarkupRendererImpl.class);
         binder.bind(LinkSource.class, LinkSourceImpl.class);
@@ -83,6 +84,8 @@ public class InternalModule
         binder.bind(RequestPageCache.class, NonPoolingRequestPageCacheImpl.class);
         binder.bind(ComponentInstantiatorSource.class);
         binder.bind(InternalComponentInvalidationEventHub.class);
+        binder.bind(PageCache.class, PageCacheImpl.class);
+        binder.bind(PreloadHints.class, PreloadHintsImpl.class);
     }
 
     public PageLoader buildPageLoader(@Autobuild
@@ -0,0 +1,110 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.MarkupWriterListener;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.Node;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.util.Stack;
+import org.apache.tapestry5.services.Environment;
+import org.apache.tapestry5.services.Heartbeat;
+
+/**
+ * Listens to a {@link org.apache.tapestry5.MarkupWriter} during a page render, and converts completed content inside
+ * the document's &lt;body&gt; into raw markup (via {@link Element#flattenChildren(Node, Node)}) as soon as rendering
+ * moves on to a following sibling element. The root element, the &lt;head&gt; and the &lt;body&gt; element itself are
+ * never flattened, so the {@link DocumentLinker} and other {@link org.apache.tapestry5.services.MarkupRendererFilter}s
+ * can still update them once rendering completes.
+ * <p/>
+ * Content is only flattened while the page's {@link Heartbeat} is active (not, for example, inside a Form, which
+ * provides its own Heartbeat and modifies its content as it completes) and has no deferred commands that might yet
+ * modify previously rendered elements.
+ * <p/>
+ * The flattener is not counted by {@link MarkupWriterImpl#hasListeners()}, so static template content is still
+ * written as raw markup (which the flattener never sees) while the flattener is registered.
+ *
+ * @since 5.4
+ */
+public class MarkupFlattener implements MarkupWriterListener
+{
+    private static final class Frame
+    {
+        final Element element;
+
+        /**
+         * If true, completed children of the element may be flattened.
+         */
+        final boolean flatten;
+
+        /**
+         * The last node created by flattening, or null if no children have been flattened yet.
+         */
+        Node flattened;
+
+        Frame(Element element, boolean flatten)
+        {
+            this.element = element;
+            this.flatten = flatten;
+        }
+    }
+
+    private final Environment environment;
+
+    private final HeartbeatImpl heartbeat;
+
+    private final Stack<Frame> stack = CollectionFactory.newStack();
+
+    /**
+     * @param environment used to identify the Heartbeat in effect as elements are rendered
+     * @param heartbeat   the page-level Heartbeat; content is only flattened while this is the active Heartbeat
+     */
+    public MarkupFlattener(Environment environment, HeartbeatImpl heartbeat)
+    {
+        this.environment = environment;
+        this.heartbeat = heartbeat;
+    }
+
+    public void elementDidStart(Element element)
+    {
+        if (stack.isEmpty())
+        {
+            stack.push(new Frame(element, false));
+            return;
+        }
+
+        Frame parent = stack.peek();
+
+        if (parent.flatten && parent.element == element.getContainer() && canFlatten())
+        {
+            parent.flattened = parent.element.flattenChildren(parent.flattened, element);
+        }
+
+        boolean flatten = parent.flatten || (stack.getDepth() == 1 && element.getName().equalsIgnoreCase("body"));
+
+        stack.push(new Frame(element, flatten));
+    }
+
+    public void elementDidEnd(Element element)
+    {
+        if (!stack.isEmpty())
+            stack.pop();
+    }
+
+    private boolean canFlatten()
+    {
+        return environment.peek(Heartbeat.class) == heartbeat && heartbeat.isQuiescent();
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -260,6 +260,27 @@ public class MarkupWriterImpl implements MarkupWriter
             listeners.remove(listener);
     }
 
+    /**
+     * Returns true if any {@link MarkupWriterListener}s are currently registered; such listeners expect to be notified
+     * about every element as it is written. A {@link MarkupFlattener} is not counted: it only converts elements into
+     * raw markup, so it has no need to see elements that are written as raw markup in the first place.
+     *
+     * @since 5.4
+     */
+    public boolean hasListeners()
+    {
+        if (isEmpty(listeners))
+            return false;
+
+        for (MarkupWriterListener l : listeners)
+        {
+            if (!(l instanceof MarkupFlattener))
+                return true;
+        }
+
+        return false;
+    }
+
     private void fireElementDidStart()
     {
         if (isEmpty(listeners)) return;
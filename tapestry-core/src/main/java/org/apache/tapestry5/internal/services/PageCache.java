@@ -0,0 +1,108 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.structure.Page;
+import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
+
+import java.util.Set;
+
+/**
+ * Storage strategy used by the {@link PageSource} to retain loaded page instances. The cache decides how many pages
+ * are kept, and which are discarded; it is also responsible for ensuring that a page that is requested by many threads
+ * at once is only loaded once. The default implementation, {@link PageCacheImpl}, keeps a bounded number of pages
+ * and discards the least recently used. A different strategy may be supplied via
+ * {@link org.apache.tapestry5.ioc.services.ServiceOverride}.
+ *
+ * @since 5.4
+ */
+public interface PageCache
+{
+    /**
+     * Statistics about the cache's operation, since the cache was created.
+     */
+    public final class Stats
+    {
+        /**
+         * Number of requests for a page that was already in the cache.
+         */
+        public final long hits;
+
+        /**
+         * Number of requests for a page that was not in the cache (including requests that waited for a load
+         * already in progress in another thread).
+         */
+        public final long misses;
+
+        /**
+         * Number of pages actually loaded by the {@link PageLoader}.
+         */
+        public final long loads;
+
+        /**
+         * Total time, in milliseconds, spent loading pages.
+         */
+        public final long loadTime;
+
+        /**
+         * Number of pages discarded to keep the cache within its size limit (clearing the cache is not counted).
+         */
+        public final long evictions;
+
+        /**
+         * Number of pages currently in the cache.
+         */
+        public final int size;
+
+        public Stats(long hits, long misses, long loads, long loadTime, long evictions, int size)
+        {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.loadTime = loadTime;
+            this.evictions = evictions;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Returns the cached page for the name and selector, using the loader to create the page if it is not cached.
+     * Concurrent requests for the same missing page share a single invocation of the loader.
+     *
+     * @param canonicalPageName
+     *         name of page to obtain
+     * @param selector
+     *         identifies the locale (and other information) the page is built for
+     * @param loader
+     *         used to create the page if it is not cached
+     * @return the cached or newly loaded page
+     */
+    Page get(String canonicalPageName, ComponentResourceSelector selector, PageLoader loader);
+
+    /**
+     * Discards all pages from the cache.
+     */
+    void clear();
+
+    /**
+     * Returns all pages currently in the cache.
+     */
+    Set<Page> getAllPages();
+
+    /**
+     * Returns a snapshot of the cache's statistics.
+     */
+    Stats getStats();
+}
@@ -0,0 +1,276 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.func.F;
+import org.apache.tapestry5.func.Mapper;
+import org.apache.tapestry5.internal.structure.Page;
+import org.apache.tapestry5.ioc.annotations.IntermediateType;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.util.TimeInterval;
+import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps up to a fixed number of pages (strongly referenced), discarding the least recently used page when the limit
+ * is exceeded. Reads do not lock; recency is tracked with a logical clock stamped onto each entry, and the (linear)
+ * search for the least recently used entry only occurs when a newly loaded page pushes the cache over its limit.
+ * <p/>
+ * Each page load is represented by a {@link FutureTask}; the first thread to miss runs the task, and other threads
+ * that miss on the same page wait (up to the {@linkplain SymbolConstants#PAGE_LOAD_TIMEOUT load timeout}) for its
+ * result. A failed load is not cached; the exception is propagated to every waiting thread, and the next request for
+ * the page will try again.
+ *
+ * @since 5.4
+ */
+public class PageCacheImpl implements PageCache
+{
+    private static final class CachedPageKey
+    {
+        final String pageName;
+
+        final ComponentResourceSelector selector;
+
+        public CachedPageKey(String pageName, ComponentResourceSelector selector)
+        {
+            this.pageName = pageName;
+            this.selector = selector;
+        }
+
+        public int hashCode()
+        {
+            return 37 * pageName.hashCode() + selector.hashCode();
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+
+            if (!(obj instanceof CachedPageKey))
+                return false;
+
+            CachedPageKey other = (CachedPageKey) obj;
+
+            return pageName.equals(other.pageName) && selector.equals(other.selector);
+        }
+    }
+
+    private final class CacheEntry
+    {
+        final Page page;
+
+        volatile long lastAccess;
+
+        CacheEntry(Page page)
+        {
+            this.page = page;
+
+            touch();
+        }
+
+        void touch()
+        {
+            lastAccess = clock.incrementAndGet();
+        }
+    }
+
+    private final int maxSize;
+
+    private final long loadTimeout;
+
+    private final ConcurrentMap<CachedPageKey, CacheEntry> entries = CollectionFactory.newConcurrentMap();
+
+    /**
+     * Loads currently in progress; used to ensure that only a single thread loads any particular page, and that
+     * other threads requesting the same page wait for that load (and see the same result, or the same exception).
+     */
+    private final ConcurrentMap<CachedPageKey, FutureTask<Page>> pendingLoads = CollectionFactory.newConcurrentMap();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong loadTime = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PageCacheImpl(@Symbol(SymbolConstants.PAGE_CACHE_MAX_SIZE)
+                         int maxSize,
+
+                         @Symbol(SymbolConstants.PAGE_LOAD_TIMEOUT)
+                         @IntermediateType(TimeInterval.class)
+                         long loadTimeout)
+    {
+        this.maxSize = maxSize;
+        this.loadTimeout = loadTimeout;
+    }
+
+    public Page get(String canonicalPageName, ComponentResourceSelector selector, final PageLoader loader)
+    {
+        final CachedPageKey key = new CachedPageKey(canonicalPageName, selector);
+
+        CacheEntry entry = entries.get(key);
+
+        if (entry != null)
+        {
+            hits.incrementAndGet();
+
+            entry.touch();
+
+            return entry.page;
+        }
+
+        misses.incrementAndGet();
+
+        FutureTask<Page> task = new FutureTask<Page>(new Callable<Page>()
+        {
+            public Page call() throws Exception
+            {
+                return load(key, loader);
+            }
+        });
+
+        FutureTask<Page> inProgress = pendingLoads.putIfAbsent(key, task);
+
+        if (inProgress != null)
+        {
+            return waitForLoad(key, inProgress);
+        }
+
+        try
+        {
+            // Another thread may have finished loading the page between the check of the cache and the
+            // registration of this thread's task.
+
+            entry = entries.get(key);
+
+            if (entry != null)
+            {
+                return entry.page;
+            }
+
+            task.run();
+        } finally
+        {
+            pendingLoads.remove(key, task);
+        }
+
+        return waitForLoad(key, task);
+    }
+
+    private Page waitForLoad(CachedPageKey key, FutureTask<Page> task)
+    {
+        try
+        {
+            return task.get(loadTimeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new RuntimeException(cause);
+        } catch (TimeoutException ex)
+        {
+            throw new RuntimeException(String.format("Timed out after %,d ms waiting for page %s (%s) to be loaded.",
+                    loadTimeout, key.pageName, key.selector.toShortString()), ex);
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(String.format("Interrupted while waiting for page %s (%s) to be loaded.",
+                    key.pageName, key.selector.toShortString()), ex);
+        }
+    }
+
+    private Page load(CachedPageKey key, PageLoader loader)
+    {
+        long startTime = System.currentTimeMillis();
+
+        Page page = loader.loadPage(key.pageName, key.selector);
+
+        loadTime.addAndGet(System.currentTimeMillis() - startTime);
+        loads.incrementAndGet();
+
+        entries.put(key, new CacheEntry(page));
+
+        evictExcessPages();
+
+        return page;
+    }
+
+    private void evictExcessPages()
+    {
+        if (maxSize <= 0)
+            return;
+
+        while (entries.size() > maxSize)
+        {
+            Map.Entry<CachedPageKey, CacheEntry> eldest = null;
+
+            for (Map.Entry<CachedPageKey, CacheEntry> e : entries.entrySet())
+            {
+                if (eldest == null || e.getValue().lastAccess < eldest.getValue().lastAccess)
+                {
+                    eldest = e;
+                }
+            }
+
+            if (eldest == null)
+                return;
+
+            if (entries.remove(eldest.getKey(), eldest.getValue()))
+            {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public Set<Page> getAllPages()
+    {
+        return F.flow(entries.values()).map(new Mapper<CacheEntry, Page>()
+        {
+            public Page map(CacheEntry element)
+            {
+                return element.page;
+            }
+        }).toSet();
+    }
+
+    public Stats getStats()
+    {
+        return new Stats(hits.get(), misses.get(), loads.get(), loadTime.get(), evictions.get(), entries.size());
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -24,7 +24,8 @@ import java.util.Set;
 
 /**
  * Access to localized page instances (which are now shared singletons, starting in release 5.2).
- * This service is a wrapper around the {@link PageLoader} that caches the loaded pages.
+ * This service is a wrapper around the {@link PageLoader} that caches the loaded pages (using the
+ * {@link PageCache} service).
  *
  * @since 5.2.0
  */
@@ -49,8 +50,8 @@ public interface PageSource
     Page getPage(String canonicalPageName);
 
     /**
-     * Returns all currently loaded pages. This will include any previously loaded pages not yet reclaimed by the
-     * garbage collector, and may include the same page loaded for different {@link ComponentResourceSelector}s. This is needed
+     * Returns all currently loaded pages. This will include any previously loaded pages not yet evicted from the
+     * {@link PageCache}, and may include the same page loaded for different {@link ComponentResourceSelector}s. This is needed
      * for reporting purposes only.
      *
      * @see org.apache.tapestry5.corelib.pages.PageCatalog
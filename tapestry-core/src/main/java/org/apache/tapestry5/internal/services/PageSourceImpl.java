@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,16 +14,11 @@
 
 package org.apache.tapestry5.internal.services;
 
-import org.apache.tapestry5.func.F;
-import org.apache.tapestry5.func.Mapper;
 import org.apache.tapestry5.internal.structure.Page;
-import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.InvalidationListener;
 import org.apache.tapestry5.services.pageload.ComponentRequestSelectorAnalyzer;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 
-import java.lang.ref.SoftReference;
-import java.util.Map;
 import java.util.Set;
 
 public class PageSourceImpl implements PageSource, InvalidationListener
@@ -32,43 +27,13 @@ public class PageSourceImpl implements PageSource, InvalidationListener
 
     private final PageLoader pageLoader;
 
-    private static final class CachedPageKey
-    {
-        final String pageName;
-
-        final ComponentResourceSelector selector;
-
-        public CachedPageKey(String pageName, ComponentResourceSelector selector)
-        {
-            this.pageName = pageName;
-            this.selector = selector;
-        }
-
-        public int hashCode()
-        {
-            return 37 * pageName.hashCode() + selector.hashCode();
-        }
-
-        public boolean equals(Object obj)
-        {
-            if (this == obj)
-                return true;
-
-            if (!(obj instanceof CachedPageKey))
-                return false;
-
-            CachedPageKey other = (CachedPageKey) obj;
-
-            return pageName.equals(other.pageName) && selector.equals(other.selector);
-        }
-    }
+    private final PageCache pageCache;
 
-    private final Map<CachedPageKey, SoftReference<Page>> pageCache = CollectionFactory.newConcurrentMap();
-
-    public PageSourceImpl(PageLoader pageLoader, ComponentRequestSelectorAnalyzer selectorAnalyzer)
+    public PageSourceImpl(PageLoader pageLoader, ComponentRequestSelectorAnalyzer selectorAnalyzer, PageCache pageCache)
     {
         this.pageLoader = pageLoader;
         this.selectorAnalyzer = selectorAnalyzer;
+        this.pageCache = pageCache;
     }
 
     public void objectWasInvalidated()
@@ -80,33 +45,10 @@ public class PageSourceImpl implements PageSource, InvalidationListener
     {
         ComponentResourceSelector selector = selectorAnalyzer.buildSelectorForRequest();
 
-        CachedPageKey key = new CachedPageKey(canonicalPageName, selector);
-
-        // The while loop looks superfluous, but it helps to ensure that the Page instance,
-        // with all of its mutable construction-time state, is properly published to other
-        // threads (at least, as I understand Brian Goetz's explanation, it should be).
-
-        while (true)
-        {
-            SoftReference<Page> ref = pageCache.get(key);
-
-            Page page = ref == null ? null : ref.get();
-
-            if (page != null)
-            {
-                return page;
-            }
-
-            // In rare race conditions, we may see the same page loaded multiple times across
-            // different threads. The last built one will "evict" the others from the page cache,
-            // and the earlier ones will be GCed.
-
-            page = pageLoader.loadPage(canonicalPageName, selector);
-
-            ref = new SoftReference<Page>(page);
+        // The cache is responsible for ensuring that the page, with all of its mutable construction-time
+        // state, is properly published to other threads, and that it is only loaded once.
 
-            pageCache.put(key, ref);
-        }
+        return pageCache.get(canonicalPageName, selector, pageLoader);
     }
 
     public void clearCache()
@@ -116,12 +58,6 @@ public class PageSourceImpl implements PageSource, InvalidationListener
 
     public Set<Page> getAllPages()
     {
-        return F.flow(pageCache.values()).map(new Mapper<SoftReference<Page>, Page>()
-        {
-            public Page map(SoftReference<Page> element)
-            {
-                return element.get();
-            }
-        }).removeNulls().toSet();
+        return pageCache.getAllPages();
     }
 }
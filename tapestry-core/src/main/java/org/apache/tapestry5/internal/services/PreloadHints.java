@@ -0,0 +1,50 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services;
+
+import java.util.List;
+
+/**
+ * Remembers the JavaScript libraries and stylesheets linked by each page as it renders, and sends them, the next time
+ * the page renders, as {@code Link: <url>; rel=preload} response headers. The headers are added before the page
+ * renders, so that a front-end server that acts on preload hints (for example, by pushing the assets over HTTP/2) can
+ * do so without waiting for the page's markup.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#PRELOAD_HINTS
+ * @since 5.4
+ */
+public interface PreloadHints
+{
+    /**
+     * Adds a Link response header identifying the assets recorded for the page, in the current locale, if any.
+     *
+     * @param pageName
+     *         logical name of the page about to render
+     */
+    void addHints(String pageName);
+
+    /**
+     * Records the assets linked by a render of the page, in the current locale, replacing any earlier record.
+     *
+     * @param pageName
+     *         logical name of the page that rendered
+     * @param scriptURLs
+     *         client URLs of the page's JavaScript libraries (and stacks), in load order
+     * @param stylesheetURLs
+     *         client URLs of the page's stylesheets
+     */
+    void recordAssets(String pageName, List<String> scriptURLs, List<String> stylesheetURLs);
+}
@@ -0,0 +1,109 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
+import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.services.ComponentClasses;
+import org.apache.tapestry5.services.InvalidationEventHub;
+import org.apache.tapestry5.services.InvalidationListener;
+import org.apache.tapestry5.services.Response;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the complete header value for each page and locale (the locale is part of the URL of a JavaScript stack, and
+ * may select different assets), so adding it to a response is just a lookup. Cleared when component classes (which
+ * determine what a page imports) or resources (which may change asset URLs) change.
+ *
+ * @since 5.4
+ */
+public class PreloadHintsImpl implements PreloadHints, InvalidationListener
+{
+    static final String LINK_HEADER = "Link";
+
+    private final Response response;
+
+    private final ThreadLocale threadLocale;
+
+    private final Map<String, String> pageKeyToHeader = CollectionFactory.newConcurrentMap();
+
+    public PreloadHintsImpl(Response response, ThreadLocale threadLocale)
+    {
+        this.response = response;
+        this.threadLocale = threadLocale;
+    }
+
+    @PostInjection
+    public void listenForInvalidations(@ComponentClasses InvalidationEventHub classesHub,
+                                       ResourceChangeTracker resourceChangeTracker)
+    {
+        classesHub.addInvalidationListener(this);
+        resourceChangeTracker.addInvalidationListener(this);
+    }
+
+    public void addHints(String pageName)
+    {
+        String header = pageKeyToHeader.get(toPageKey(pageName));
+
+        if (header != null)
+            response.setHeader(LINK_HEADER, header);
+    }
+
+    public void recordAssets(String pageName, List<String> scriptURLs, List<String> stylesheetURLs)
+    {
+        String pageKey = toPageKey(pageName);
+
+        StringBuilder builder = new StringBuilder();
+
+        // Stylesheets first, as they block rendering.
+
+        append(builder, stylesheetURLs, "style");
+        append(builder, scriptURLs, "script");
+
+        if (builder.length() == 0)
+        {
+            pageKeyToHeader.remove(pageKey);
+            return;
+        }
+
+        pageKeyToHeader.put(pageKey, builder.toString());
+    }
+
+    private String toPageKey(String pageName)
+    {
+        return pageName + ":" + threadLocale.getLocale();
+    }
+
+    private static void append(StringBuilder builder, List<String> urls, String as)
+    {
+        for (String url : urls)
+        {
+            if (builder.length() > 0)
+                builder.append(", ");
+
+            builder.append('<').append(url).append(">; rel=preload; as=").append(as);
+        }
+    }
+
+    public void objectWasInvalidated()
+    {
+        pageKeyToHeader.clear();
+    }
+}
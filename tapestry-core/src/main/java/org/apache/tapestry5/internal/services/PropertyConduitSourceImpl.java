@@ -41,6 +41,7 @@ import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -86,6 +87,27 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource, Invalid
         static final Method PUT = getMethod(HashMap.class, "put", Object.class, Object.class);
     }
 
+    /**
+     * Integral primitive types, which may be converted to one another without coercion.
+     */
+    private static final List<Class> INTEGRAL_TYPES = Arrays.<Class>asList(byte.class, short.class, int.class,
+            long.class);
+
+    /**
+     * Wrapper types for the numeric primitive types, mapped to the primitive type.
+     */
+    private static final Map<Class, Class> PRIMITIVE_TYPES = CollectionFactory.newMap();
+
+    static
+    {
+        PRIMITIVE_TYPES.put(Byte.class, byte.class);
+        PRIMITIVE_TYPES.put(Short.class, short.class);
+        PRIMITIVE_TYPES.put(Integer.class, int.class);
+        PRIMITIVE_TYPES.put(Long.class, long.class);
+        PRIMITIVE_TYPES.put(Float.class, float.class);
+        PRIMITIVE_TYPES.put(Double.class, double.class);
+    }
+
     private static InstructionBuilderCallback RETURN_NULL = new InstructionBuilderCallback()
     {
         public void doBuild(InstructionBuilder builder)
@@ -934,7 +956,10 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource, Invalid
 
                 Class parameterType = parameterTypes[i];
 
-                if (!parameterType.isAssignableFrom(GenericsUtils.asClass(expressionType)))
+                Class expressionClass = GenericsUtils.asClass(expressionType);
+
+                if (!parameterType.isAssignableFrom(expressionClass)
+                        && !implementInlineCoercion(builder, expressionClass, parameterType))
                 {
                     boxIfPrimitive(builder, expressionType);
 
@@ -961,6 +986,59 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource, Invalid
                     method.getParameterTypes());
         }
 
+        /**
+         * Converts a primitive value on top of the stack to the parameter type directly, rather than through the
+         * TypeCoercer, for the common cases: an integral value to another integral type, or to a double (for example,
+         * a numeric literal, which is always a long, passed to a method that takes an int), a float to a double, or
+         * any primitive to a String. These produce the same results as the equivalent coercions. Other conversions are
+         * left to the TypeCoercer.
+         *
+         * @return true if the conversion was implemented, false if the value must still be coerced
+         */
+        private boolean implementInlineCoercion(InstructionBuilder builder, Class expressionType, Class parameterType)
+        {
+            if (!expressionType.isPrimitive())
+                return false;
+
+            if (parameterType == String.class)
+            {
+                builder.boxPrimitive(expressionType.getName());
+                builder.invoke(Object.class, String.class, "toString");
+
+                return true;
+            }
+
+            Class targetType = parameterType.isPrimitive() ? parameterType : PRIMITIVE_TYPES.get(parameterType);
+
+            if (targetType == null)
+                return false;
+
+            if (targetType != expressionType)
+            {
+                if (!isInlineNumericConversion(expressionType, targetType))
+                    return false;
+
+                // Number provides the conversion methods, and the JIT can generally eliminate the boxing.
+
+                builder.boxPrimitive(expressionType.getName());
+                builder.invoke(Number.class, targetType, targetType.getName() + "Value");
+            }
+
+            if (!parameterType.isPrimitive())
+                builder.boxPrimitive(targetType.getName());
+
+            return true;
+        }
+
+        private boolean isInlineNumericConversion(Class expressionType, Class targetType)
+        {
+            if (expressionType == float.class)
+                return targetType == double.class;
+
+            return INTEGRAL_TYPES.contains(expressionType)
+                    && (INTEGRAL_TYPES.contains(targetType) || targetType == double.class);
+        }
+
         /**
          * Analyzes a DEREF or SAFEDEREF node, proving back a term that identifies its type and provides a callback to
          * peform the dereference.
@@ -1260,6 +1338,26 @@ public class PropertyConduitSourceImpl implements PropertyConduitSource, Invalid
         {
             Type expressionType = implementSubexpression(builder, null, notNode.getChild(0));
 
+            if (GenericsUtils.asClass(expressionType) == boolean.class)
+            {
+                // Invert a primitive boolean directly, without boxing it.
+
+                builder.when(Condition.ZERO, new WhenCallback()
+                {
+                    public void ifTrue(InstructionBuilder builder)
+                    {
+                        builder.loadConstant(1);
+                    }
+
+                    public void ifFalse(InstructionBuilder builder)
+                    {
+                        builder.loadConstant(0);
+                    }
+                });
+
+                return boolean.class;
+            }
+
             boxIfPrimitive(builder, expressionType);
 
             // Now invoke the delegate invert() method
@@ -1,4 +1,4 @@
-// Copyright 2006, 2008, 2009, 2011 The Apache Software Foundation
+// Copyright 2006, 2008, 2009, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -44,4 +44,15 @@ public interface ResourceDigestManager extends InvalidationEventHub
      * @return the digest, or null if the resource does not exist
      */
     String getDigest(Resource resource);
+
+    /**
+     * Returns a digest of the content of the resource, whether or not the resource {@linkplain
+     * #requiresDigest(Resource) requires a digest}. The digest is computed just once, until the resource changes.
+     *
+     * @param resource
+     * @return the digest, or null if the resource does not exist
+     * @see org.apache.tapestry5.SymbolConstants#ASSET_URL_CONTENT_DIGEST
+     * @since 5.4
+     */
+    String getContentDigest(Resource resource);
 }
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.apache.tapestry5.internal.services;
 import java.net.URL;
 import java.util.Map;
 
+import org.apache.tapestry5.internal.services.assets.AssetBundle;
 import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
@@ -24,12 +25,21 @@ import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.InvalidationListener;
 import org.apache.tapestry5.services.ResourceDigestGenerator;
 
+/**
+ * Digests are taken from the {@linkplain AssetBundle#getDigest(String) asset bundle's digest index}, when available,
+ * rather than by reading each resource. The index describes the resources as they were when the bundle was generated,
+ * so once any resource changes (which is only tracked in development mode) the index is no longer used.
+ */
 public class ResourceDigestManagerImpl implements ResourceDigestManager, InvalidationListener
 {
     private final ResourceDigestGenerator digestGenerator;
 
     private final ResourceChangeTracker resourceChangeTracker;
 
+    private final AssetBundle assetBundle;
+
+    private volatile boolean useIndex = true;
+
     private final Map<Resource, Cached> cache = CollectionFactory.newConcurrentMap();
 
     final static long MISSING_RESOURCE_TIME_MODIFIED = -1L;
@@ -42,23 +52,33 @@ public class ResourceDigestManagerImpl implements ResourceDigestManager, Invalid
 
         final long timeModified;
 
+        final URL url;
+
+        // From the index, or else computed on first access; at worst, more than once by concurrent threads.
+        volatile String contentDigest;
+
         Cached(Resource resource)
         {
             requiresDigest = digestGenerator.requiresDigest(resource.getPath());
 
-            URL url = resource.toURL();
+            url = resource.toURL();
+
+            contentDigest = (useIndex && url != null) ? assetBundle.getDigest(resource.toString()) : null;
 
-            digest = (requiresDigest && url != null) ? digestGenerator.generateDigest(url) : null;
+            digest = (requiresDigest && url != null)
+                    ? (contentDigest != null ? contentDigest : digestGenerator.generateDigest(url))
+                    : null;
 
             timeModified = url != null ? resourceChangeTracker.trackResource(resource) : MISSING_RESOURCE_TIME_MODIFIED;
         }
     }
 
     public ResourceDigestManagerImpl(ResourceDigestGenerator digestGenerator,
-            ResourceChangeTracker resourceChangeTracker)
+            ResourceChangeTracker resourceChangeTracker, AssetBundle assetBundle)
     {
         this.digestGenerator = digestGenerator;
         this.resourceChangeTracker = resourceChangeTracker;
+        this.assetBundle = assetBundle;
     }
 
     @PostInjection
@@ -85,6 +105,19 @@ public class ResourceDigestManagerImpl implements ResourceDigestManager, Invalid
         return get(resource).digest;
     }
 
+    public String getContentDigest(Resource resource)
+    {
+        Cached cached = get(resource);
+
+        if (cached.url == null)
+            return null;
+
+        if (cached.contentDigest == null)
+            cached.contentDigest = cached.digest != null ? cached.digest : digestGenerator.generateDigest(cached.url);
+
+        return cached.contentDigest;
+    }
+
     public long getTimeModified(Resource resource)
     {
         return get(resource).timeModified;
@@ -102,6 +135,8 @@ public class ResourceDigestManagerImpl implements ResourceDigestManager, Invalid
 
     public void objectWasInvalidated()
     {
+        useIndex = false;
+
         cache.clear();
     }
 
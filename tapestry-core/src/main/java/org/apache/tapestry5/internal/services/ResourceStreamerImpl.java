@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -22,6 +22,8 @@ import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
 import org.apache.tapestry5.ioc.OperationTracker;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
 import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.Response;
 import org.apache.tapestry5.services.ResponseCompressionAnalyzer;
@@ -32,12 +34,34 @@ import org.apache.tapestry5.services.assets.StreamableResourceSource;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ResourceStreamerImpl implements ResourceStreamer
 {
     static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
 
+    static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    static final String IF_RANGE_HEADER = "If-Range";
+
+    static final String RANGE_HEADER = "Range";
+
+    static final String ETAG_HEADER = "ETag";
+
+    static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+
+    static final String CONTENT_RANGE_HEADER = "Content-Range";
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^(\\d*)-(\\d*)$");
+
+    private static final int BUFFER_SIZE = 8192;
+
     private final Request request;
 
     private final Response response;
@@ -83,7 +107,7 @@ public class ResourceStreamerImpl implements ResourceStreamer
             return;
         }
 
-        TapestryInternalUtils.performIO(tracker, String.format("Streaming %s", resource), new IOOperation()
+        TapestryInternalUtils.performIO(tracker, new IOOperation()
         {
             public void perform() throws IOException
             {
@@ -94,14 +118,118 @@ public class ResourceStreamerImpl implements ResourceStreamer
 
                 streamResource(streamable);
             }
-        });
+        }, "Streaming %s", resource);
     }
 
     public void streamResource(StreamableResource streamable) throws IOException
     {
         long lastModified = streamable.getLastModified();
 
-        long ifModifiedSince = 0;
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        // If-None-Match takes precedence over If-Modified-Since.
+
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+
+        if (ifNoneMatch != null ? matchesETag(ifNoneMatch, etag) : isNotModifiedSince(lastModified))
+        {
+            response.setHeader(ETAG_HEADER, etag);
+            response.sendError(HttpServletResponse.SC_NOT_MODIFIED, "");
+            return;
+        }
+
+        int size = streamable.getSize();
+
+        List<Range> ranges = parseRanges(etag, size);
+
+        if (ranges != null && ranges.isEmpty())
+        {
+            response.setHeader(CONTENT_RANGE_HEADER, "bytes */" + size);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "");
+            return;
+        }
+
+        // Prevent the upstream code from compressing when we don't want to.
+
+        response.disableCompression();
+
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader(ETAG_HEADER, etag);
+        response.setHeader(ACCEPT_RANGES_HEADER, "bytes");
+
+        if (productionMode && request.getAttribute(InternalConstants.SUPPRESS_FAR_FUTURE_EXPIRES) == null)
+        {
+            response.setDateHeader("Expires", lastModified + InternalConstants.TEN_YEARS);
+        }
+
+        if (streamable.getCompression() == CompressionStatus.COMPRESSED)
+        {
+            response.setHeader(InternalConstants.CONTENT_ENCODING_HEADER, InternalConstants.GZIP_CONTENT_ENCODING);
+        }
+
+        if (ranges == null)
+        {
+            response.setContentLength(size);
+
+            OutputStream os = response.getOutputStream(streamable.getContentType());
+
+            streamable.streamTo(os);
+
+            os.close();
+
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (ranges.size() == 1)
+        {
+            Range range = ranges.get(0);
+
+            response.setHeader(CONTENT_RANGE_HEADER, range.toContentRange(size));
+            response.setContentLength(range.length());
+
+            OutputStream os = response.getOutputStream(streamable.getContentType());
+
+            writeRanges(streamable, ranges, null, os);
+
+            os.close();
+
+            return;
+        }
+
+        String boundary = "T5-" + streamable.getChecksum();
+
+        List<byte[]> partHeaders = CollectionFactory.newList();
+
+        int contentLength = 0;
+
+        for (Range range : ranges)
+        {
+            byte[] partHeader = String.format("\r\n--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n",
+                    boundary, streamable.getContentType(), range.toContentRange(size)).getBytes("US-ASCII");
+
+            partHeaders.add(partHeader);
+
+            contentLength += partHeader.length + range.length();
+        }
+
+        byte[] end = String.format("\r\n--%s--\r\n", boundary).getBytes("US-ASCII");
+
+        response.setContentLength(contentLength + end.length);
+
+        OutputStream os = response.getOutputStream("multipart/byteranges; boundary=" + boundary);
+
+        writeRanges(streamable, ranges, partHeaders, os);
+
+        os.write(end);
+
+        os.close();
+    }
+
+    private boolean isNotModifiedSince(long lastModified)
+    {
+        long ifModifiedSince;
 
         try
         {
@@ -113,37 +241,174 @@ public class ResourceStreamerImpl implements ResourceStreamer
             ifModifiedSince = -1;
         }
 
-        if (ifModifiedSince > 0)
+        return ifModifiedSince > 0 && ifModifiedSince >= lastModified;
+    }
+
+    /**
+     * Checks an If-None-Match header: "*", or a list of entity tags.
+     */
+    private static boolean matchesETag(String header, String etag)
+    {
+        for (String candidate : TapestryInternalUtils.splitAtCommas(header))
         {
-            if (ifModifiedSince >= lastModified)
-            {
-                response.sendError(HttpServletResponse.SC_NOT_MODIFIED, "");
-                return;
-            }
+            if (candidate.equals("*") || candidate.equals(etag))
+                return true;
         }
 
-        // Prevent the upstream code from compressing when we don't want to.
+        return false;
+    }
 
-        response.disableCompression();
+    /**
+     * Parses the Range header (only byte ranges are supported).
+     *
+     * @return null if the entire content should be sent (there is no valid Range header, or the If-Range header
+     *         indicates the content has changed), or the satisfiable ranges (which may be empty)
+     */
+    private List<Range> parseRanges(String etag, int size)
+    {
+        String header = request.getHeader(RANGE_HEADER);
 
-        response.setDateHeader("Last-Modified", lastModified);
+        if (header == null || !header.startsWith(BYTES_UNIT))
+            return null;
+
+        // Only an entity tag is supported for If-Range; if a date is provided, the entire content is sent.
 
-        if (productionMode)
+        String ifRange = request.getHeader(IF_RANGE_HEADER);
+
+        if (ifRange != null && !ifRange.equals(etag))
+            return null;
+
+        List<Range> result = CollectionFactory.newList();
+
+        for (String spec : TapestryInternalUtils.splitAtCommas(header.substring(BYTES_UNIT.length())))
         {
-            response.setDateHeader("Expires", lastModified + InternalConstants.TEN_YEARS);
+            Matcher matcher = RANGE_PATTERN.matcher(spec);
+
+            if (!matcher.matches())
+                return null;
+
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+
+            if (first.length() == 0 && last.length() == 0)
+                return null;
+
+            try
+            {
+                Range range;
+
+                if (first.length() == 0)
+                {
+                    // A suffix: the final bytes.
+
+                    long suffixLength = Long.parseLong(last);
+
+                    if (suffixLength == 0)
+                        continue;
+
+                    range = new Range((int) Math.max(0, size - suffixLength), size - 1);
+                } else
+                {
+                    long start = Long.parseLong(first);
+                    long end = last.length() == 0 ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+
+                    if (end < start)
+                    {
+                        // Syntactically invalid when the last byte position is given; unsatisfiable otherwise.
+
+                        if (last.length() != 0 && Long.parseLong(last) < start)
+                            return null;
+
+                        continue;
+                    }
+
+                    range = new Range((int) start, (int) end);
+                }
+
+                if (range.start < size)
+                    result.add(range);
+            } catch (NumberFormatException ex)
+            {
+                return null;
+            }
         }
 
-        response.setContentLength(streamable.getSize());
+        return result;
+    }
 
-        if (streamable.getCompression() == CompressionStatus.COMPRESSED)
+    /**
+     * Writes each range of the content directly from the (cached) content, preceded by its part header (for a
+     * multipart response).
+     */
+    private static void writeRanges(StreamableResource streamable, List<Range> ranges, List<byte[]> partHeaders,
+                                    OutputStream os) throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        for (int i = 0; i < ranges.size(); i++)
         {
-            response.setHeader(InternalConstants.CONTENT_ENCODING_HEADER, InternalConstants.GZIP_CONTENT_ENCODING);
+            Range range = ranges.get(i);
+
+            if (partHeaders != null)
+                os.write(partHeaders.get(i));
+
+            InputStream is = streamable.openStream();
+
+            try
+            {
+                long toSkip = range.start;
+
+                while (toSkip > 0)
+                {
+                    long skipped = is.skip(toSkip);
+
+                    if (skipped <= 0)
+                        throw new IOException(String.format("Unable to skip to offset %d of %s.", range.start, streamable));
+
+                    toSkip -= skipped;
+                }
+
+                int remaining = range.length();
+
+                while (remaining > 0)
+                {
+                    int count = is.read(buffer, 0, Math.min(buffer.length, remaining));
+
+                    if (count < 0)
+                        throw new IOException(String.format("Unexpected end of content of %s.", streamable));
+
+                    os.write(buffer, 0, count);
+
+                    remaining -= count;
+                }
+            } finally
+            {
+                InternalUtils.close(is);
+            }
         }
+    }
+
+    /**
+     * A range of bytes, from start to end (inclusive).
+     */
+    private static class Range
+    {
+        final int start, end;
 
-        OutputStream os = response.getOutputStream(streamable.getContentType());
+        Range(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
 
-        streamable.streamTo(os);
+        int length()
+        {
+            return end - start + 1;
+        }
 
-        os.close();
+        String toContentRange(int size)
+        {
+            return String.format("bytes %d-%d/%d", start, end, size);
+        }
     }
 }
@@ -0,0 +1,45 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.parser.ComponentTemplate;
+import org.apache.tapestry5.ioc.Resource;
+
+/**
+ * Persistent storage of parsed component templates, used by the {@link ComponentTemplateSource} to avoid re-parsing
+ * unchanged templates each time the application is restarted. Stored templates are identified by a checksum of the
+ * template's content, so a template that has changed is never satisfied from the store.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#TEMPLATE_CACHE_DIR
+ * @since 5.4
+ */
+public interface TemplateStore
+{
+    /**
+     * Returns the stored template for the resource, if the resource's current content was previously stored.
+     *
+     * @param templateResource the template resource, which must exist
+     * @return the template, or null if not stored (or if the store is disabled)
+     */
+    ComponentTemplate load(Resource templateResource);
+
+    /**
+     * Stores a template just parsed from a resource. Failures to store the template are logged, but not thrown.
+     *
+     * @param templateResource the resource that was parsed
+     * @param template         the result of parsing the resource
+     */
+    void store(Resource templateResource, ComponentTemplate template);
+}
@@ -0,0 +1,182 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.parser.ComponentTemplate;
+import org.apache.tapestry5.internal.parser.ComponentTemplateImpl;
+import org.apache.tapestry5.internal.parser.ComponentTemplateSerializer;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.security.MessageDigest;
+
+/**
+ * Stores each parsed template as a file in the {@linkplain SymbolConstants#TEMPLATE_CACHE_DIR template cache
+ * directory}, named for an MD5 checksum of the template's content (and of the parser options that affect the parsed
+ * result). Files are written to a temporary name and then renamed, so a concurrent (or interrupted) write never
+ * leaves a partial file in place. A file that can't be read is deleted, and the template is parsed as usual.
+ *
+ * @since 5.4
+ */
+public class TemplateStoreImpl implements TemplateStore
+{
+    private static final int BUFFER_SIZE = 5000;
+
+    private static final String EXTENSION = ".template";
+
+    private final Logger logger;
+
+    private final File directory;
+
+    private final boolean compressWhitespace;
+
+    public TemplateStoreImpl(Logger logger,
+
+                             @Symbol(SymbolConstants.TEMPLATE_CACHE_DIR)
+                             String directory,
+
+                             @Symbol(SymbolConstants.COMPRESS_WHITESPACE)
+                             boolean compressWhitespace)
+    {
+        this.logger = logger;
+        this.directory = InternalUtils.isBlank(directory) ? null : new File(directory.trim());
+        this.compressWhitespace = compressWhitespace;
+    }
+
+    public ComponentTemplate load(Resource templateResource)
+    {
+        if (directory == null)
+            return null;
+
+        File file = toFile(templateResource);
+
+        if (file == null || !file.isFile())
+            return null;
+
+        DataInputStream in = null;
+
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            return ComponentTemplateSerializer.read(templateResource, in);
+        } catch (Exception ex)
+        {
+            logger.warn(String.format("Unable to read stored template %s (for %s): %s", file, templateResource,
+                    InternalUtils.toMessage(ex)));
+
+            InternalUtils.close(in);
+            in = null;
+
+            file.delete();
+
+            return null;
+        } finally
+        {
+            InternalUtils.close(in);
+        }
+    }
+
+    public void store(Resource templateResource, ComponentTemplate template)
+    {
+        // Only templates produced by the template parser can be stored.
+
+        if (directory == null || !(template instanceof ComponentTemplateImpl))
+            return;
+
+        File file = toFile(templateResource);
+
+        if (file == null || file.isFile())
+            return;
+
+        File temp = null;
+        DataOutputStream out = null;
+
+        try
+        {
+            directory.mkdirs();
+
+            temp = File.createTempFile("template", ".tmp", directory);
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+            ComponentTemplateSerializer.write((ComponentTemplateImpl) template, out);
+
+            out.close();
+            out = null;
+
+            // Another thread (or another process sharing the directory) may have stored the same template
+            // in the meantime; in which case, the rename fails and the temporary file is simply discarded.
+
+            if (temp.renameTo(file))
+                temp = null;
+        } catch (IOException ex)
+        {
+            logger.warn(String.format("Unable to store parsed template %s to %s: %s", templateResource, directory,
+                    InternalUtils.toMessage(ex)));
+        } finally
+        {
+            InternalUtils.close(out);
+
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    /**
+     * Returns the file that stores the given resource's current content, or null if the resource can't be read.
+     */
+    private File toFile(Resource templateResource)
+    {
+        InputStream stream = null;
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+
+            digest.update((byte) (compressWhitespace ? 1 : 0));
+
+            stream = new BufferedInputStream(templateResource.openStream());
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (true)
+            {
+                int length = stream.read(buffer);
+
+                if (length < 0)
+                    break;
+
+                digest.update(buffer, 0, length);
+            }
+
+            return new File(directory, new String(Hex.encodeHex(digest.digest())) + EXTENSION);
+        } catch (Exception ex)
+        {
+            logger.warn(String.format("Unable to compute checksum of template %s: %s", templateResource,
+                    InternalUtils.toMessage(ex)));
+
+            return null;
+        } finally
+        {
+            InternalUtils.close(stream);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.io.IOException;
+
+/**
+ * A directory of assets that were minified, compressed and (for JavaScript stacks) aggregated ahead of time by the
+ * {@link AssetBundleGenerator}, along with a manifest that identifies the files for each asset, and an index of the
+ * digests of the original resources.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#ASSET_BUNDLE_DIRECTORY
+ * @since 5.4
+ */
+public interface AssetBundle
+{
+    /**
+     * Returns true if a bundle directory has been configured.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the bundled content for an asset.
+     *
+     * @param key
+     *         identifies the asset; for a {@link org.apache.tapestry5.ioc.Resource}, this is the resource's
+     *         {@code toString()} (e.g., "classpath:org/apache/tapestry5/t5-core.js"); for a JavaScript stack,
+     *         see {@link StackAssetRequestHandler#toBundleKey(String)}
+     * @param compressed
+     *         if true, the compressed content is returned, if the bundle contains it
+     * @return the content, or null if the bundle does not contain the asset
+     */
+    StreamableResource find(String key, boolean compressed) throws IOException;
+
+    /**
+     * Returns the MD5 digest of the original (not minimized or compressed) content of a resource, as computed when the
+     * bundle was generated. The index includes the classpath resources (within the folders mapped by the
+     * {@link org.apache.tapestry5.services.ClasspathAssetAliasManager}) that are bundled or that
+     * {@linkplain org.apache.tapestry5.services.ResourceDigestGenerator#requiresDigest(String) require a digest}, and
+     * the bundled context assets.
+     *
+     * @param key
+     *         identifies the resource, as with {@link #find(String, boolean)}
+     * @return the digest, or null if the bundle does not contain a digest for the resource
+     */
+    String getDigest(String key);
+}
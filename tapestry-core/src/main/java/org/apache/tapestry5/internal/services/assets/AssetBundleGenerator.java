@@ -0,0 +1,337 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.internal.test.TestableRequest;
+import org.apache.tapestry5.internal.test.TestableResponse;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.Autobuild;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
+import org.apache.tapestry5.services.*;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
+import org.apache.tapestry5.services.assets.StreamableResourceSource;
+import org.apache.tapestry5.services.javascript.JavaScriptStackSource;
+import org.apache.tapestry5.test.PageTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an {@link AssetBundle}: every context asset and every classpath asset (within the folders mapped by the
+ * {@link ClasspathAssetAliasManager}) with a known extension, and every combined JavaScript stack in each supported
+ * locale, each processed exactly as it would be when requested (minimized and compressed, as configured). The
+ * bundle also has an index of the digests of those resources, and of the protected classpath resources (those that
+ * {@linkplain ResourceDigestGenerator#requiresDigest(String) require a digest}) within the same folders. An
+ * application then serves its assets from the bundle, and builds asset URLs from the index (without reading each
+ * resource), by setting {@link SymbolConstants#ASSET_BUNDLE_DIRECTORY}.
+ * <p/>
+ * The generator is run as a main class, with the application on the classpath (for example, from a Gradle
+ * {@code JavaExec} task):
+ * <pre>
+ * java org.apache.tapestry5.internal.services.assets.AssetBundleGenerator
+ *      &lt;application package&gt; &lt;application name&gt; &lt;context directory&gt; &lt;bundle directory&gt;
+ * </pre>
+ * The application's symbols should match production (in particular, {@link SymbolConstants#PRODUCTION_MODE} and
+ * {@link SymbolConstants#MINIFICATION_ENABLED}); they may be set as system properties.
+ *
+ * @since 5.4
+ */
+public class AssetBundleGenerator
+{
+    /**
+     * Extensions of files that are included in the bundle.
+     */
+    private static final Set<String> EXTENSIONS = CollectionFactory.newSet(Arrays.asList("js", "css", "gif", "jpg",
+            "jpeg", "png", "svg", "swf"));
+
+    private final StreamableResourceSource streamableResourceSource;
+
+    private final ResourceChangeTracker resourceChangeTracker;
+
+    private final ClasspathAssetAliasManager classpathAssetAliasManager;
+
+    private final ClasspathURLConverter converter;
+
+    private final AssetFactory contextAssetFactory;
+
+    private final JavaScriptStackSource javaScriptStackSource;
+
+    private final StackAssetRequestHandler stackAssetRequestHandler;
+
+    private final ResourceDigestGenerator digestGenerator;
+
+    private final String supportedLocales;
+
+    private final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+    public AssetBundleGenerator(StreamableResourceSource streamableResourceSource,
+                                ResourceChangeTracker resourceChangeTracker,
+                                ClasspathAssetAliasManager classpathAssetAliasManager, ClasspathURLConverter converter,
+
+                                @ContextProvider
+                                AssetFactory contextAssetFactory,
+
+                                JavaScriptStackSource javaScriptStackSource,
+
+                                @Autobuild
+                                StackAssetRequestHandler stackAssetRequestHandler,
+
+                                ResourceDigestGenerator digestGenerator,
+
+                                @Symbol(SymbolConstants.SUPPORTED_LOCALES)
+                                String supportedLocales)
+    {
+        this.streamableResourceSource = streamableResourceSource;
+        this.resourceChangeTracker = resourceChangeTracker;
+        this.classpathAssetAliasManager = classpathAssetAliasManager;
+        this.converter = converter;
+        this.contextAssetFactory = contextAssetFactory;
+        this.javaScriptStackSource = javaScriptStackSource;
+        this.stackAssetRequestHandler = stackAssetRequestHandler;
+        this.digestGenerator = digestGenerator;
+        this.supportedLocales = supportedLocales;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length != 4)
+        {
+            System.err.println("Usage: AssetBundleGenerator <application package> <application name> <context directory> <bundle directory>");
+            System.exit(-1);
+        }
+
+        // The bundle must be generated from the original assets, not from an earlier bundle, and must contain
+        // the minimized content.
+
+        System.setProperty(SymbolConstants.ASSET_BUNDLE_DIRECTORY, "");
+        System.setProperty(SymbolConstants.ASYNC_MINIFICATION, "false");
+
+        PageTester tester = new PageTester(args[0], args[1], args[2]);
+
+        try
+        {
+            // Assembling a stack builds client URLs for its libraries, which requires a request.
+
+            tester.getService(RequestGlobals.class).storeRequestResponse(tester.getService(TestableRequest.class),
+                    tester.getService(TestableResponse.class));
+
+            AssetBundleGenerator generator = tester.getRegistry().autobuild(AssetBundleGenerator.class);
+
+            File directory = new File(args[3]);
+
+            int count = generator.generate(new File(args[2]), directory);
+
+            System.out.printf("Wrote %d assets to asset bundle %s.%n", count, directory);
+        } finally
+        {
+            tester.shutdown();
+        }
+    }
+
+    /**
+     * Writes the bundle's files, manifest and digest index into the directory, which is created if necessary.
+     *
+     * @param contextDirectory
+     *         the root directory of the web application (containing context assets)
+     * @param directory
+     *         the bundle directory
+     * @return the number of assets in the bundle
+     */
+    public int generate(File contextDirectory, File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException(String.format("Unable to create asset bundle directory %s.", directory));
+
+        AssetBundleWriter writer = new AssetBundleWriter(directory);
+
+        addContextAssets(writer, contextDirectory);
+        addClasspathAssets(writer);
+        addStacks(writer);
+
+        return writer.writeManifest();
+    }
+
+    private void addContextAssets(AssetBundleWriter writer, File contextDirectory) throws IOException
+    {
+        List<String> paths = CollectionFactory.newList();
+
+        for (File file : contextDirectory.listFiles())
+        {
+            String name = file.getName();
+
+            if (!(name.equalsIgnoreCase("WEB-INF") || name.equalsIgnoreCase("META-INF")))
+                collectFiles(file, name, paths, false);
+        }
+
+        Resource rootResource = contextAssetFactory.getRootResource();
+
+        for (String path : paths)
+        {
+            Resource resource = rootResource.forFile(path);
+
+            addResource(writer, resource, path);
+            addDigest(writer, resource);
+        }
+    }
+
+    private void addClasspathAssets(AssetBundleWriter writer) throws IOException
+    {
+        // Mapped folders may overlap (for example, a library's folder may be inside the application's package).
+
+        Set<String> paths = CollectionFactory.newSet();
+
+        for (String folderPath : classpathAssetAliasManager.getMappings().values())
+        {
+            Enumeration<URL> urls = classLoader.getResources(folderPath + "/");
+
+            while (urls.hasMoreElements())
+            {
+                collectClasspathFiles(converter.convert(urls.nextElement()), folderPath, paths);
+            }
+        }
+
+        for (String path : paths)
+        {
+            Resource resource = new ClasspathResource(classLoader, path);
+
+            if (isAsset(path))
+                addResource(writer, resource, path);
+
+            addDigest(writer, resource);
+        }
+    }
+
+    private void collectClasspathFiles(URL url, String folderPath, Collection<String> paths) throws IOException
+    {
+        if (url.getProtocol().equals("file"))
+        {
+            collectFiles(new File(url.getFile()), folderPath, paths, true);
+            return;
+        }
+
+        URLConnection connection = url.openConnection();
+
+        if (!(connection instanceof JarURLConnection))
+            throw new IOException(String.format("Unable to list the contents of %s.", url));
+
+        JarFile jarFile = ((JarURLConnection) connection).getJarFile();
+
+        Enumeration<JarEntry> entries = jarFile.entries();
+
+        while (entries.hasMoreElements())
+        {
+            String name = entries.nextElement().getName();
+
+            if (name.startsWith(folderPath + "/") && isIncluded(name, true))
+                paths.add(name);
+        }
+    }
+
+    private void collectFiles(File file, String path, Collection<String> paths, boolean classpath)
+    {
+        if (file.isDirectory())
+        {
+            for (File child : file.listFiles())
+            {
+                collectFiles(child, path + "/" + child.getName(), paths, classpath);
+            }
+
+            return;
+        }
+
+        if (isIncluded(path, classpath))
+            paths.add(path);
+    }
+
+    /**
+     * Assets are bundled; protected classpath resources are not, but are included in the digest index. Class files are
+     * protected only so that they can't be downloaded (pages don't link to them), and would make up most of the index,
+     * so they are left out; their digests are still computed if needed.
+     */
+    private boolean isIncluded(String path, boolean classpath)
+    {
+        return isAsset(path) || (classpath && !path.endsWith(".class") && digestGenerator.requiresDigest(path));
+    }
+
+    private static boolean isAsset(String path)
+    {
+        int dotx = path.lastIndexOf('.');
+
+        return dotx > path.lastIndexOf('/') && EXTENSIONS.contains(path.substring(dotx + 1).toLowerCase());
+    }
+
+    private void addResource(AssetBundleWriter writer, Resource resource, String path) throws IOException
+    {
+        StreamableResource content = streamableResourceSource.getStreamableResource(resource,
+                StreamableResourceProcessing.COMPRESSION_DISABLED, resourceChangeTracker);
+
+        StreamableResource compressed = streamableResourceSource.getStreamableResource(resource,
+                StreamableResourceProcessing.COMPRESSION_ENABLED, resourceChangeTracker);
+
+        writer.add(resource.toString(), path, content, bestCompression(content, compressed));
+    }
+
+    private void addDigest(AssetBundleWriter writer, Resource resource)
+    {
+        writer.addDigest(resource.toString(), digestGenerator.generateDigest(resource.toURL()));
+    }
+
+    /**
+     * The bundle is written ahead of time, so content that is worth compressing at all is compressed at the highest
+     * level.
+     */
+    private static StreamableResource bestCompression(StreamableResource content, StreamableResource compressed)
+            throws IOException
+    {
+        return compressed.getCompression() == CompressionStatus.COMPRESSED
+                ? AssetUtils.gzip(content, Deflater.BEST_COMPRESSION)
+                : compressed;
+    }
+
+    private void addStacks(AssetBundleWriter writer) throws IOException
+    {
+        for (String stackName : javaScriptStackSource.getStackNames())
+        {
+            // Only stacks with more than one library are ever requested as a combined stack.
+
+            if (javaScriptStackSource.getStack(stackName).getJavaScriptLibraries().size() < 2)
+                continue;
+
+            for (String localeName : TapestryInternalUtils.splitAtCommas(supportedLocales))
+            {
+                String extraPath = String.format("%s/%s.js", localeName, stackName);
+
+                StreamableResource content = stackAssetRequestHandler.getResource(extraPath, false);
+
+                writer.add(StackAssetRequestHandler.toBundleKey(extraPath), extraPath.replace('/', '-'), content,
+                        bestCompression(content, stackAssetRequestHandler.getResource(extraPath, true)));
+            }
+        }
+    }
+}
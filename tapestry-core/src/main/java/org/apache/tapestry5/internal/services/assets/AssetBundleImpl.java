@@ -0,0 +1,185 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the bundle's manifest and digest index when first used; the content of each bundled file is read (or, for large files,
+ * memory-mapped) on first access, and kept (the bundle is fixed, so there is nothing to invalidate).
+ *
+ * @since 5.4
+ */
+public class AssetBundleImpl implements AssetBundle
+{
+    static final String MANIFEST_FILE = "manifest.json";
+
+    static final String DIGESTS_FILE = "digests.json";
+
+    static final String CONTENT_TYPE = "contentType";
+
+    static final String COMPRESSION = "compression";
+
+    static final String LAST_MODIFIED = "lastModified";
+
+    static final String FILE = "file";
+
+    static final String COMPRESSED_FILE = "compressedFile";
+
+    private final File directory;
+
+    private final JSONObject manifest;
+
+    /**
+     * Immutable once read; empty when there is no bundle, or for a bundle generated without a digest index.
+     */
+    private final Map<String, String> digests;
+
+    private final int mappingThreshold;
+
+    private final Map<String, StreamableResource> cache = CollectionFactory.newConcurrentMap();
+
+    public AssetBundleImpl(Logger logger,
+
+                           @Symbol(SymbolConstants.ASSET_BUNDLE_DIRECTORY)
+                           String directory,
+
+                           @Symbol(SymbolConstants.ASSET_SPOOL_THRESHOLD)
+                           int mappingThreshold)
+    {
+        this.mappingThreshold = mappingThreshold;
+
+        if (InternalUtils.isBlank(directory))
+        {
+            this.directory = null;
+            this.manifest = null;
+            this.digests = Collections.emptyMap();
+
+            return;
+        }
+
+        this.directory = new File(directory.trim());
+
+        manifest = readJSON(new File(this.directory, MANIFEST_FILE));
+
+        digests = readDigests(new File(this.directory, DIGESTS_FILE));
+
+        logger.info(String.format("Serving %d assets from asset bundle %s.", manifest.length(), this.directory));
+    }
+
+    public boolean isEnabled()
+    {
+        return manifest != null;
+    }
+
+    public String getDigest(String key)
+    {
+        return digests.get(key);
+    }
+
+    public StreamableResource find(String key, boolean compressed) throws IOException
+    {
+        if (manifest == null || !manifest.has(key))
+            return null;
+
+        JSONObject entry = manifest.getJSONObject(key);
+
+        boolean useCompressed = compressed && entry.has(COMPRESSED_FILE);
+
+        String fileName = entry.getString(useCompressed ? COMPRESSED_FILE : FILE);
+
+        StreamableResource result = cache.get(fileName);
+
+        if (result == null)
+        {
+            CompressionStatus compression = useCompressed ? CompressionStatus.COMPRESSED
+                    : CompressionStatus.valueOf(entry.getString(COMPRESSION));
+
+            result = new StreamableResourceImpl(key, entry.getString(CONTENT_TYPE), compression,
+                    entry.getLong(LAST_MODIFIED), toBytestreamCache(new File(directory, fileName)));
+
+            cache.put(fileName, result);
+        }
+
+        return result;
+    }
+
+    private static JSONObject readJSON(File file)
+    {
+        try
+        {
+            return new JSONObject(new String(read(file), "UTF-8"));
+        } catch (IOException ex)
+        {
+            throw new RuntimeException(String.format("Unable to read asset bundle file %s: %s", file,
+                    InternalUtils.toMessage(ex)), ex);
+        }
+    }
+
+    private static Map<String, String> readDigests(File file)
+    {
+        if (!file.exists())
+            return Collections.emptyMap();
+
+        JSONObject index = readJSON(file);
+
+        Map<String, String> result = new HashMap<String, String>(index.length() * 4 / 3 + 1);
+
+        for (String key : index.keys())
+        {
+            result.put(key, index.getString(key));
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Large files are memory-mapped, rather than read onto the heap.
+     */
+    private BytestreamCache toBytestreamCache(File file) throws IOException
+    {
+        return file.length() >= mappingThreshold ? BytestreamCache.map(file) : new BytestreamCache(read(file));
+    }
+
+    private static byte[] read(File file) throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+
+        try
+        {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream((int) file.length());
+
+            TapestryInternalUtils.copy(in, bos);
+
+            return bos.toByteArray();
+        } finally
+        {
+            InternalUtils.close(in);
+        }
+    }
+}
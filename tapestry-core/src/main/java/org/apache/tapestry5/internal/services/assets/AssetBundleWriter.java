@@ -0,0 +1,137 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.json.JSONObject;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.io.*;
+
+/**
+ * Writes the files of an {@link AssetBundle}: each asset's content is stored in a file named for the asset and an MD5
+ * checksum of its content (so identical content is stored just once), with a second, gzipped file when the content
+ * was compressed. The manifest and the digest index are written last.
+ *
+ * @since 5.4
+ */
+class AssetBundleWriter
+{
+    private final File directory;
+
+    private final JSONObject manifest = new JSONObject();
+
+    private final JSONObject digests = new JSONObject();
+
+    AssetBundleWriter(File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Adds an asset to the bundle.
+     *
+     * @param key
+     *         identifies the asset, see {@link AssetBundle#find(String, boolean)}
+     * @param path
+     *         the asset's path, used to name the bundled files
+     * @param content
+     *         the asset's content, which may be minimized but is not compressed
+     * @param compressed
+     *         the compressed content, or the same content if it was not compressed (because of the content type, or
+     *         because it was too small to benefit)
+     */
+    void add(String key, String path, StreamableResource content, StreamableResource compressed) throws IOException
+    {
+        byte[] bytes = AssetUtils.toBytes(content);
+
+        String fileName = toFileName(path, bytes);
+
+        write(fileName, bytes);
+
+        JSONObject entry = new JSONObject(
+                AssetBundleImpl.CONTENT_TYPE, content.getContentType(),
+                AssetBundleImpl.COMPRESSION, content.getCompression().name(),
+                AssetBundleImpl.FILE, fileName);
+
+        entry.put(AssetBundleImpl.LAST_MODIFIED, content.getLastModified());
+
+        if (compressed.getCompression() == CompressionStatus.COMPRESSED)
+        {
+            String compressedFileName = fileName + ".gz";
+
+            write(compressedFileName, AssetUtils.toBytes(compressed));
+
+            entry.put(AssetBundleImpl.COMPRESSED_FILE, compressedFileName);
+        }
+
+        manifest.put(key, entry);
+    }
+
+    /**
+     * Adds a resource's digest to the digest index.
+     *
+     * @param key
+     *         identifies the resource, see {@link AssetBundle#getDigest(String)}
+     * @param digest
+     *         MD5 digest of the resource's original content
+     */
+    void addDigest(String key, String digest)
+    {
+        digests.put(key, digest);
+    }
+
+    /**
+     * Writes the manifest, which identifies the files for each added asset, and the digest index.
+     *
+     * @return the number of assets in the bundle
+     */
+    int writeManifest() throws IOException
+    {
+        write(AssetBundleImpl.MANIFEST_FILE, manifest.toString(false).getBytes("UTF-8"));
+        write(AssetBundleImpl.DIGESTS_FILE, digests.toString(false).getBytes("UTF-8"));
+
+        return manifest.length();
+    }
+
+    private static String toFileName(String path, byte[] content)
+    {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+
+        int dotx = name.lastIndexOf('.');
+
+        String base = dotx < 0 ? name : name.substring(0, dotx);
+        String extension = dotx < 0 ? "" : name.substring(dotx);
+
+        return base + "-" + AssetUtils.checksum(content) + extension;
+    }
+
+    private void write(String fileName, byte[] content) throws IOException
+    {
+        OutputStream out = new FileOutputStream(new File(directory, fileName));
+
+        try
+        {
+            out.write(content);
+
+            out.close();
+            out = null;
+        } finally
+        {
+            InternalUtils.close(out);
+        }
+    }
+}
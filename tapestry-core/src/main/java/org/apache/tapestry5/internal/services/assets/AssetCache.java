@@ -0,0 +1,83 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+/**
+ * A cache of {@link StreamableResource}s bounded by the total size of their content; when the cache is full, the least
+ * recently used content is evicted. The cache is shared by several users (for example, the caching interceptors for
+ * uncompressed and compressed content), each identifying its entries with its own region object; all regions share
+ * the same size limit.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#ASSET_CACHE_SIZE
+ * @since 5.4
+ */
+public interface AssetCache
+{
+    /**
+     * Returns the cached content, or null if not cached.
+     */
+    StreamableResource get(Object region, Object key);
+
+    /**
+     * Caches the content, possibly evicting other content. Content larger than the cache's maximum size is not
+     * cached.
+     */
+    void put(Object region, Object key, StreamableResource content);
+
+    /**
+     * Replaces the cached content, but only if the expected content is still cached.
+     *
+     * @return true if the content was replaced
+     */
+    boolean replace(Object region, Object key, StreamableResource expected, StreamableResource replacement);
+
+    /**
+     * Removes all the content in a region.
+     */
+    void clear(Object region);
+
+    /**
+     * Returns the combined size, in bytes, of the cached content.
+     */
+    long getSize();
+
+    /**
+     * Returns the maximum combined size, in bytes, of the cached content.
+     */
+    long getMaxSize();
+
+    /**
+     * Returns the number of cached entries, in all regions.
+     */
+    int getEntryCount();
+
+    /**
+     * Returns the number of calls to {@link #get(Object, Object)} that found cached content.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of calls to {@link #get(Object, Object)} that did not find cached content.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the number of entries evicted to keep the cache within its maximum size.
+     */
+    long getEvictionCount();
+}
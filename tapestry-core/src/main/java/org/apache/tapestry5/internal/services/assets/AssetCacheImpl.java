@@ -0,0 +1,189 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Entries are kept in a {@link LinkedHashMap} in access order, so the eldest entry is the least recently used. All
+ * access is synchronized; the operations are all quick, as content is never read or copied inside the lock.
+ *
+ * @since 5.4
+ */
+public class AssetCacheImpl implements AssetCache
+{
+    private static final class Key
+    {
+        final Object region;
+
+        final Object key;
+
+        Key(Object region, Object key)
+        {
+            this.region = region;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * region.hashCode() + key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+
+            return region.equals(other.region) && key.equals(other.key);
+        }
+    }
+
+    private final long maxSize;
+
+    private final LinkedHashMap<Key, StreamableResource> entries = new LinkedHashMap<Key, StreamableResource>(64,
+            0.75f, true);
+
+    private long size, hits, misses, evictions;
+
+    public AssetCacheImpl(@Symbol(SymbolConstants.ASSET_CACHE_SIZE)
+                          long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized StreamableResource get(Object region, Object key)
+    {
+        StreamableResource result = entries.get(new Key(region, key));
+
+        if (result == null)
+            misses++;
+        else
+            hits++;
+
+        return result;
+    }
+
+    public synchronized void put(Object region, Object key, StreamableResource content)
+    {
+        Key cacheKey = new Key(region, key);
+
+        remove(cacheKey);
+
+        if (content.getSize() > maxSize)
+            return;
+
+        entries.put(cacheKey, content);
+        size += content.getSize();
+
+        evict();
+    }
+
+    public synchronized boolean replace(Object region, Object key, StreamableResource expected,
+                                        StreamableResource replacement)
+    {
+        Key cacheKey = new Key(region, key);
+
+        if (entries.get(cacheKey) != expected)
+            return false;
+
+        put(region, key, replacement);
+
+        return true;
+    }
+
+    public synchronized void clear(Object region)
+    {
+        Iterator<Map.Entry<Key, StreamableResource>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext())
+        {
+            Map.Entry<Key, StreamableResource> entry = iterator.next();
+
+            if (entry.getKey().region.equals(region))
+            {
+                size -= entry.getValue().getSize();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void remove(Key key)
+    {
+        StreamableResource existing = entries.remove(key);
+
+        if (existing != null)
+            size -= existing.getSize();
+    }
+
+    private void evict()
+    {
+        Iterator<StreamableResource> iterator = entries.values().iterator();
+
+        while (size > maxSize)
+        {
+            size -= iterator.next().getSize();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("AssetCache[%,d entries, %,d of %,d bytes, %,d hits, %,d misses, %,d evictions]",
+                entries.size(), size, maxSize, hits, misses, evictions);
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,12 +15,19 @@
 package org.apache.tapestry5.internal.services.assets;
 
 import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.internal.services.ResourceDigestManager;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.InvalidationListener;
 import org.apache.tapestry5.services.BaseURLSource;
 import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.assets.AssetPathConstructor;
 
-public class AssetPathConstructorImpl implements AssetPathConstructor
+import java.util.Map;
+
+public class AssetPathConstructorImpl implements AssetPathConstructor, InvalidationListener
 {
     private final Request request;
 
@@ -30,6 +37,19 @@ public class AssetPathConstructorImpl implements AssetPathConstructor
 
     private final boolean fullyQualified;
 
+    /**
+     * Prefix, without the application version; null unless content digests are enabled.
+     */
+    private final String digestPrefix;
+
+    private final ResourceDigestManager digestManager;
+
+    /**
+     * Digest most recently used in the URL for each asset path (virtual folder and path); cleared when any resource
+     * changes.
+     */
+    private final Map<String, String> assetPathToDigest = CollectionFactory.newConcurrentMap();
+
     public AssetPathConstructorImpl(Request request,
                                     BaseURLSource baseURLSource,
 
@@ -43,19 +63,85 @@ public class AssetPathConstructorImpl implements AssetPathConstructor
                                     boolean fullyQualified,
 
                                     @Symbol(SymbolConstants.ASSET_PATH_PREFIX)
-                                    String assetPathPrefix)
+                                    String assetPathPrefix,
+
+                                    ResourceDigestManager digestManager,
+
+                                    @Symbol(SymbolConstants.ASSET_URL_CONTENT_DIGEST)
+                                    boolean contentDigest)
     {
         this.request = request;
         this.baseURLSource = baseURLSource;
 
         this.fullyQualified = fullyQualified;
+        this.digestManager = digestManager;
 
         String folder = applicationFolder.equals("") ? "" : "/" + applicationFolder;
 
         this.prefix = folder + assetPathPrefix + applicationVersion + "/";
+        this.digestPrefix = contentDigest ? folder + assetPathPrefix : null;
+    }
+
+    @PostInjection
+    public void listenForInvalidations()
+    {
+        if (digestPrefix != null)
+            digestManager.addInvalidationListener(this);
     }
 
     public String constructAssetPath(String virtualFolder, String path)
+    {
+        return buildPath(prefix, virtualFolder, path);
+    }
+
+    public String constructAssetPath(String virtualFolder, String path, Resource... resources)
+    {
+        String digest = digestPrefix == null ? null : digest(resources);
+
+        if (digest != null)
+            assetPathToDigest.put(virtualFolder + "/" + path, digest);
+
+        return buildPath(digest == null ? prefix : digestPrefix + digest + "/", virtualFolder, path);
+    }
+
+    public String getContentDigest(String assetPath)
+    {
+        return assetPathToDigest.get(assetPath);
+    }
+
+    public void objectWasInvalidated()
+    {
+        assetPathToDigest.clear();
+    }
+
+    /**
+     * Returns the digest of a single resource's content, or a digest of the digests of several resources; returns
+     * null if any resource does not exist.
+     */
+    private String digest(Resource[] resources)
+    {
+        if (resources.length == 1)
+            return digestManager.getContentDigest(resources[0]);
+
+        if (resources.length == 0)
+            return null;
+
+        StringBuilder digests = new StringBuilder();
+
+        for (Resource resource : resources)
+        {
+            String digest = digestManager.getContentDigest(resource);
+
+            if (digest == null)
+                return null;
+
+            digests.append(digest);
+        }
+
+        return AssetUtils.checksum(digests.toString().getBytes());
+    }
+
+    private String buildPath(String prefix, String virtualFolder, String path)
     {
         StringBuilder builder = new StringBuilder();
 
@@ -0,0 +1,34 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+/**
+ * Moves the content of large, cached, assets out of the Java heap, into memory-mapped files in a spool directory.
+ * Optionally, the content of other cached assets is moved into direct buffers.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#ASSET_SPOOL_DIRECTORY
+ * @since 5.4
+ */
+public interface AssetSpool
+{
+    /**
+     * Returns the resource unchanged if it is small (or no spool directory is configured); otherwise, returns an
+     * equivalent resource whose content is mapped from a file in the spool directory. A small resource may instead be
+     * copied into a direct buffer, if {@linkplain org.apache.tapestry5.SymbolConstants#ASSET_CACHE_OFF_HEAP enabled}.
+     */
+    StreamableResource spool(StreamableResource resource);
+}
@@ -0,0 +1,198 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.services.InvalidationListener;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Each spooled file is named for an MD5 checksum of its content, so identical content (for example, after the caches
+ * are cleared) is stored, and mapped, just once. Content is streamed to a temporary file, and digested as it is
+ * written, and then renamed; a concurrent write never leaves a partial file in place. A resource that can't be spooled
+ * is simply kept on the heap. Smaller resources may be copied into direct (off-heap) buffers.
+ * <p/>
+ * Spooled files are deleted when resources change (the content is cached again, and spooled again, as needed). Files
+ * left behind by an earlier run are deleted when the spool is created.
+ *
+ * @since 5.4
+ */
+public class AssetSpoolImpl implements AssetSpool, InvalidationListener
+{
+    private static final String EXTENSION = ".asset";
+
+    private static final String TEMP_PREFIX = "asset";
+
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final Logger logger;
+
+    private final File directory;
+
+    private final int threshold;
+
+    private final boolean offHeap;
+
+    /**
+     * Keyed on checksum.
+     */
+    private final ConcurrentMap<String, BytestreamCache> mapped = CollectionFactory.newConcurrentMap();
+
+    public AssetSpoolImpl(Logger logger,
+
+                          @Symbol(SymbolConstants.ASSET_SPOOL_DIRECTORY)
+                          String directory,
+
+                          @Symbol(SymbolConstants.ASSET_SPOOL_THRESHOLD)
+                          int threshold,
+
+                          @Symbol(SymbolConstants.ASSET_CACHE_OFF_HEAP)
+                          boolean offHeap)
+    {
+        this.logger = logger;
+        this.directory = InternalUtils.isBlank(directory) ? null : new File(directory.trim());
+        this.threshold = threshold;
+        this.offHeap = offHeap;
+
+        if (this.directory != null)
+            deleteSpooledFiles();
+    }
+
+    @PostInjection
+    public void listenForInvalidations(ResourceChangeTracker resourceChangeTracker)
+    {
+        resourceChangeTracker.addInvalidationListener(this);
+    }
+
+    public StreamableResource spool(StreamableResource resource)
+    {
+        if (directory == null || resource.getSize() < threshold)
+            return offHeap ? copyOffHeap(resource) : resource;
+
+        try
+        {
+            return new StreamableResourceImpl(resource.getDescription(), resource.getContentType(),
+                    resource.getCompression(), resource.getLastModified(), spoolContent(resource));
+        } catch (IOException ex)
+        {
+            logger.warn(String.format("Unable to spool %s to %s: %s", resource, directory,
+                    InternalUtils.toMessage(ex)));
+
+            return resource;
+        }
+    }
+
+    private StreamableResource copyOffHeap(StreamableResource resource)
+    {
+        try
+        {
+            byte[] content = AssetUtils.toBytes(resource);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+
+            buffer.put(content);
+            buffer.flip();
+
+            return new StreamableResourceImpl(resource.getDescription(), resource.getContentType(),
+                    resource.getCompression(), resource.getLastModified(), new BytestreamCache(buffer));
+        } catch (IOException ex)
+        {
+            logger.warn(String.format("Unable to copy %s off heap: %s", resource, InternalUtils.toMessage(ex)));
+
+            return resource;
+        }
+    }
+
+    private BytestreamCache spoolContent(StreamableResource resource) throws IOException
+    {
+        directory.mkdirs();
+
+        File temp = File.createTempFile(TEMP_PREFIX, TEMP_EXTENSION, directory);
+
+        try
+        {
+            String checksum = AssetUtils.write(resource, temp);
+
+            BytestreamCache cache = mapped.get(checksum);
+
+            if (cache != null)
+                return cache;
+
+            File file = new File(directory, checksum + EXTENSION);
+
+            // Another thread may have spooled the same content in the meantime, in which case
+            // the rename fails and the temporary file is simply discarded.
+
+            if (temp.renameTo(file))
+                temp = null;
+
+            cache = BytestreamCache.map(file);
+
+            BytestreamCache existing = mapped.putIfAbsent(checksum, cache);
+
+            return existing == null ? cache : existing;
+        } finally
+        {
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the spooled files. Content that is still being streamed from a file remains readable (on most operating
+     * systems) until the streaming completes.
+     */
+    public void objectWasInvalidated()
+    {
+        mapped.clear();
+
+        if (directory != null)
+            deleteSpooledFiles();
+    }
+
+    private void deleteSpooledFiles()
+    {
+        File[] files = directory.listFiles(new FileFilter()
+        {
+            public boolean accept(File file)
+            {
+                String name = file.getName();
+
+                return file.isFile() && (name.endsWith(EXTENSION)
+                        || (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_EXTENSION)));
+            }
+        });
+
+        if (files == null)
+            return;
+
+        for (File file : files)
+        {
+            if (!file.delete())
+                logger.debug(String.format("Unable to delete spooled file %s.", file));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Utilities for compressing the content of assets, and for storing it in files.
+ *
+ * @since 5.4
+ */
+final class AssetUtils
+{
+    private AssetUtils()
+    {
+    }
+
+    /**
+     * Returns the entire content of the resource.
+     */
+    static byte[] toBytes(StreamableResource resource) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(resource.getSize());
+
+        resource.streamTo(bos);
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Returns the MD5 checksum of the content, as a string of hex digits.
+     */
+    static String checksum(byte[] content)
+    {
+        MessageDigest digest = newDigest();
+
+        return new String(Hex.encodeHex(digest.digest(content)));
+    }
+
+    /**
+     * Returns the MD5 checksum of the resource's content, as a string of hex digits; the content is streamed through
+     * the digest, rather than copied.
+     */
+    static String checksum(StreamableResource resource) throws IOException
+    {
+        final MessageDigest digest = newDigest();
+
+        resource.streamTo(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                digest.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length)
+            {
+                digest.update(bytes, offset, length);
+            }
+        });
+
+        return new String(Hex.encodeHex(digest.digest()));
+    }
+
+    /**
+     * Compresses the content using GZIP.
+     *
+     * @param uncompressed
+     *         the content to compress
+     * @param level
+     *         compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     *         {@link Deflater#DEFAULT_COMPRESSION}
+     * @return the compressed content
+     */
+    static StreamableResource gzip(StreamableResource uncompressed, final int level) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(uncompressed.getSize());
+
+        GZIPOutputStream gos = new GZIPOutputStream(bos)
+        {
+            {
+                def.setLevel(level);
+            }
+        };
+
+        BufferedOutputStream buffered = new BufferedOutputStream(gos);
+
+        uncompressed.streamTo(buffered);
+
+        buffered.close();
+
+        return new StreamableResourceImpl(uncompressed.getDescription(), uncompressed.getContentType(),
+                CompressionStatus.COMPRESSED, uncompressed.getLastModified(), new BytestreamCache(bos));
+    }
+
+    /**
+     * Writes the resource's content to the file, and returns the MD5 checksum of the content, as a string of hex digits;
+     * the content is streamed through the digest as it is written, rather than copied.
+     */
+    static String write(StreamableResource resource, File file) throws IOException
+    {
+        MessageDigest digest = newDigest();
+
+        OutputStream out = null;
+
+        try
+        {
+            out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(file)), digest);
+
+            resource.streamTo(out);
+
+            out.close();
+            out = null;
+        } finally
+        {
+            InternalUtils.close(out);
+        }
+
+        return new String(Hex.encodeHex(digest.digest()));
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.func.Worker;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+/**
+ * Compresses content at the highest compression level, in a pooled thread. Content is first compressed (and cached)
+ * at the default level, which is fast; the smaller, compressed, content replaces it in the cache once available, so
+ * the expensive compression never delays a request.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#GZIP_BEST_COMPRESSION
+ * @since 5.4
+ */
+public interface BackgroundCompressor
+{
+    /**
+     * Schedules compression of the content; does nothing if best compression is disabled, or if the thread pool is
+     * too busy to accept the work.
+     *
+     * @param uncompressed
+     *         the content to compress
+     * @param compressed
+     *         the content as currently compressed
+     * @param replacement
+     *         invoked (in the pooled thread) with the newly compressed content, but only if it is smaller
+     */
+    void compress(StreamableResource uncompressed, StreamableResource compressed,
+                  Worker<StreamableResource> replacement);
+}
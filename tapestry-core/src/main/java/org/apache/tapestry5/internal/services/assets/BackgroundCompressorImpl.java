@@ -0,0 +1,83 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.func.Worker;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Deflater;
+
+public class BackgroundCompressorImpl implements BackgroundCompressor
+{
+    private final ParallelExecutor executor;
+
+    private final Logger logger;
+
+    private final boolean enabled;
+
+    public BackgroundCompressorImpl(ParallelExecutor executor, Logger logger,
+
+                                    @Symbol(SymbolConstants.GZIP_BEST_COMPRESSION)
+                                    boolean enabled)
+    {
+        this.executor = executor;
+        this.logger = logger;
+        this.enabled = enabled;
+    }
+
+    public void compress(final StreamableResource uncompressed, final StreamableResource compressed,
+                         final Worker<StreamableResource> replacement)
+    {
+        if (!enabled)
+            return;
+
+        Invokable<Void> compression = new Invokable<Void>()
+        {
+            public Void invoke()
+            {
+                try
+                {
+                    StreamableResource best = AssetUtils.gzip(uncompressed, Deflater.BEST_COMPRESSION);
+
+                    if (best.getSize() < compressed.getSize())
+                        replacement.work(best);
+                } catch (IOException ex)
+                {
+                    logger.warn(String.format("Unable to compress %s: %s", uncompressed, InternalUtils.toMessage(ex)));
+                }
+
+                return null;
+            }
+        };
+
+        try
+        {
+            executor.invoke(compression);
+        } catch (RejectedExecutionException ex)
+        {
+            // The thread pool's queue is full; the content is already compressed, so just skip the improvement.
+
+            logger.debug(String.format("Skipping best compression of %s: %s", uncompressed, InternalUtils.toMessage(ex)));
+        }
+    }
+}
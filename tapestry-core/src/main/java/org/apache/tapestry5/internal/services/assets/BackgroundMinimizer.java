@@ -0,0 +1,77 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.services.assets.ResourceMinimizer;
+import org.apache.tapestry5.services.assets.StreamableResource;
+
+import java.io.IOException;
+
+/**
+ * Minimizes content using the {@link ResourceMinimizer} service, optionally in a pooled thread. When minimizing in the
+ * background, the unminimized content is returned until the minimized content is available; code that caches the
+ * content must check that the content is {@linkplain #isFinal(Object, int) final} before caching it.
+ *
+ * @see org.apache.tapestry5.SymbolConstants#ASYNC_MINIFICATION
+ * @since 5.4
+ */
+public interface BackgroundMinimizer
+{
+    /**
+     * Returns the minimized content, minimizing it immediately if background minimization is disabled. Otherwise,
+     * returns the previously minimized content if available, or schedules minimization (unless already pending) and
+     * returns the original content. If the thread pool is too busy to accept the work, the content is minimized
+     * immediately.
+     *
+     * @param key
+     *         identifies the content
+     * @param content
+     *         the content to minimize
+     * @return minimized content, or the original content
+     */
+    StreamableResource minimize(Object key, StreamableResource content) throws IOException;
+
+    /**
+     * Returns true if content for the key obtained from {@link #minimize(Object, StreamableResource)} is final, and may
+     * be cached: no minimization is pending for the key, and no minimization has completed since the completed count
+     * was obtained.
+     *
+     * @param key
+     *         identifies the content
+     * @param completedCount
+     *         the value of {@link #getCompletedCount()} before the content was obtained
+     */
+    boolean isFinal(Object key, int completedCount);
+
+    /**
+     * Discards the minimized content for the key, once the caller has cached the (final) content. Minimized content is
+     * otherwise retained by this service.
+     *
+     * @param key
+     *         identifies the content
+     */
+    void discard(Object key);
+
+    /**
+     * Returns the number of minimizations scheduled but not yet completed.
+     */
+    int getPendingCount();
+
+    /**
+     * Returns the number of background minimizations completed.
+     */
+    int getCompletedCount();
+}
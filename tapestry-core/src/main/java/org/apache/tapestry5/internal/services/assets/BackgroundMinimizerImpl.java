@@ -0,0 +1,192 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.annotations.PostInjection;
+import org.apache.tapestry5.ioc.annotations.Symbol;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.services.InvalidationListener;
+import org.apache.tapestry5.services.assets.ResourceMinimizer;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BackgroundMinimizerImpl implements BackgroundMinimizer, InvalidationListener
+{
+    private final ResourceMinimizer minimizer;
+
+    private final ParallelExecutor executor;
+
+    private final Logger logger;
+
+    private final boolean enabled;
+
+    /**
+     * Minimized content, keyed on the key passed to {@link #minimize(Object, StreamableResource)}. Content is held
+     * only until the caller has cached it, and {@linkplain #discard(Object) discarded} it here.
+     */
+    private final ConcurrentMap<Object, StreamableResource> minimized = CollectionFactory.newConcurrentMap();
+
+    /**
+     * Keys for which minimization is scheduled but not yet completed.
+     */
+    private final ConcurrentMap<Object, Boolean> pending = CollectionFactory.newConcurrentMap();
+
+    private final AtomicInteger completed = new AtomicInteger();
+
+    /**
+     * Incremented on each invalidation; minimized content is discarded if the generation changes while it is being
+     * minimized.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public BackgroundMinimizerImpl(ResourceMinimizer minimizer, ParallelExecutor executor, Logger logger,
+
+                                   @Symbol(SymbolConstants.ASYNC_MINIFICATION)
+                                   boolean enabled)
+    {
+        this.minimizer = minimizer;
+        this.executor = executor;
+        this.logger = logger;
+        this.enabled = enabled;
+    }
+
+    @PostInjection
+    public void listenToInvalidations(ResourceChangeTracker resourceChangeTracker)
+    {
+        resourceChangeTracker.addInvalidationListener(this);
+    }
+
+    public StreamableResource minimize(Object key, StreamableResource content) throws IOException
+    {
+        if (!enabled)
+            return minimizer.minimize(content);
+
+        StreamableResource result = minimized.get(key);
+
+        if (result != null)
+            return result;
+
+        if (pending.putIfAbsent(key, true) == null)
+            schedule(key, content);
+
+        // The minimization may have already completed (the executor may not be using a thread pool, or
+        // the minimization may have been performed on this thread).
+
+        result = minimized.get(key);
+
+        return result == null ? content : result;
+    }
+
+    private void schedule(final Object key, final StreamableResource content)
+    {
+        final int scheduledGeneration = generation.get();
+
+        Invokable<Void> minimization = new Invokable<Void>()
+        {
+            public Void invoke()
+            {
+                minimize(key, content, scheduledGeneration);
+
+                return null;
+            }
+        };
+
+        try
+        {
+            executor.invoke(minimization);
+        } catch (RejectedExecutionException ex)
+        {
+            // The thread pool's queue is full; do the work here instead.
+
+            logger.debug(String.format("Minimizing %s on the request thread: %s", content, InternalUtils.toMessage(ex)));
+
+            minimization.invoke();
+        }
+    }
+
+    private void minimize(Object key, StreamableResource content, int scheduledGeneration)
+    {
+        long startNanos = System.nanoTime();
+
+        StreamableResource result = content;
+
+        try
+        {
+            result = minimizer.minimize(content);
+        } catch (Exception ex)
+        {
+            // The content will be served unminimized.
+
+            logger.error(String.format("Unable to minimize %s: %s", content, InternalUtils.toMessage(ex)), ex);
+        }
+
+        if (generation.get() == scheduledGeneration)
+        {
+            minimized.put(key, result);
+
+            // Check again, in case of an invalidation after the first check.
+
+            if (generation.get() != scheduledGeneration)
+                minimized.remove(key, result);
+        }
+
+        // The completed count must change before the key is no longer pending; see isFinal().
+
+        completed.incrementAndGet();
+        pending.remove(key);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(String.format("Minimized %s in %,d ms (%,d minimizations pending)", content,
+                    (System.nanoTime() - startNanos) / 1000000, pending.size()));
+        }
+    }
+
+    public boolean isFinal(Object key, int completedCount)
+    {
+        return !pending.containsKey(key) && completed.get() == completedCount;
+    }
+
+    public void discard(Object key)
+    {
+        minimized.remove(key);
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    public int getCompletedCount()
+    {
+        return completed.get();
+    }
+
+    public void objectWasInvalidated()
+    {
+        generation.incrementAndGet();
+        minimized.clear();
+    }
+}
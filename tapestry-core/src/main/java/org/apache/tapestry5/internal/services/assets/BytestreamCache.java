@@ -1,4 +1,4 @@
-// Copyright 2010 The Apache Software Foundation
+// Copyright 2010, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,26 +14,34 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * A wrapper around a byte-stream, represented internally as a byte array. Part of the fix
  * to TAP5-1116, avoiding a live lock due to ByteArrayOutputStream.writeTo() being a synchronized
  * method.
- * 
+ * <p/>
+ * Starting in 5.4, the content may instead be a read-only {@link ByteBuffer}, typically {@linkplain #map(File) mapped}
+ * from a file, so that the content is kept outside of the Java heap.
+ *
  * @since 5.2.0
  */
 public class BytestreamCache
 {
     private final byte[] streamData;
 
+    private final ByteBuffer buffer;
+
     public BytestreamCache(byte[] streamData)
     {
         this.streamData = streamData;
+        this.buffer = null;
     }
 
     public BytestreamCache(ByteArrayOutputStream os)
@@ -41,18 +49,114 @@ public class BytestreamCache
         this(os.toByteArray());
     }
 
+    /**
+     * @param buffer
+     *         the content, from the buffer's position to its limit; the buffer itself is never modified
+     * @since 5.4
+     */
+    public BytestreamCache(ByteBuffer buffer)
+    {
+        this.streamData = null;
+        this.buffer = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Maps the content of the file into memory; the file should not be changed afterwards.
+     *
+     * @since 5.4
+     */
+    public static BytestreamCache map(File file) throws IOException
+    {
+        FileInputStream stream = new FileInputStream(file);
+
+        try
+        {
+            FileChannel channel = stream.getChannel();
+
+            // The mapping remains valid after the channel is closed.
+
+            return new BytestreamCache(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally
+        {
+            InternalUtils.close(stream);
+        }
+    }
+
     public void writeTo(OutputStream os) throws IOException
     {
-        os.write(streamData, 0, streamData.length);
+        if (buffer == null)
+        {
+            os.write(streamData, 0, streamData.length);
+            return;
+        }
+
+        // Each write works from its own duplicate of the buffer, so concurrent writes don't interfere.
+        // Writing to a file is done without copying the content; otherwise the content is copied,
+        // a chunk at a time, into the stream.
+
+        ByteBuffer content = buffer.duplicate();
+
+        WritableByteChannel channel = os instanceof FileOutputStream ? ((FileOutputStream) os).getChannel()
+                : Channels.newChannel(os);
+
+        while (content.hasRemaining())
+        {
+            channel.write(content);
+        }
     }
 
     public int size()
     {
-        return streamData.length;
+        return buffer == null ? streamData.length : buffer.remaining();
     }
 
     public InputStream openStream()
     {
-        return new ByteArrayInputStream(streamData);
+        return buffer == null ? new ByteArrayInputStream(streamData) : new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    private static class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (!buffer.hasRemaining())
+                return -1;
+
+            int count = Math.min(length, buffer.remaining());
+
+            buffer.get(bytes, offset, count);
+
+            return count;
+        }
+
+        @Override
+        public long skip(long count)
+        {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+
+            buffer.position(buffer.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
     }
 }
@@ -0,0 +1,60 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.services.assets.ResourceDependencies;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
+import org.apache.tapestry5.services.assets.StreamableResourceSource;
+
+import java.io.IOException;
+
+/**
+ * An interceptor for the {@link StreamableResourceSource} service that serves resources from the {@link AssetBundle},
+ * when the bundle contains them; such resources are already minimized and compressed, so the rest of the pipeline is
+ * skipped.
+ *
+ * @since 5.4
+ */
+public class SRSBundleInterceptor implements StreamableResourceSource
+{
+    private final StreamableResourceSource delegate;
+
+    private final AssetBundle bundle;
+
+    public SRSBundleInterceptor(StreamableResourceSource delegate, AssetBundle bundle)
+    {
+        this.delegate = delegate;
+        this.bundle = bundle;
+    }
+
+    public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing, ResourceDependencies dependencies)
+            throws IOException
+    {
+        // Resources aggregated into a stack must be the original (un-minimized) content.
+
+        if (processing != StreamableResourceProcessing.FOR_AGGREGATION)
+        {
+            StreamableResource bundled = bundle.find(baseResource.toString(),
+                    processing == StreamableResourceProcessing.COMPRESSION_ENABLED);
+
+            if (bundled != null)
+                return bundled;
+        }
+
+        return delegate.getStreamableResource(baseResource, processing, dependencies);
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,9 +14,7 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
-import org.apache.tapestry5.internal.TapestryInternalUtils;
 import org.apache.tapestry5.ioc.Resource;
-import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.InvalidationListener;
 import org.apache.tapestry5.services.assets.ResourceDependencies;
 import org.apache.tapestry5.services.assets.StreamableResource;
@@ -24,21 +22,30 @@ import org.apache.tapestry5.services.assets.StreamableResourceProcessing;
 import org.apache.tapestry5.services.assets.StreamableResourceSource;
 
 import java.io.IOException;
-import java.lang.ref.SoftReference;
-import java.util.Map;
 
 /**
- * An interceptor for the {@link StreamableResourceSource} service that handles caching of content.
+ * An interceptor for the {@link StreamableResourceSource} service that handles caching of content. Content that is not
+ * yet {@linkplain BackgroundMinimizer#isFinal(Object, int) final} (because it is being minimized in the background) is
+ * not cached. Starting in 5.4, content is stored in the {@link AssetCache}, which is limited in size, rather than
+ * held by soft references.
  */
 public class SRSCachingInterceptor implements StreamableResourceSource, InvalidationListener
 {
     private final StreamableResourceSource delegate;
 
-    private final Map<Resource, SoftReference<StreamableResource>> cache = CollectionFactory.newConcurrentMap();
+    private final AssetSpool spool;
 
-    public SRSCachingInterceptor(StreamableResourceSource delegate)
+    private final BackgroundMinimizer minimizer;
+
+    private final AssetCache cache;
+
+    public SRSCachingInterceptor(StreamableResourceSource delegate, AssetSpool spool, BackgroundMinimizer minimizer,
+                                 AssetCache cache)
     {
         this.delegate = delegate;
+        this.spool = spool;
+        this.minimizer = minimizer;
+        this.cache = cache;
     }
 
     public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing, ResourceDependencies dependencies)
@@ -49,23 +56,71 @@ public class SRSCachingInterceptor implements StreamableResourceSource, Invalida
             return delegate.getStreamableResource(baseResource, processing, dependencies);
         }
 
-        StreamableResource result = TapestryInternalUtils.getAndDeref(cache, baseResource);
+        StreamableResource result = cache.get(this, baseResource);
 
         if (result == null)
         {
+            int completedCount = minimizer.getCompletedCount();
+
             result = delegate.getStreamableResource(baseResource, processing, dependencies);
 
-            if (isCacheable(result))
+            if (isCacheable(result) && minimizer.isFinal(baseResource, completedCount))
             {
                 dependencies.addDependency(baseResource);
 
-                cache.put(baseResource, new SoftReference<StreamableResource>(result));
+                result = spool.spool(result);
+
+                cache.put(this, baseResource, result);
+
+                // The cache now holds the (possibly minimized) content; the minimizer need not.
+
+                minimizer.discard(baseResource);
+
+                cached(baseResource, result, dependencies);
             }
         }
 
         return result;
     }
 
+    /**
+     * Invoked after a resource is added to the cache; does nothing, but a subclass may override.
+     *
+     * @param baseResource
+     *         the resource
+     * @param cached
+     *         the cached content for the resource
+     * @param dependencies
+     *         as passed to {@link #getStreamableResource(Resource, StreamableResourceProcessing, ResourceDependencies)}
+     * @since 5.4
+     */
+    protected void cached(Resource baseResource, StreamableResource cached, ResourceDependencies dependencies)
+            throws IOException
+    {
+    }
+
+    /**
+     * Replaces the cached content for a resource, but only if the cache still contains the expected content (that is,
+     * the content has not been evicted, nor the cache invalidated, in the meantime).
+     *
+     * @since 5.4
+     */
+    protected void replace(Resource baseResource, StreamableResource expected, StreamableResource replacement)
+    {
+        cache.replace(this, baseResource, expected, spool.spool(replacement));
+    }
+
+    /**
+     * Returns the content for the resource, from the delegate.
+     *
+     * @since 5.4
+     */
+    protected StreamableResource getFromDelegate(Resource baseResource, StreamableResourceProcessing processing,
+                                                 ResourceDependencies dependencies) throws IOException
+    {
+        return delegate.getStreamableResource(baseResource, processing, dependencies);
+    }
+
     /**
      * Always returns true; a subclass may extend this to only cache the resource in some circumstances.
      *
@@ -79,6 +134,6 @@ public class SRSCachingInterceptor implements StreamableResourceSource, Invalida
 
     public void objectWasInvalidated()
     {
-        cache.clear();
+        cache.clear(this);
     }
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,19 +14,28 @@
 
 package org.apache.tapestry5.internal.services.assets;
 
-import org.apache.tapestry5.services.assets.CompressionStatus;
-import org.apache.tapestry5.services.assets.StreamableResource;
-import org.apache.tapestry5.services.assets.StreamableResourceSource;
+import org.apache.tapestry5.func.Worker;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.services.assets.*;
+
+import java.io.IOException;
 
 /**
  * Specialization of {@link SRSCachingInterceptor} that only attempts to cache
- * compressed resources.
+ * compressed resources. Starting in 5.4, the cached content may be replaced by a smaller version,
+ * compressed at the highest level by the {@link BackgroundCompressor}.
  */
 public class SRSCompressedCachingInterceptor extends SRSCachingInterceptor
 {
-    public SRSCompressedCachingInterceptor(StreamableResourceSource delegate)
+    private final BackgroundCompressor compressor;
+
+    public SRSCompressedCachingInterceptor(StreamableResourceSource delegate, AssetSpool spool,
+                                           BackgroundMinimizer minimizer, AssetCache cache,
+                                           BackgroundCompressor compressor)
     {
-        super(delegate);
+        super(delegate, spool, minimizer, cache);
+
+        this.compressor = compressor;
     }
 
     /**
@@ -38,4 +47,21 @@ public class SRSCompressedCachingInterceptor extends SRSCachingInterceptor
         return resource.getCompression() == CompressionStatus.COMPRESSED;
     }
 
+    @Override
+    protected void cached(final Resource baseResource, final StreamableResource cached,
+                          ResourceDependencies dependencies) throws IOException
+    {
+        // The uncompressed content was just cached by the (inner) caching interceptor, so this is fast.
+
+        StreamableResource uncompressed = getFromDelegate(baseResource,
+                StreamableResourceProcessing.COMPRESSION_DISABLED, dependencies);
+
+        compressor.compress(uncompressed, cached, new Worker<StreamableResource>()
+        {
+            public void work(StreamableResource value)
+            {
+                replace(baseResource, cached, value);
+            }
+        });
+    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -20,15 +20,17 @@ import org.apache.tapestry5.services.assets.*;
 import java.io.IOException;
 
 /**
- * Loops the result through the {@link ResourceMinimizer} service.
+ * Loops the result through the {@link ResourceMinimizer} service. Starting in 5.4, this is by way of the
+ * {@link BackgroundMinimizer}, which may return the unminimized content while the content is minimized in a pooled
+ * thread.
  */
 public class SRSMinimizingInterceptor implements StreamableResourceSource
 {
     private final StreamableResourceSource delegate;
 
-    private final ResourceMinimizer minimizer;
+    private final BackgroundMinimizer minimizer;
 
-    public SRSMinimizingInterceptor(StreamableResourceSource delegate, ResourceMinimizer minimizer)
+    public SRSMinimizingInterceptor(StreamableResourceSource delegate, BackgroundMinimizer minimizer)
     {
         this.delegate = delegate;
         this.minimizer = minimizer;
@@ -41,7 +43,7 @@ public class SRSMinimizingInterceptor implements StreamableResourceSource
 
         if (processing != StreamableResourceProcessing.FOR_AGGREGATION)
         {
-            return minimizer.minimize(streamable);
+            return minimizer.minimize(baseResource, streamable);
         }
 
         return streamable;
@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,14 +16,18 @@ package org.apache.tapestry5.internal.services.assets;
 
 import org.apache.tapestry5.Asset;
 import org.apache.tapestry5.SymbolConstants;
+import org.apache.tapestry5.func.Worker;
 import org.apache.tapestry5.internal.IOOperation;
 import org.apache.tapestry5.internal.TapestryInternalUtils;
 import org.apache.tapestry5.internal.services.ResourceStreamer;
+import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.OperationTracker;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.PostInjection;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
 import org.apache.tapestry5.json.JSONArray;
 import org.apache.tapestry5.services.*;
 import org.apache.tapestry5.services.assets.*;
@@ -32,10 +36,14 @@ import org.apache.tapestry5.services.javascript.JavaScriptStackSource;
 
 import java.io.*;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 public class StackAssetRequestHandler implements AssetRequestHandler, InvalidationListener
 {
@@ -53,12 +61,15 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
 
     private final Pattern pathPattern = Pattern.compile("^(.+)/(.+)\\.js$");
 
-    // Two caches, keyed on extra path. Both are accessed only from synchronized blocks.
-    private final Map<String, StreamableResource> uncompressedCache = CollectionFactory.newCaseInsensitiveMap();
+    // Two regions of the asset cache, keyed on the (case insensitive) bundle key.
+    private final Object uncompressedRegion = new Object();
 
-    private final Map<String, StreamableResource> compressedCache = CollectionFactory.newCaseInsensitiveMap();
+    private final Object compressedRegion = new Object();
 
-    private final ResourceMinimizer resourceMinimizer;
+    // The processed content of individual libraries, keyed on Resource; not cleared on invalidation.
+    private final Object libraryRegion = new Object();
+
+    private final BackgroundMinimizer backgroundMinimizer;
 
     private final OperationTracker tracker;
 
@@ -66,23 +77,51 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
 
     private final ResourceChangeTracker resourceChangeTracker;
 
+    private final AssetBundle assetBundle;
+
+    private final AssetSpool assetSpool;
+
+    private final BackgroundCompressor backgroundCompressor;
+
+    private final AssetCache assetCache;
+
+    private final ParallelExecutor executor;
+
+    /**
+     * Stacks currently being assembled, keyed on the bundle key. The first thread to miss assembles the stack; other
+     * threads requesting the same stack wait for its result, without holding the handler's lock.
+     */
+    private final ConcurrentMap<String, FutureTask<StreamableResource>> pendingAssemblies = CollectionFactory.newConcurrentMap();
+
+    // Incremented on each invalidation, so that content assembled before an invalidation is not cached after it.
+    // Guarded by this.
+    private int invalidationCount;
+
     public StackAssetRequestHandler(StreamableResourceSource streamableResourceSource,
                                     JavaScriptStackSource javascriptStackSource, LocalizationSetter localizationSetter,
                                     ResponseCompressionAnalyzer compressionAnalyzer, ResourceStreamer resourceStreamer,
-                                    ResourceMinimizer resourceMinimizer, OperationTracker tracker,
+                                    BackgroundMinimizer backgroundMinimizer, OperationTracker tracker,
 
                                     @Symbol(SymbolConstants.MINIFICATION_ENABLED)
-                                    boolean minificationEnabled, ResourceChangeTracker resourceChangeTracker)
+                                    boolean minificationEnabled, ResourceChangeTracker resourceChangeTracker,
+                                    AssetBundle assetBundle, AssetSpool assetSpool,
+                                    BackgroundCompressor backgroundCompressor, AssetCache assetCache,
+                                    ParallelExecutor executor)
     {
         this.streamableResourceSource = streamableResourceSource;
         this.javascriptStackSource = javascriptStackSource;
         this.localizationSetter = localizationSetter;
         this.compressionAnalyzer = compressionAnalyzer;
         this.resourceStreamer = resourceStreamer;
-        this.resourceMinimizer = resourceMinimizer;
+        this.backgroundMinimizer = backgroundMinimizer;
         this.tracker = tracker;
         this.minificationEnabled = minificationEnabled;
         this.resourceChangeTracker = resourceChangeTracker;
+        this.assetBundle = assetBundle;
+        this.assetSpool = assetSpool;
+        this.backgroundCompressor = backgroundCompressor;
+        this.assetCache = assetCache;
+        this.executor = executor;
     }
 
     @PostInjection
@@ -93,8 +132,7 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
 
     public boolean handleAssetRequest(Request request, Response response, final String extraPath) throws IOException
     {
-        TapestryInternalUtils.performIO(tracker, String.format("Streaming asset stack %s", extraPath),
-                new IOOperation()
+        TapestryInternalUtils.performIO(tracker, new IOOperation()
                 {
                     public void perform() throws IOException
                     {
@@ -104,53 +142,163 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
 
                         resourceStreamer.streamResource(resource);
                     }
-                });
+                }, "Streaming asset stack %s", extraPath);
 
         return true;
     }
 
     /**
-     * Notified by the {@link ResourceChangeTracker} when (any) resource files change; the internal caches are cleared.
+     * Notified by the {@link ResourceChangeTracker} when (any) resource files change; the cached stacks are cleared
+     * (but not the content of individual libraries, which is checked against the library's last modified time).
      */
     public synchronized void objectWasInvalidated()
     {
-        uncompressedCache.clear();
-        compressedCache.clear();
+        invalidationCount++;
+
+        assetCache.clear(uncompressedRegion);
+        assetCache.clear(compressedRegion);
     }
 
-    private StreamableResource getResource(String extraPath, boolean compressed) throws IOException
+    /**
+     * Returns the key for the stack asset in the {@link AssetBundle}.
+     *
+     * @param extraPath
+     *         the stack's path, as it appears in stack asset URLs ("en/core.js")
+     */
+    static String toBundleKey(String extraPath)
     {
+        return "stack:" + extraPath.toLowerCase();
+    }
+
+    /**
+     * Returns the stack's content, from the {@link AssetBundle} if the bundle contains the stack, otherwise by
+     * assembling the content of the stack's libraries (and minimizing and compressing the result).
+     *
+     * @param extraPath
+     *         identifies the locale and the stack
+     * @param compressed
+     *         if true, the content is compressed
+     */
+    StreamableResource getResource(String extraPath, boolean compressed) throws IOException
+    {
+        StreamableResource bundled = assetBundle.find(toBundleKey(extraPath), compressed);
+
+        if (bundled != null)
+            return bundled;
+
         return compressed ? getCompressedResource(extraPath) : getUncompressedResource(extraPath);
     }
 
-    private synchronized StreamableResource getCompressedResource(String extraPath) throws IOException
+    private StreamableResource getCompressedResource(String extraPath) throws IOException
     {
-        StreamableResource result = compressedCache.get(extraPath);
+        final String key = toBundleKey(extraPath);
+
+        StreamableResource result = assetCache.get(compressedRegion, key);
+
+        if (result != null)
+            return result;
+
+        final StreamableResource uncompressed = getUncompressedResource(extraPath);
+
+        result = AssetUtils.gzip(uncompressed, Deflater.DEFAULT_COMPRESSION);
 
-        if (result == null)
+        // Not cached if the uncompressed content was not (as it is still being minimized).
+
+        if (assetCache.get(uncompressedRegion, key) != uncompressed)
+            return result;
+
+        final StreamableResource compressed = assetSpool.spool(result);
+
+        StreamableResource cached = cacheCompressedResource(key, uncompressed, compressed);
+
+        if (cached == compressed)
         {
-            StreamableResource uncompressed = getUncompressedResource(extraPath);
-            result = compressStream(uncompressed);
-            compressedCache.put(extraPath, result);
+            backgroundCompressor.compress(uncompressed, compressed, new Worker<StreamableResource>()
+            {
+                public void work(StreamableResource value)
+                {
+                    replaceCompressedResource(key, compressed, value);
+                }
+            });
         }
 
-        return result;
+        return cached == null ? compressed : cached;
     }
 
-    private synchronized StreamableResource getUncompressedResource(String extraPath) throws IOException
+    /**
+     * Caches the compressed content, unless the uncompressed content it was created from is no longer cached, or
+     * another thread has already cached compressed content for the stack.
+     *
+     * @return the cached compressed content, or null if nothing was cached
+     */
+    private synchronized StreamableResource cacheCompressedResource(String key, StreamableResource uncompressed,
+                                                                    StreamableResource compressed)
     {
-        StreamableResource result = uncompressedCache.get(extraPath);
+        if (assetCache.get(uncompressedRegion, key) != uncompressed)
+            return null;
+
+        StreamableResource existing = assetCache.get(compressedRegion, key);
+
+        if (existing != null)
+            return existing;
+
+        assetCache.put(compressedRegion, key, compressed);
+
+        return compressed;
+    }
+
+    /**
+     * Replaces the cached compressed content with a smaller version, unless the content has been evicted (or the cache
+     * cleared) in the meantime.
+     */
+    private synchronized void replaceCompressedResource(String key, StreamableResource expected,
+                                                        StreamableResource replacement)
+    {
+        assetCache.replace(compressedRegion, key, expected, assetSpool.spool(replacement));
+    }
+
+    private StreamableResource getUncompressedResource(final String extraPath) throws IOException
+    {
+        final String key = toBundleKey(extraPath);
+
+        StreamableResource result = assetCache.get(uncompressedRegion, key);
+
+        if (result != null)
+            return result;
 
-        if (result == null)
+        FutureTask<StreamableResource> task = new FutureTask<StreamableResource>(new Callable<StreamableResource>()
         {
-            result = assembleStackContent(extraPath);
-            uncompressedCache.put(extraPath, result);
+            public StreamableResource call() throws Exception
+            {
+                return assembleUncompressedResource(extraPath, key);
+            }
+        });
+
+        FutureTask<StreamableResource> inProgress = pendingAssemblies.putIfAbsent(key, task);
+
+        if (inProgress != null)
+            return waitFor(inProgress);
+
+        try
+        {
+            // Another thread may have finished assembling the stack between the check of the cache and the
+            // registration of this thread's task.
+
+            result = assetCache.get(uncompressedRegion, key);
+
+            if (result != null)
+                return result;
+
+            task.run();
+        } finally
+        {
+            pendingAssemblies.remove(key, task);
         }
 
-        return result;
+        return waitFor(task);
     }
 
-    private StreamableResource assembleStackContent(String extraPath) throws IOException
+    private StreamableResource assembleUncompressedResource(String extraPath, String key) throws IOException
     {
         Matcher matcher = pathPattern.matcher(extraPath);
 
@@ -160,23 +308,62 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
         String localeName = matcher.group(1);
         String stackName = matcher.group(2);
 
-        return assembleStackContent(localeName, stackName);
-    }
-
-    private StreamableResource assembleStackContent(String localeName, String stackName) throws IOException
-    {
         localizationSetter.setNonPeristentLocaleFromLocaleName(localeName);
 
         JavaScriptStack stack = javascriptStackSource.getStack(stackName);
         List<Asset> libraries = stack.getJavaScriptLibraries();
 
-        StreamableResource stackContent = assembleStackContent(localeName, stackName, libraries);
+        int invalidations = getInvalidationCount();
+        int completedCount = backgroundMinimizer.getCompletedCount();
+
+        StreamableResource result = assembleStackContent(localeName, stackName, libraries);
+
+        // Content still being minimized in the background is not cached.
+
+        if (isFinal(libraries, completedCount))
+        {
+            result = assetSpool.spool(result);
+
+            cacheUncompressedResource(key, result, invalidations);
+        }
+
+        return result;
+    }
+
+    private synchronized int getInvalidationCount()
+    {
+        return invalidationCount;
+    }
 
-        return minificationEnabled ? resourceMinimizer.minimize(stackContent) : stackContent;
+    private synchronized void cacheUncompressedResource(String key, StreamableResource content, int invalidations)
+    {
+        if (invalidationCount == invalidations)
+            assetCache.put(uncompressedRegion, key, content);
+    }
+
+    private boolean isFinal(List<Asset> libraries, int completedCount)
+    {
+        for (Asset library : libraries)
+        {
+            if (!backgroundMinimizer.isFinal(library.getResource(), completedCount))
+                return false;
+        }
+
+        return true;
     }
 
     private StreamableResource assembleStackContent(String localeName, String stackName, List<Asset> libraries) throws IOException
     {
+        // The libraries are read, transformed and minimized in parallel, then combined in order. Client URLs
+        // require the request, so they are built in this thread.
+
+        List<FutureTask<StreamableResource>> contents = CollectionFactory.newList();
+
+        for (Asset library : libraries)
+        {
+            contents.add(processLibrary(library.getResource()));
+        }
+
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
         OutputStreamWriter osw = new OutputStreamWriter(stream, "UTF-8");
         PrintWriter writer = new PrintWriter(osw, true);
@@ -187,8 +374,10 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
 
         JSONArray paths = new JSONArray();
 
-        for (Asset library : libraries)
+        for (int i = 0; i < libraries.size(); i++)
         {
+            Asset library = libraries.get(i);
+
             String path = library.toClientURL();
 
             paths.put(path);
@@ -200,8 +389,14 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
             description.append(sep).append(resource.toString());
             sep = ", ";
 
-            StreamableResource streamable = streamableResourceSource.getStreamableResource(resource,
-                    StreamableResourceProcessing.FOR_AGGREGATION, resourceChangeTracker);
+            // Processed here, unless a pooled thread has already started on it; the request thread never waits
+            // behind other work queued for the thread pool (such as background minimization and compression).
+
+            FutureTask<StreamableResource> task = contents.get(i);
+
+            task.run();
+
+            StreamableResource streamable = waitFor(task);
 
             streamable.streamTo(stream);
 
@@ -216,18 +411,97 @@ public class StackAssetRequestHandler implements AssetRequestHandler, Invalidati
                 new BytestreamCache(stream));
     }
 
-    private StreamableResource compressStream(StreamableResource uncompressed) throws IOException
+    private FutureTask<StreamableResource> processLibrary(final Resource resource)
     {
-        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
-        OutputStream compressor = new BufferedOutputStream(new GZIPOutputStream(compressed));
+        final FutureTask<StreamableResource> task = new FutureTask<StreamableResource>(new Callable<StreamableResource>()
+        {
+            public StreamableResource call()
+            {
+                try
+                {
+                    return getLibraryContent(resource);
+                } catch (IOException ex)
+                {
+                    throw new RuntimeException(String.format("Unable to read %s: %s", resource,
+                            InternalUtils.toMessage(ex)), ex);
+                }
+            }
+        });
+
+        try
+        {
+            executor.invoke(new Invokable<Object>()
+            {
+                public Object invoke()
+                {
+                    task.run();
+
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException ex)
+        {
+            // The thread pool's queue is full; the request thread will process the library.
+        }
+
+        return task;
+    }
+
+    private StreamableResource waitFor(FutureTask<StreamableResource> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
 
-        uncompressed.streamTo(compressor);
+            if (cause instanceof Error)
+                throw (Error) cause;
 
-        compressor.close();
+            throw new RuntimeException(cause);
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Returns the content of a single library of a stack, minimized if minification is enabled. The content is cached
+     * until the library itself changes (rather than until any resource changes), so that a change to one library does
+     * not force every library of the stack to be processed again.
+     */
+    private StreamableResource getLibraryContent(Resource resource) throws IOException
+    {
+        StreamableResource cached = assetCache.get(libraryRegion, resource);
 
-        BytestreamCache cache = new BytestreamCache(compressed);
+        if (cached != null && cached.getLastModified() == resourceChangeTracker.trackResource(resource))
+            return cached;
+
+        int completedCount = backgroundMinimizer.getCompletedCount();
+
+        StreamableResource content = streamableResourceSource.getStreamableResource(resource,
+                StreamableResourceProcessing.FOR_AGGREGATION, resourceChangeTracker);
+
+        if (minificationEnabled)
+            content = backgroundMinimizer.minimize(resource, content);
+
+        if (backgroundMinimizer.isFinal(resource, completedCount))
+        {
+            content = assetSpool.spool(content);
+            assetCache.put(libraryRegion, resource, content);
+
+            backgroundMinimizer.discard(resource);
+        }
 
-        return new StreamableResourceImpl(uncompressed.getDescription(), JAVASCRIPT_CONTENT_TYPE, CompressionStatus.COMPRESSED,
-                uncompressed.getLastModified(), cache);
+        return content;
     }
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -33,6 +33,8 @@ public class StreamableResourceImpl implements StreamableResource
 
     private final BytestreamCache bytestreamCache;
 
+    private volatile String checksum;
+
     public StreamableResourceImpl(String description, String contentType, CompressionStatus compression, long lastModified,
                                   BytestreamCache bytestreamCache)
     {
@@ -68,6 +70,18 @@ public class StreamableResourceImpl implements StreamableResource
         return lastModified;
     }
 
+    /**
+     * Computes the checksum on first access; at worst, the checksum is computed more than once by concurrent
+     * threads.
+     */
+    public String getChecksum() throws IOException
+    {
+        if (checksum == null)
+            checksum = AssetUtils.checksum(this);
+
+        return checksum;
+    }
+
     public void streamTo(OutputStream os) throws IOException
     {
         bytestreamCache.writeTo(os);
@@ -78,6 +92,11 @@ public class StreamableResourceImpl implements StreamableResource
         return bytestreamCache.openStream();
     }
 
+    BytestreamCache getBytestreamCache()
+    {
+        return bytestreamCache;
+    }
+
     @Override
     public String toString()
     {
@@ -1,4 +1,4 @@
-// Copyright 2010 The Apache Software Foundation
+// Copyright 2010, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.apache.tapestry5.SymbolConstants;
 import org.apache.tapestry5.func.F;
 import org.apache.tapestry5.func.Mapper;
 import org.apache.tapestry5.internal.services.RequestConstants;
+import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.annotations.Symbol;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.services.ThreadLocale;
@@ -65,7 +66,7 @@ public class JavaScriptStackPathConstructorImpl implements JavaScriptStackPathCo
         List<Asset> assets = stack.getJavaScriptLibraries();
 
         if (assets.size() > 1 && combineScripts)
-            return combinedStackURL(stackName);
+            return combinedStackURL(stackName, assets);
 
         return toPaths(assets);
     }
@@ -76,11 +77,18 @@ public class JavaScriptStackPathConstructorImpl implements JavaScriptStackPathCo
         return F.flow(assets).map(toPath).toList();
     }
 
-    private List<String> combinedStackURL(String stackName)
+    private List<String> combinedStackURL(String stackName, List<Asset> assets)
     {
         String path = String.format("%s/%s.js", threadLocale.getLocale().toString(), stackName);
 
-        String stackURL = assetPathConstructor.constructAssetPath(RequestConstants.STACK_FOLDER, path);
+        Resource[] resources = new Resource[assets.size()];
+
+        for (int i = 0; i < resources.length; i++)
+        {
+            resources[i] = assets.get(i).getResource();
+        }
+
+        String stackURL = assetPathConstructor.constructAssetPath(RequestConstants.STACK_FOLDER, path, resources);
 
         return CollectionFactory.newList(stackURL);
     }
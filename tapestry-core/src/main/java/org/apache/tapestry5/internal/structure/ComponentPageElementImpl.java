@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -1046,15 +1046,14 @@ public class ComponentPageElementImpl extends BaseLocatable implements Component
     {
         assert InternalUtils.isNonBlank(eventType);
         assert context != null;
-        String description = String.format("Triggering event '%s' on %s", eventType, completeId);
 
-        return elementResources.invoke(description, new Invokable<Boolean>()
+        return elementResources.invoke(new Invokable<Boolean>()
         {
             public Boolean invoke()
             {
                 return processEventTriggering(eventType, context, callback);
             }
-        });
+        }, "Triggering event '%s' on %s", eventType, completeId);
     }
 
     @SuppressWarnings("all")
@@ -1,4 +1,4 @@
-// Copyright 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -151,6 +151,16 @@ public class ComponentPageElementResourcesImpl implements ComponentPageElementRe
         tracker.run(description, operation);
     }
 
+    public <T> T invoke(Invokable<T> operation, String format, Object... arguments)
+    {
+        return tracker.invoke(operation, format, arguments);
+    }
+
+    public void run(Runnable operation, String format, Object... arguments)
+    {
+        tracker.run(operation, format, arguments);
+    }
+
     public <T> PerThreadValue<T> createPerThreadValue()
     {
         return perThreadManager.createValue();
@@ -1,5 +1,5 @@
 //
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
 // You may obtain a copy of the License at
@@ -46,13 +46,12 @@ public class EventHandlerMethodParameterSource
         // Hopefully this will not be too much overhead; it's really nice to be able to track what parameter
         // caused a failure.
 
-        return operationTracker.invoke(String.format("Obtaining value for parameter #%d of %s", index + 1, methodIdentifier),
-                new Invokable<Object>()
-                {
-                    public Object invoke()
-                    {
-                        return providers[index].valueForEventHandlerMethodParameter(event);
-                    }
-                });
+        return operationTracker.invoke(new Invokable<Object>()
+        {
+            public Object invoke()
+            {
+                return providers[index].valueForEventHandlerMethodParameter(event);
+            }
+        }, "Obtaining value for parameter #%d of %s", index + 1, methodIdentifier);
     }
 }
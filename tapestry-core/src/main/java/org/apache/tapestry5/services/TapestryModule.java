@@ -1803,6 +1803,9 @@ public final class TapestryModule
      * <dl>
      * <dt>DocumentLinker</dt>
      * <dd>Provides {@link org.apache.tapestry5.internal.services.DocumentLinker}</dd>
+     * <dt>PreloadHints</dt>
+     * <dd>Adds preload hints for the page's assets to the response (only if {@link SymbolConstants#PRELOAD_HINTS} is
+     * true)</dd>
      * <dt>JavascriptSupport</dt>
      * <dd>Provides {@link JavaScriptSupport}</dd>
      * <dt>RenderSupport</dt>
@@ -1815,6 +1818,9 @@ public final class TapestryModule
      * <dd>Provides {@link org.apache.tapestry5.services.Heartbeat}</dd>
      * <dt>ValidationDecorator</dt>
      * <dd>Provides {@link org.apache.tapestry5.ValidationDecorator} (via {@link ValidationDecoratorFactory#newInstance(org.apache.tapestry5.MarkupWriter)})</dd>
+     * <dt>FlattenMarkup</dt>
+     * <dd>Converts completed body content to markup as the page renders (only if
+     * {@link SymbolConstants#FLATTEN_RENDERED_MARKUP} is true)</dd>
      * </dl>
      */
     public void contributeMarkupRenderer(OrderedConfiguration<MarkupRendererFilter> configuration,
@@ -1822,6 +1828,12 @@ public final class TapestryModule
                                          @Symbol(SymbolConstants.OMIT_GENERATOR_META)
                                          final boolean omitGeneratorMeta,
 
+                                         @Symbol(SymbolConstants.FLATTEN_RENDERED_MARKUP)
+                                         final boolean flattenRenderedMarkup,
+
+                                         @Symbol(SymbolConstants.PRELOAD_HINTS)
+                                         final boolean preloadHintsEnabled,
+
                                          @Symbol(SymbolConstants.TAPESTRY_VERSION)
                                          final String tapestryVersion,
 
@@ -1838,6 +1850,8 @@ public final class TapestryModule
 
                                          final ValidationDecoratorFactory validationDecoratorFactory,
 
+                                         final PreloadHints preloadHints,
+
                                          @Path("${tapestry.default-stylesheet}")
                                          final Asset defaultStylesheet)
     {
@@ -1857,6 +1871,31 @@ public final class TapestryModule
             }
         };
 
+        MarkupRendererFilter preloadHintsFilter = new MarkupRendererFilter()
+        {
+            public void renderMarkup(MarkupWriter writer, MarkupRenderer renderer)
+            {
+                String pageName = requestGlobals.getActivePageName();
+                DocumentLinker linker = environment.peekRequired(DocumentLinker.class);
+
+                if (!preloadHintsEnabled || pageName == null || !(linker instanceof DocumentLinkerImpl))
+                {
+                    renderer.renderMarkup(writer);
+                    return;
+                }
+
+                preloadHints.addHints(pageName);
+
+                renderer.renderMarkup(writer);
+
+                // The JavaScriptSupport filter has committed its libraries and stacks to the linker by now.
+
+                DocumentLinkerImpl linkerImpl = (DocumentLinkerImpl) linker;
+
+                preloadHints.recordAssets(pageName, linkerImpl.getScriptURLs(), linkerImpl.getStylesheetURLs());
+            }
+        };
+
         MarkupRendererFilter javaScriptSupport = new MarkupRendererFilter()
         {
             public void renderMarkup(MarkupWriter writer, MarkupRenderer renderer)
@@ -1955,13 +1994,41 @@ public final class TapestryModule
             }
         };
 
+        MarkupRendererFilter flattenMarkup = new MarkupRendererFilter()
+        {
+            public void renderMarkup(MarkupWriter writer, MarkupRenderer renderer)
+            {
+                Heartbeat heartbeat = environment.peek(Heartbeat.class);
+
+                if (!flattenRenderedMarkup || !(heartbeat instanceof HeartbeatImpl))
+                {
+                    renderer.renderMarkup(writer);
+                    return;
+                }
+
+                MarkupFlattener flattener = new MarkupFlattener(environment, (HeartbeatImpl) heartbeat);
+
+                writer.addListener(flattener);
+
+                try
+                {
+                    renderer.renderMarkup(writer);
+                } finally
+                {
+                    writer.removeListener(flattener);
+                }
+            }
+        };
+
         configuration.add("DocumentLinker", documentLinker);
+        configuration.add("PreloadHints", preloadHintsFilter, "after:DocumentLinker", "before:JavaScriptSupport");
         configuration.add("JavaScriptSupport", javaScriptSupport);
         configuration.add("RenderSupport", renderSupport);
         configuration.add("InjectDefaultStylesheet", injectDefaultStylesheet);
         configuration.add("ClientBehaviorSupport", clientBehaviorSupport);
         configuration.add("Heartbeat", heartbeat);
         configuration.add("ValidationDecorator", defaultValidationDecorator);
+        configuration.add("FlattenMarkup", flattenMarkup, "after:Heartbeat");
     }
 
     /**
@@ -2326,6 +2393,15 @@ public final class TapestryModule
 
         configuration.add(SymbolConstants.APPLICATION_FOLDER, "");
 
+        configuration.add(SymbolConstants.PAGE_CACHE_MAX_SIZE, 1000);
+        configuration.add(SymbolConstants.PAGE_LOAD_TIMEOUT, "2 m");
+        configuration.add(SymbolConstants.PRELOAD_PAGES, "");
+        configuration.add(SymbolConstants.PRELOAD_LOCALES, "");
+        configuration.add(SymbolConstants.TEMPLATE_CACHE_DIR, "");
+        configuration.add(SymbolConstants.FLATTEN_RENDERED_MARKUP, false);
+        configuration.add(SymbolConstants.COMBINE_STATIC_MARKUP, false);
+        configuration.add(SymbolConstants.PRELOAD_HINTS, false);
+
         // Grid component parameters defaults
         configuration.add(ComponentParameterConstants.GRID_ROWS_PER_PAGE, GridConstants.ROWS_PER_PAGE);
         configuration.add(ComponentParameterConstants.GRID_PAGER_POSITION, GridConstants.PAGER_POSITION);
@@ -1,4 +1,4 @@
-// Copyright 2010, 2011 The Apache Software Foundation
+// Copyright 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,8 @@
 
 package org.apache.tapestry5.services.assets;
 
+import org.apache.tapestry5.ioc.Resource;
+
 /**
  * Encapsulates the logic or creating the path portion of an asset URL, including
  * the application version.
@@ -34,4 +36,34 @@ public interface AssetPathConstructor
      *         the virtual folder, and the path extension
      */
     String constructAssetPath(String virtualFolder, String path);
+
+    /**
+     * Constructs an asset URL path for the content of the resources. When {@linkplain
+     * org.apache.tapestry5.SymbolConstants#ASSET_URL_CONTENT_DIGEST enabled}, a digest of the content of the resources
+     * is used in place of the application version number, so that the URL changes only when the content changes.
+     * Otherwise, this is the same as {@link #constructAssetPath(String, String)}.
+     *
+     * @param virtualFolder
+     *         corresponds to a {@link AssetRequestHandler} contributed to the AssetDispatcher service
+     * @param path
+     *         within the virtual folder (should <em>not</em> start with a slash)
+     * @param resources
+     *         the resources whose content is provided by the asset URL (more than one for a combined JavaScript
+     *         stack)
+     * @return path portion of asset URL
+     * @since 5.4
+     */
+    String constructAssetPath(String virtualFolder, String path, Resource... resources);
+
+    /**
+     * Returns the content digest in the URL most recently constructed for the asset, or null if there is none (no URL
+     * with a digest has been constructed for the asset since startup, or since any resource changed).
+     *
+     * @param assetPath
+     *         the virtual folder and the path within the virtual folder, separated by a slash
+     * @return the current content digest, or null
+     * @see #constructAssetPath(String, String, org.apache.tapestry5.ioc.Resource...)
+     * @since 5.4
+     */
+    String getContentDigest(String assetPath);
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -36,6 +36,11 @@ public class AssetsModule
         binder.bind(ContentTypeAnalyzer.class, ContentTypeAnalyzerImpl.class);
         binder.bind(ResourceChangeTracker.class, ResourceChangeTrackerImpl.class);
         binder.bind(ResourceMinimizer.class, MasterResourceMinimizer.class);
+        binder.bind(AssetBundle.class, AssetBundleImpl.class);
+        binder.bind(AssetSpool.class, AssetSpoolImpl.class);
+        binder.bind(BackgroundCompressor.class, BackgroundCompressorImpl.class);
+        binder.bind(BackgroundMinimizer.class, BackgroundMinimizerImpl.class);
+        binder.bind(AssetCache.class, AssetCacheImpl.class);
     }
 
     @Contribute(SymbolProvider.class)
@@ -44,13 +49,28 @@ public class AssetsModule
     {
         configuration.add(SymbolConstants.MINIFICATION_ENABLED, SymbolConstants.PRODUCTION_MODE_VALUE);
         configuration.add(SymbolConstants.GZIP_COMPRESSION_ENABLED, "true");
+        configuration.add(SymbolConstants.GZIP_BEST_COMPRESSION, SymbolConstants.PRODUCTION_MODE_VALUE);
+        configuration.add(SymbolConstants.ASYNC_MINIFICATION, "false");
         configuration.add(SymbolConstants.COMBINE_SCRIPTS, SymbolConstants.PRODUCTION_MODE_VALUE);
         configuration.add(SymbolConstants.ASSET_URL_FULL_QUALIFIED, "false");
+        configuration.add(SymbolConstants.ASSET_URL_CONTENT_DIGEST, "false");
+        configuration.add(SymbolConstants.ASSET_BUNDLE_DIRECTORY, "");
+        configuration.add(SymbolConstants.ASSET_SPOOL_DIRECTORY, "");
+        configuration.add(SymbolConstants.ASSET_SPOOL_THRESHOLD, "65536");
+        configuration.add(SymbolConstants.ASSET_CACHE_SIZE, "33554432");
+        configuration.add(SymbolConstants.ASSET_CACHE_OFF_HEAP, "false");
     }
 
     // The use of decorators is to allow third-parties to get their own extensions
     // into the pipeline.
 
+    @Decorate(id = "BundledAssets", serviceInterface = StreamableResourceSource.class)
+    @Order("before:*")
+    public StreamableResourceSource enableAssetBundle(StreamableResourceSource delegate, AssetBundle bundle)
+    {
+        return bundle.isEnabled() ? new SRSBundleInterceptor(delegate, bundle) : null;
+    }
+
     @Decorate(id = "GZipCompression", serviceInterface = StreamableResourceSource.class)
     public StreamableResourceSource enableCompression(StreamableResourceSource delegate,
                                                       @Symbol(SymbolConstants.GZIP_COMPRESSION_ENABLED)
@@ -64,12 +84,15 @@ public class AssetsModule
     @Order("before:GZIpCompression")
     public StreamableResourceSource enableCompressedCaching(StreamableResourceSource delegate,
                                                             @Symbol(SymbolConstants.GZIP_COMPRESSION_ENABLED)
-                                                            boolean gzipEnabled, ResourceChangeTracker tracker)
+                                                            boolean gzipEnabled, ResourceChangeTracker tracker,
+                                                            AssetSpool spool, BackgroundMinimizer minimizer,
+                                                            AssetCache cache, BackgroundCompressor compressor)
     {
         if (!gzipEnabled)
             return null;
 
-        SRSCompressedCachingInterceptor interceptor = new SRSCompressedCachingInterceptor(delegate);
+        SRSCompressedCachingInterceptor interceptor = new SRSCompressedCachingInterceptor(delegate, spool, minimizer,
+                cache, compressor);
 
         tracker.addInvalidationListener(interceptor);
 
@@ -79,9 +102,10 @@ public class AssetsModule
     @Decorate(id = "Cache", serviceInterface = StreamableResourceSource.class)
     @Order("after:GZipCompression")
     public StreamableResourceSource enableUncompressedCaching(StreamableResourceSource delegate,
-                                                              ResourceChangeTracker tracker)
+                                                              ResourceChangeTracker tracker, AssetSpool spool,
+                                                              BackgroundMinimizer minimizer, AssetCache cache)
     {
-        SRSCachingInterceptor interceptor = new SRSCachingInterceptor(delegate);
+        SRSCachingInterceptor interceptor = new SRSCachingInterceptor(delegate, spool, minimizer, cache);
 
         tracker.addInvalidationListener(interceptor);
 
@@ -90,7 +114,7 @@ public class AssetsModule
 
     @Decorate(id = "Minification", serviceInterface = StreamableResourceSource.class)
     @Order("after:Cache")
-    public StreamableResourceSource enableMinification(StreamableResourceSource delegate, ResourceMinimizer minimizer,
+    public StreamableResourceSource enableMinification(StreamableResourceSource delegate, BackgroundMinimizer minimizer,
                                                        @Symbol(SymbolConstants.MINIFICATION_ENABLED)
                                                        boolean enabled)
     {
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -68,4 +68,12 @@ public interface StreamableResource
      * the HTTP request/response date headers.
      */
     long getLastModified();
+
+    /**
+     * Returns a checksum of the content (as streamed, so compressed content has a different checksum than
+     * the same content uncompressed); used as the resource's HTTP entity tag (ETag).
+     *
+     * @since 5.4
+     */
+    String getChecksum() throws IOException;
 }
@@ -1,4 +1,4 @@
-// Copyright 2011 The Apache Software Foundation
+// Copyright 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,10 +16,16 @@ package org.apache.tapestry5.services.pageload;
 
 import org.apache.tapestry5.internal.pageload.DefaultComponentRequestSelectorAnalyzer;
 import org.apache.tapestry5.internal.pageload.DefaultComponentResourceLocator;
+import org.apache.tapestry5.internal.pageload.PagePreloaderImpl;
 import org.apache.tapestry5.internal.services.ComponentTemplateSource;
 import org.apache.tapestry5.internal.services.ComponentTemplateSourceImpl;
+import org.apache.tapestry5.ioc.OrderedConfiguration;
 import org.apache.tapestry5.ioc.ServiceBinder;
+import org.apache.tapestry5.ioc.annotations.Contribute;
 import org.apache.tapestry5.ioc.annotations.Marker;
+import org.apache.tapestry5.services.ApplicationInitializer;
+import org.apache.tapestry5.services.ApplicationInitializerFilter;
+import org.apache.tapestry5.services.Context;
 import org.apache.tapestry5.services.Core;
 
 /**
@@ -33,5 +39,28 @@ public class PageLoadModule
         binder.bind(ComponentRequestSelectorAnalyzer.class, DefaultComponentRequestSelectorAnalyzer.class);
         binder.bind(ComponentResourceLocator.class, DefaultComponentResourceLocator.class);
         binder.bind(ComponentTemplateSource.class, ComponentTemplateSourceImpl.class);
+        binder.bind(PagePreloader.class, PagePreloaderImpl.class);
+    }
+
+    /**
+     * Contributes "PreloadPages", which {@linkplain PagePreloader preloads pages} once the rest of the application
+     * has initialized. This is a no-op unless the {@link org.apache.tapestry5.SymbolConstants#PRELOAD_PAGES} symbol
+     * is set.
+     *
+     * @since 5.4
+     */
+    @Contribute(ApplicationInitializer.class)
+    public static void preloadPagesAtStartup(OrderedConfiguration<ApplicationInitializerFilter> configuration,
+                                             final PagePreloader preloader)
+    {
+        configuration.add("PreloadPages", new ApplicationInitializerFilter()
+        {
+            public void initializeApplication(Context context, ApplicationInitializer initializer)
+            {
+                initializer.initializeApplication(context);
+
+                preloader.preloadPages();
+            }
+        }, "before:*");
     }
 }
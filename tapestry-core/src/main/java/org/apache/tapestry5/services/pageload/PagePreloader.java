@@ -0,0 +1,33 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.services.pageload;
+
+/**
+ * Loads pages in advance of the first request for them, so that the cost of parsing templates, transforming
+ * component classes and assembling pages is paid at application startup rather than by the first users. The
+ * pages and locales to load are identified by the {@link org.apache.tapestry5.SymbolConstants#PRELOAD_PAGES} and
+ * {@link org.apache.tapestry5.SymbolConstants#PRELOAD_LOCALES} symbols. The preloader is invoked as part of the
+ * {@link org.apache.tapestry5.services.ApplicationInitializer} pipeline.
+ *
+ * @since 5.4
+ */
+public interface PagePreloader
+{
+    /**
+     * Loads all configured pages, for all configured locales, in parallel, waiting until all have loaded. Failures are
+     * logged, but do not prevent other pages from being loaded.
+     */
+    void preloadPages();
+}
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -895,6 +895,41 @@ public class DOMTest extends InternalBaseTestCase
         assertEquals(attribute.getValue(), "flintstone");
     }
 
+    @Test
+    public void many_attributes_with_removal()
+    {
+        Document d = new Document();
+
+        Element root = d.newRootElement("root");
+
+        root.attributes("a", "1", "b", "2", "c", "3", "d", "4", "e", "5");
+
+        assertEquals(root.toString(), "<root e=\"5\" d=\"4\" c=\"3\" b=\"2\" a=\"1\"></root>");
+
+        root.forceAttributes("c", null, "a", null, "f", "6");
+
+        assertEquals(root.toString(), "<root f=\"6\" e=\"5\" d=\"4\" b=\"2\"></root>");
+        assertEquals(root.getAttributes().size(), 4);
+        assertNull(root.getAttribute("c"));
+        assertEquals(root.getAttribute("B"), "2");
+    }
+
+    @Test
+    public void text_written_in_several_parts()
+    {
+        Document d = new Document();
+
+        Element root = d.newRootElement("root");
+
+        Text text = root.text("");
+
+        text.write("alpha");
+        text.write("");
+        text.write(" & beta");
+
+        assertEquals(root.toString(), "<root>alpha &amp; beta</root>");
+    }
+
     /**
      * TAP5-636
      */
@@ -939,4 +974,64 @@ public class DOMTest extends InternalBaseTestCase
         assertEquals(writer.toString(), "<?xml version=\"1.0\"?>\n" +
                 "<ul><li>0</li><li>1</li><li>3</li></ul>");
     }
+
+    @Test
+    public void flatten_children()
+    {
+        Document d = new Document(new XMLMarkupModel());
+
+        Element root = d.newRootElement("ul");
+
+        Element first = root.element("li", "class", "first");
+        first.text("1");
+
+        root.element("li").text("2");
+
+        Element third = root.element("li");
+        third.text("3");
+
+        Node raw = root.flattenChildren(null, third);
+
+        assertEquals(root.getChildren().size(), 2);
+        assertSame(root.getChildren().get(0), raw);
+        assertSame(root.getChildren().get(1), third);
+
+        // The remaining element can still be modified.
+
+        third.attribute("class", "last");
+
+        Element fourth = root.element("li");
+        fourth.text("4");
+
+        assertSame(root.flattenChildren(raw, null), root.getChildren().get(1));
+        assertEquals(root.getChildren().size(), 2);
+
+        assertSame(root.flattenChildren(root.getChildren().get(1), null), root.getChildren().get(1));
+
+        root.element("li").text("5");
+
+        assertEquals(d.toString(), "<?xml version=\"1.0\"?>\n" +
+                "<ul><li class=\"first\">1</li><li>2</li><li class=\"last\">3</li><li>4</li><li>5</li></ul>");
+    }
+
+    @Test
+    public void flattened_children_retain_namespaces()
+    {
+        Document d = new Document(new XMLMarkupModel());
+
+        Element root = d.newRootElement("fredns", "root");
+
+        root.defineNamespace("fredns", "f");
+        root.defineNamespace("barneyns", "b");
+
+        Element nested = root.elementNS("fredns", "nested");
+
+        nested.elementNS("barneyns", "deepest");
+
+        String expected = d.toString();
+
+        root.flattenChildren(null, null);
+
+        assertEquals(d.toString(), expected);
+    }
 }
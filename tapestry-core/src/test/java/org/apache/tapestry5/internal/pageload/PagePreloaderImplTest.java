@@ -0,0 +1,114 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.pageload;
+
+import org.apache.tapestry5.internal.services.PageSource;
+import org.apache.tapestry5.internal.structure.Page;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.services.NonParallelExecutor;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.services.ComponentClassResolver;
+import org.apache.tapestry5.services.pageload.PagePreloader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+public class PagePreloaderImplTest extends InternalBaseTestCase
+{
+    private final Logger logger = LoggerFactory.getLogger(PagePreloaderImplTest.class);
+
+    @Test
+    public void nothing_is_loaded_by_default()
+    {
+        ComponentClassResolver resolver = mockComponentClassResolver();
+        PageSource pageSource = newMock(PageSource.class);
+        ThreadLocale threadLocale = mockThreadLocale();
+
+        replay();
+
+        PagePreloader preloader = new PagePreloaderImpl(logger, resolver, pageSource, threadLocale,
+                new NonParallelExecutor(), "", "", "en,fr");
+
+        preloader.preloadPages();
+
+        verify();
+    }
+
+    @Test
+    public void matching_pages_are_loaded_for_each_locale()
+    {
+        ComponentClassResolver resolver = mockComponentClassResolver();
+        PageSource pageSource = newMock(PageSource.class);
+        ThreadLocale threadLocale = mockThreadLocale();
+        Page page = mockPage();
+
+        expect(resolver.getPageNames()).andReturn(Arrays.asList("Index", "About", "admin/Users", "admin/Roles"));
+
+        for (String pageName : Arrays.asList("Index", "admin/Users", "admin/Roles"))
+        {
+            for (Locale locale : Arrays.asList(Locale.GERMAN, Locale.FRENCH))
+            {
+                train_getLocale(threadLocale, Locale.ENGLISH);
+                threadLocale.setLocale(locale);
+                expect(pageSource.getPage(pageName)).andReturn(page);
+                threadLocale.setLocale(Locale.ENGLISH);
+            }
+        }
+
+        replay();
+
+        PagePreloader preloader = new PagePreloaderImpl(logger, resolver, pageSource, threadLocale,
+                new NonParallelExecutor(), "index, ADMIN/*", "de,fr", "en");
+
+        preloader.preloadPages();
+
+        verify();
+    }
+
+    @Test
+    public void failed_page_does_not_prevent_other_pages_from_loading()
+    {
+        ComponentClassResolver resolver = mockComponentClassResolver();
+        PageSource pageSource = newMock(PageSource.class);
+        ThreadLocale threadLocale = mockThreadLocale();
+        Page page = mockPage();
+
+        expect(resolver.getPageNames()).andReturn(Arrays.asList("Broken", "Index"));
+
+        train_getLocale(threadLocale, Locale.ENGLISH);
+        threadLocale.setLocale(Locale.ENGLISH);
+        expect(pageSource.getPage("Broken")).andThrow(new RuntimeException("Template not found."));
+        threadLocale.setLocale(Locale.ENGLISH);
+
+        train_getLocale(threadLocale, Locale.ENGLISH);
+        threadLocale.setLocale(Locale.ENGLISH);
+        expect(pageSource.getPage("Index")).andReturn(page);
+        threadLocale.setLocale(Locale.ENGLISH);
+
+        replay();
+
+        // With no preload locales, only the first supported locale is used.
+
+        PagePreloader preloader = new PagePreloaderImpl(logger, resolver, pageSource, threadLocale,
+                new NonParallelExecutor(), "*", "", "en,fr");
+
+        preloader.preloadPages();
+
+        verify();
+    }
+}
@@ -0,0 +1,163 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.pageload;
+
+import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.MarkupWriterListener;
+import org.apache.tapestry5.dom.DefaultMarkupModel;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.MarkupModel;
+import org.apache.tapestry5.dom.Raw;
+import org.apache.tapestry5.dom.XMLMarkupModel;
+import org.apache.tapestry5.internal.parser.AttributeToken;
+import org.apache.tapestry5.internal.parser.StartElementToken;
+import org.apache.tapestry5.internal.parser.TextToken;
+import org.apache.tapestry5.internal.services.HeartbeatImpl;
+import org.apache.tapestry5.internal.services.MarkupFlattener;
+import org.apache.tapestry5.internal.services.MarkupWriterImpl;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.runtime.RenderCommand;
+import org.apache.tapestry5.services.Environment;
+import org.apache.tapestry5.services.Heartbeat;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class StaticMarkupFragmentTest extends InternalBaseTestCase
+{
+    private StaticMarkupFragment newFragment()
+    {
+        return new StaticMarkupFragment(new RenderCommand[]{
+                new StartElementToken(null, "p", null),
+                new AttributeToken(null, "class", "intro", null),
+                new TextToken("Fish & Chips", null),
+                new StartElementToken(null, "br", null),
+                PageLoaderImpl.END_ELEMENT,
+                PageLoaderImpl.END_ELEMENT
+        });
+    }
+
+    @Test
+    public void renders_as_raw_markup()
+    {
+        MarkupWriter writer = new MarkupWriterImpl();
+
+        writer.element("div");
+
+        newFragment().render(writer, null);
+
+        writer.end();
+
+        assertEquals(writer.toString(), "<div><p class=\"intro\">Fish &amp; Chips<br/></p></div>");
+        assertTrue(writer.getDocument().getRootElement().getChildren().get(0) instanceof Raw);
+    }
+
+    @Test
+    public void markup_is_reused_for_each_markup_model()
+    {
+        StaticMarkupFragment fragment = newFragment();
+
+        MarkupModel html = new DefaultMarkupModel();
+        MarkupModel xml = new XMLMarkupModel();
+
+        String htmlMarkup = fragment.getMarkup(html);
+        String xmlMarkup = fragment.getMarkup(xml);
+
+        assertEquals(xmlMarkup, "<p class=\"intro\">Fish &amp; Chips<br/></p>");
+
+        assertSame(fragment.getMarkup(html), htmlMarkup);
+        assertSame(fragment.getMarkup(xml), xmlMarkup);
+    }
+
+    @Test
+    public void elements_are_rendered_when_there_are_listeners()
+    {
+        final List<String> started = CollectionFactory.newList();
+
+        MarkupWriterImpl writer = new MarkupWriterImpl();
+
+        writer.element("div");
+
+        writer.addListener(new MarkupWriterListener()
+        {
+            public void elementDidStart(Element element)
+            {
+                started.add(element.getName());
+            }
+
+            public void elementDidEnd(Element element)
+            {
+            }
+        });
+
+        newFragment().render(writer, null);
+
+        writer.end();
+
+        assertListsEquals(started, "p", "br");
+        assertEquals(writer.toString(), "<div><p class=\"intro\">Fish &amp; Chips<br/></p></div>");
+    }
+
+    @Test
+    public void renders_as_raw_markup_while_markup_is_flattened()
+    {
+        HeartbeatImpl heartbeat = new HeartbeatImpl();
+        Environment environment = mockEnvironment();
+
+        expect(environment.peek(Heartbeat.class)).andReturn(heartbeat).anyTimes();
+
+        replay();
+
+        heartbeat.begin();
+
+        MarkupWriterImpl writer = new MarkupWriterImpl();
+
+        writer.addListener(new MarkupFlattener(environment, heartbeat));
+
+        assertFalse(writer.hasListeners());
+
+        writer.element("html");
+        writer.element("body");
+        writer.element("div");
+
+        newFragment().render(writer, null);
+
+        writer.end(); // div
+
+        writer.element("div", "class", "last");
+        writer.end();
+
+        writer.end(); // body
+        writer.end(); // html
+
+        heartbeat.end();
+
+        assertEquals(writer.toString(),
+                "<html><body><div><p class=\"intro\">Fish &amp; Chips<br/></p></div><div class=\"last\"></div></body></html>");
+
+        verify();
+    }
+
+    @Test
+    public void elements_are_rendered_when_there_is_no_current_element()
+    {
+        MarkupWriter writer = new MarkupWriterImpl();
+
+        newFragment().render(writer, null);
+
+        assertEquals(writer.getDocument().getRootElement().getName(), "p");
+    }
+}
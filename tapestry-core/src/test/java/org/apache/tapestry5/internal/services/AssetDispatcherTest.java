@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,18 +14,24 @@
 
 package org.apache.tapestry5.internal.services;
 
+import org.apache.tapestry5.internal.InternalConstants;
 import org.apache.tapestry5.internal.test.InternalBaseTestCase;
 import org.apache.tapestry5.ioc.Resource;
 import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.services.ClasspathAssetAliasManager;
 import org.apache.tapestry5.services.Dispatcher;
 import org.apache.tapestry5.services.Request;
 import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.assets.AssetPathConstructor;
+import org.apache.tapestry5.services.assets.AssetRequestHandler;
 import static org.easymock.EasyMock.contains;
 import static org.easymock.EasyMock.eq;
 import org.testng.annotations.Test;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
 
 public class AssetDispatcherTest extends InternalBaseTestCase
 {
@@ -303,4 +309,122 @@ public class AssetDispatcherTest extends InternalBaseTestCase
 //
 //        verify();
 //    }
+
+    private Dispatcher newDispatcher(AssetRequestHandler handler, boolean contentDigest)
+    {
+        return newDispatcher(handler, contentDigest, null);
+    }
+
+    private Dispatcher newDispatcher(AssetRequestHandler handler, boolean contentDigest,
+                                     AssetPathConstructor assetPathConstructor)
+    {
+        Map<String, AssetRequestHandler> configuration = CollectionFactory.newMap();
+
+        configuration.put("ctx", handler);
+
+        return new AssetDispatcher(configuration, APPLICATION_VERSION, "", "/assets/", contentDigest,
+                assetPathConstructor);
+    }
+
+    @Test
+    public void application_version_is_required() throws IOException
+    {
+        AssetRequestHandler handler = newMock(AssetRequestHandler.class);
+        Request request = mockRequest();
+        Response response = mockResponse();
+
+        train_getPath(request, "/assets/abc123/ctx/images/smiley.png");
+
+        replay();
+
+        assertFalse(newDispatcher(handler, false).dispatch(request, response));
+
+        verify();
+    }
+
+    @Test
+    public void content_digest_takes_place_of_application_version() throws IOException
+    {
+        AssetRequestHandler handler = newMock(AssetRequestHandler.class);
+        AssetPathConstructor assetPathConstructor = newMock(AssetPathConstructor.class);
+        Request request = mockRequest();
+        Response response = mockResponse();
+
+        train_getPath(request, "/assets/abc123/ctx/images/smiley.png");
+
+        expect(assetPathConstructor.getContentDigest("ctx/images/smiley.png")).andReturn("abc123");
+
+        expect(handler.handleAssetRequest(request, response, "images/smiley.png")).andReturn(true);
+
+        replay();
+
+        assertTrue(newDispatcher(handler, true, assetPathConstructor).dispatch(request, response));
+
+        verify();
+    }
+
+    @Test
+    public void application_version_accepted_with_content_digests() throws IOException
+    {
+        AssetRequestHandler handler = newMock(AssetRequestHandler.class);
+        AssetPathConstructor assetPathConstructor = newMock(AssetPathConstructor.class);
+        Request request = mockRequest();
+        Response response = mockResponse();
+
+        train_getPath(request, "/assets/" + APPLICATION_VERSION + "/ctx/images/smiley.png");
+
+        expect(handler.handleAssetRequest(request, response, "images/smiley.png")).andReturn(true);
+
+        replay();
+
+        assertTrue(newDispatcher(handler, true, assetPathConstructor).dispatch(request, response));
+
+        verify();
+    }
+
+    @Test
+    public void outdated_content_digest_redirects_to_current_url() throws IOException
+    {
+        AssetRequestHandler handler = newMock(AssetRequestHandler.class);
+        AssetPathConstructor assetPathConstructor = newMock(AssetPathConstructor.class);
+        Request request = mockRequest();
+        Response response = mockResponse();
+
+        train_getPath(request, "/assets/abc123/ctx/images/smiley.png");
+
+        expect(assetPathConstructor.getContentDigest("ctx/images/smiley.png")).andReturn("def456");
+
+        train_getContextPath(request, "/app");
+
+        response.sendRedirect("/app/assets/def456/ctx/images/smiley.png");
+
+        replay();
+
+        assertTrue(newDispatcher(handler, true, assetPathConstructor).dispatch(request, response));
+
+        verify();
+    }
+
+    @Test
+    public void unknown_content_digest_is_not_cached_far_into_the_future() throws IOException
+    {
+        AssetRequestHandler handler = newMock(AssetRequestHandler.class);
+        AssetPathConstructor assetPathConstructor = newMock(AssetPathConstructor.class);
+        Request request = mockRequest();
+        Response response = mockResponse();
+
+        train_getPath(request, "/assets/abc123/ctx/images/smiley.png");
+
+        expect(assetPathConstructor.getContentDigest("ctx/images/smiley.png")).andReturn(null);
+
+        request.setAttribute(InternalConstants.SUPPRESS_FAR_FUTURE_EXPIRES, true);
+
+        expect(handler.handleAssetRequest(request, response, "images/smiley.png")).andReturn(true);
+
+        replay();
+
+        assertTrue(newDispatcher(handler, true, assetPathConstructor).dispatch(request, response));
+
+        verify();
+    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -36,11 +36,13 @@ public class ComponentEventImplTest extends InternalBaseTestCase
     {
         ComponentPageElementResources resources = newMock(ComponentPageElementResources.class);
 
-        expect(resources.invoke(EasyMock.isA(String.class), EasyMock.isA(Invokable.class))).andAnswer(new IAnswer<Object>()
+        // The description is formatted from a single argument, the method description.
+
+        expect(resources.invoke(EasyMock.isA(Invokable.class), EasyMock.isA(String.class), EasyMock.anyObject())).andAnswer(new IAnswer<Object>()
         {
             public Object answer() throws Throwable
             {
-                Invokable inv = (Invokable) EasyMock.getCurrentArguments()[1];
+                Invokable inv = (Invokable) EasyMock.getCurrentArguments()[0];
 
                 return inv.invoke();
             }
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -33,6 +33,7 @@ import org.apache.tapestry5.services.InvalidationListener;
 import org.apache.tapestry5.services.pageload.ComponentResourceLocator;
 import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
 import org.apache.tapestry5.services.templates.ComponentTemplateLocator;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
 public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
@@ -49,6 +50,12 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
     private final ComponentResourceSelector french = new ComponentResourceSelector(Locale.FRENCH);
 
+    /**
+     * Template store that is disabled; it never has a stored template, and does not store templates.
+     */
+    private final TemplateStore noStore = new TemplateStoreImpl(LoggerFactory.getLogger(TemplateStore.class), "",
+            true);
+
     /**
      * Creates a new class loader, whose parent is the thread's context class loader, but adds a single classpath root
      * from the filesystem.
@@ -106,7 +113,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, noStore, locator, converter);
 
         assertSame(source.getTemplate(model, english), template);
 
@@ -118,6 +125,60 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
         verify();
     }
 
+    @Test
+    public void stored_template_is_used_instead_of_parsing()
+    {
+        TemplateParser parser = mockTemplateParser();
+        TemplateStore store = newMock(TemplateStore.class);
+        ComponentTemplate template = mockComponentTemplate();
+        ComponentModel model = mockComponentModel();
+        Resource resource = mockResource();
+        ComponentResourceLocator locator = mockLocator(model, english, resource);
+
+        train_getComponentClassName(model, PACKAGE + ".Fred");
+
+        expect(resource.exists()).andReturn(true);
+        expect(resource.toURL()).andReturn(null);
+
+        expect(store.load(resource)).andReturn(template);
+
+        replay();
+
+        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, store, locator, converter);
+
+        assertSame(source.getTemplate(model, english), template);
+
+        verify();
+    }
+
+    @Test
+    public void parsed_template_is_stored()
+    {
+        TemplateParser parser = mockTemplateParser();
+        TemplateStore store = newMock(TemplateStore.class);
+        ComponentTemplate template = mockComponentTemplate();
+        ComponentModel model = mockComponentModel();
+        Resource resource = mockResource();
+        ComponentResourceLocator locator = mockLocator(model, english, resource);
+
+        train_getComponentClassName(model, PACKAGE + ".Fred");
+
+        expect(resource.exists()).andReturn(true);
+        expect(resource.toURL()).andReturn(null);
+
+        expect(store.load(resource)).andReturn(null);
+        train_parseTemplate(parser, resource, template);
+        store.store(resource, template);
+
+        replay();
+
+        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, store, locator, converter);
+
+        assertSame(source.getTemplate(model, english), template);
+
+        verify();
+    }
+
     protected final ComponentTemplateLocator mockComponentTemplateLocator()
     {
         return newMock(ComponentTemplateLocator.class);
@@ -155,7 +216,8 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(false, parser, locator, converter);
+        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(false, parser, noStore, locator,
+                converter);
         source.addInvalidationListener(listener);
 
         assertSame(source.getTemplate(model, Locale.ENGLISH), template);
@@ -223,7 +285,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, noStore, locator, converter);
 
         assertSame(source.getTemplate(model, Locale.ENGLISH), template);
 
@@ -261,7 +323,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSourceImpl source = new ComponentTemplateSourceImpl(true, parser, noStore, locator, converter);
 
         ComponentTemplate template = source.getTemplate(model, Locale.ENGLISH);
 
@@ -293,7 +355,7 @@ public class ComponentTemplateSourceImplTest extends InternalBaseTestCase
 
         replay();
 
-        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, locator, converter);
+        ComponentTemplateSource source = new ComponentTemplateSourceImpl(true, parser, noStore, locator, converter);
 
         assertSame(source.getTemplate(model, english), template);
 
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2009 The Apache Software Foundation
+// Copyright 2006, 2007, 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -63,7 +63,9 @@ public class ContextAssetFactoryTest extends InternalBaseTestCase
                                                                 "4.5.6",
                                                                 "",
                                                                 false,
-                                                                "/assets/"
+                                                                "/assets/",
+                                                                null,
+                                                                false
                                                             ),
                                     context,
                                     new IdentityAssetPathConverter()
@@ -82,6 +84,61 @@ public class ContextAssetFactoryTest extends InternalBaseTestCase
         verify();
     }
 
+    @Test
+    public void asset_client_URL_with_content_digest()
+    {
+        Context context = mockContext();
+        Request request = mockRequest();
+        ResourceDigestManager digestManager = newMock(ResourceDigestManager.class);
+
+        Resource r = new ContextResource(context, "foo/Bar.txt");
+
+        train_getContextPath(request, "/context");
+        expect(digestManager.getContentDigest(r)).andReturn("abc123");
+
+        replay();
+
+        AssetPathConstructorImpl pathConstructor = new AssetPathConstructorImpl(request, null, "4.5.6", "", false,
+                "/assets/", digestManager, true);
+
+        AssetFactory factory = new ContextAssetFactory(pathConstructor, context, converter);
+
+        assertEquals(factory.createAsset(r).toClientURL(), "/context/assets/abc123/ctx/foo/Bar.txt");
+
+        // The digest is remembered, to verify requests for the asset, until resources change.
+
+        assertEquals(pathConstructor.getContentDigest("ctx/foo/Bar.txt"), "abc123");
+
+        pathConstructor.objectWasInvalidated();
+
+        assertNull(pathConstructor.getContentDigest("ctx/foo/Bar.txt"));
+
+        verify();
+    }
+
+    @Test
+    public void asset_client_URL_with_content_digest_for_missing_resource()
+    {
+        Context context = mockContext();
+        Request request = mockRequest();
+        ResourceDigestManager digestManager = newMock(ResourceDigestManager.class);
+
+        Resource r = new ContextResource(context, "foo/Missing.txt");
+
+        train_getContextPath(request, "/context");
+        expect(digestManager.getContentDigest(r)).andReturn(null);
+
+        replay();
+
+        AssetFactory factory = new ContextAssetFactory(
+                new AssetPathConstructorImpl(request, null, "4.5.6", "", false, "/assets/", digestManager, true),
+                context, converter);
+
+        assertEquals(factory.createAsset(r).toClientURL(), "/context/assets/4.5.6/ctx/foo/Missing.txt");
+
+        verify();
+    }
+
     @Test
     public void asset_client_URL_fully_qualified()
     {
@@ -103,7 +160,9 @@ public class ContextAssetFactoryTest extends InternalBaseTestCase
                                                                 "4.5.6",
                                                                 "",
                                                                 true,
-                                                                "/assets/"
+                                                                "/assets/",
+                                                                null,
+                                                                false
                                                             ),
                                     context,
                                     new IdentityAssetPathConverter()
@@ -1,4 +1,4 @@
-// Copyright 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -403,4 +403,22 @@ public class DocumentLinkerImplTest extends InternalBaseTestCase
         assertEquals(document.toString(), readFile("stylesheet_insertion_point.txt"));
 
     }
+
+    @Test
+    public void linked_asset_urls()
+    {
+        DocumentLinkerImpl linker = new DocumentLinkerImpl(true, "1.2.3", true);
+
+        linker.addScriptLink("foo.js");
+        linker.addScriptLink("bar.js");
+
+        linker.addStylesheetLink(new StylesheetLink("everybody.css"));
+        linker.addStylesheetLink(new StylesheetLink("just_ie.css", new StylesheetOptions().withCondition("IE")));
+
+        assertListsEquals(linker.getScriptURLs(), "foo.js", "bar.js");
+
+        // Conditional stylesheets are omitted.
+
+        assertListsEquals(linker.getStylesheetURLs(), "everybody.css");
+    }
 }
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007 The Apache Software Foundation
+// Copyright 2006, 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -86,4 +86,36 @@ public class HeartbeatImplTest extends InternalBaseTestCase
 
         verify();
     }
+
+    @Test
+    public void quiescent_when_no_commands_are_deferred()
+    {
+        Runnable r1 = mockRunnable();
+
+        r1.run();
+
+        replay();
+
+        HeartbeatImpl hb = new HeartbeatImpl();
+
+        hb.begin();
+
+        assertTrue(hb.isQuiescent());
+
+        hb.begin();
+
+        assertTrue(hb.isQuiescent());
+
+        hb.defer(r1);
+
+        assertFalse(hb.isQuiescent());
+
+        hb.end();
+
+        assertTrue(hb.isQuiescent());
+
+        hb.end();
+
+        verify();
+    }
 }
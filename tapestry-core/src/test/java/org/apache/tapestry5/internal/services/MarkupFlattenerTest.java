@@ -0,0 +1,162 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.MarkupWriter;
+import org.apache.tapestry5.dom.Element;
+import org.apache.tapestry5.dom.Node;
+import org.apache.tapestry5.dom.Raw;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.services.Environment;
+import org.apache.tapestry5.services.Heartbeat;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class MarkupFlattenerTest extends InternalBaseTestCase
+{
+    private static final String EXPECTED = "<html><head><meta name=\"x\"/><title>Test</title></head>" +
+            "<body><div><p>1</p><p>2</p><p>3</p></div><div class=\"last\">End</div></body></html>";
+
+    private void render(MarkupWriter writer)
+    {
+        writer.element("html");
+        writer.element("head");
+        writer.element("meta", "name", "x");
+        writer.end();
+        writer.element("title");
+        writer.write("Test");
+        writer.end();
+        writer.end(); // head
+
+        writer.element("body");
+        writer.element("div");
+
+        for (int i = 1; i <= 3; i++)
+        {
+            writer.element("p");
+            writer.write(String.valueOf(i));
+            writer.end();
+        }
+
+        writer.end(); // div
+
+        writer.element("div", "class", "last");
+        writer.write("End");
+        writer.end();
+
+        writer.end(); // body
+        writer.end(); // html
+    }
+
+    private Environment mockEnvironment(Heartbeat heartbeat)
+    {
+        Environment environment = mockEnvironment();
+
+        expect(environment.peek(Heartbeat.class)).andReturn(heartbeat).anyTimes();
+
+        return environment;
+    }
+
+    @Test
+    public void completed_body_content_is_flattened()
+    {
+        HeartbeatImpl heartbeat = new HeartbeatImpl();
+        Environment environment = mockEnvironment(heartbeat);
+
+        replay();
+
+        heartbeat.begin();
+
+        MarkupWriter writer = new MarkupWriterImpl();
+
+        writer.addListener(new MarkupFlattener(environment, heartbeat));
+
+        render(writer);
+
+        heartbeat.end();
+
+        assertEquals(writer.toString(), EXPECTED);
+
+        Element root = writer.getDocument().getRootElement();
+
+        // The head is untouched.
+
+        assertEquals(root.find("head").getChildren().size(), 2);
+        assertNotNull(root.find("head/meta"));
+
+        // The first div was flattened when the second div started; the paragraphs inside the first div were
+        // flattened before that, and the second div was not followed by any other element.
+
+        List<Node> bodyChildren = root.find("body").getChildren();
+
+        assertEquals(bodyChildren.size(), 2);
+        assertTrue(bodyChildren.get(0) instanceof Raw);
+        assertEquals(((Element) bodyChildren.get(1)).getAttribute("class"), "last");
+
+        verify();
+    }
+
+    @Test
+    public void nothing_is_flattened_while_commands_are_deferred()
+    {
+        HeartbeatImpl heartbeat = new HeartbeatImpl();
+        Environment environment = mockEnvironment(heartbeat);
+        Runnable command = mockRunnable();
+
+        command.run();
+
+        replay();
+
+        heartbeat.begin();
+        heartbeat.defer(command);
+
+        MarkupWriter writer = new MarkupWriterImpl();
+
+        writer.addListener(new MarkupFlattener(environment, heartbeat));
+
+        render(writer);
+
+        heartbeat.end();
+
+        assertEquals(writer.toString(), EXPECTED);
+
+        assertNotNull(writer.getDocument().getRootElement().find("body/div/p"));
+
+        verify();
+    }
+
+    @Test
+    public void nothing_is_flattened_inside_a_different_heartbeat()
+    {
+        HeartbeatImpl pageHeartbeat = new HeartbeatImpl();
+        HeartbeatImpl formHeartbeat = new HeartbeatImpl();
+        Environment environment = mockEnvironment(formHeartbeat);
+
+        replay();
+
+        MarkupWriter writer = new MarkupWriterImpl();
+
+        writer.addListener(new MarkupFlattener(environment, pageHeartbeat));
+
+        render(writer);
+
+        assertEquals(writer.toString(), EXPECTED);
+
+        assertNotNull(writer.getDocument().getRootElement().find("body/div/p"));
+
+        verify();
+    }
+}
@@ -0,0 +1,301 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.structure.Page;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.pageload.ComponentResourceSelector;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PageCacheImplTest extends InternalBaseTestCase
+{
+    private static final ComponentResourceSelector ENGLISH = new ComponentResourceSelector(Locale.ENGLISH);
+
+    private static final ComponentResourceSelector FRENCH = new ComponentResourceSelector(Locale.FRENCH);
+
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void page_is_loaded_once_then_cached()
+    {
+        PageLoader loader = newMock(PageLoader.class);
+        Page page = mockPage();
+
+        expect(loader.loadPage("Index", ENGLISH)).andReturn(page);
+
+        replay();
+
+        PageCache cache = new PageCacheImpl(10, TIMEOUT);
+
+        assertSame(cache.get("Index", ENGLISH, loader), page);
+        assertSame(cache.get("Index", ENGLISH, loader), page);
+
+        PageCache.Stats stats = cache.getStats();
+
+        assertEquals(stats.hits, 1L);
+        assertEquals(stats.misses, 1L);
+        assertEquals(stats.loads, 1L);
+        assertEquals(stats.evictions, 0L);
+        assertEquals(stats.size, 1);
+
+        verify();
+    }
+
+    @Test
+    public void least_recently_used_page_is_evicted()
+    {
+        PageLoader loader = newMock(PageLoader.class);
+        Page index = mockPage();
+        Page about = mockPage();
+        Page french = mockPage();
+
+        expect(loader.loadPage("Index", ENGLISH)).andReturn(index);
+        expect(loader.loadPage("About", ENGLISH)).andReturn(about);
+        expect(loader.loadPage("Index", FRENCH)).andReturn(french);
+
+        replay();
+
+        PageCache cache = new PageCacheImpl(2, TIMEOUT);
+
+        cache.get("Index", ENGLISH, loader);
+        cache.get("About", ENGLISH, loader);
+
+        // Makes About the least recently used.
+
+        cache.get("Index", ENGLISH, loader);
+
+        cache.get("Index", FRENCH, loader);
+
+        assertEquals(cache.getAllPages().size(), 2);
+        assertTrue(cache.getAllPages().contains(index));
+        assertTrue(cache.getAllPages().contains(french));
+
+        assertEquals(cache.getStats().evictions, 1L);
+
+        verify();
+    }
+
+    @Test
+    public void clear_discards_all_pages()
+    {
+        PageLoader loader = newMock(PageLoader.class);
+        Page first = mockPage();
+        Page second = mockPage();
+
+        expect(loader.loadPage("Index", ENGLISH)).andReturn(first);
+        expect(loader.loadPage("Index", ENGLISH)).andReturn(second);
+
+        replay();
+
+        PageCache cache = new PageCacheImpl(0, TIMEOUT);
+
+        assertSame(cache.get("Index", ENGLISH, loader), first);
+
+        cache.clear();
+
+        assertTrue(cache.getAllPages().isEmpty());
+
+        assertSame(cache.get("Index", ENGLISH, loader), second);
+
+        assertEquals(cache.getStats().evictions, 0L);
+
+        verify();
+    }
+
+    @Test
+    public void failed_load_is_propagated_and_not_cached()
+    {
+        PageLoader loader = newMock(PageLoader.class);
+        Page page = mockPage();
+        RuntimeException failure = new RuntimeException("Template not found.");
+
+        expect(loader.loadPage("Index", ENGLISH)).andThrow(failure);
+        expect(loader.loadPage("Index", ENGLISH)).andReturn(page);
+
+        replay();
+
+        PageCache cache = new PageCacheImpl(10, TIMEOUT);
+
+        try
+        {
+            cache.get("Index", ENGLISH, loader);
+            unreachable();
+        } catch (RuntimeException ex)
+        {
+            assertSame(ex, failure);
+        }
+
+        assertTrue(cache.getAllPages().isEmpty());
+
+        assertSame(cache.get("Index", ENGLISH, loader), page);
+
+        verify();
+    }
+
+    @Test
+    public void concurrent_requests_share_a_single_load() throws Exception
+    {
+        final Page page = mockPage();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+        final AtomicInteger loadCount = new AtomicInteger();
+
+        replay();
+
+        final PageLoader loader = new PageLoader()
+        {
+            public Page loadPage(String logicalPageName, ComponentResourceSelector selector)
+            {
+                loadCount.incrementAndGet();
+                loadStarted.countDown();
+
+                try
+                {
+                    releaseLoad.await();
+                } catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+
+                return page;
+            }
+        };
+
+        final PageCache cache = new PageCacheImpl(10, TIMEOUT);
+
+        Callable<Page> request = new Callable<Page>()
+        {
+            public Page call()
+            {
+                return cache.get("Index", ENGLISH, loader);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+
+        try
+        {
+            List<Future<Page>> results = CollectionFactory.newList();
+
+            results.add(executor.submit(request));
+
+            loadStarted.await();
+
+            for (int i = 0; i < 4; i++)
+            {
+                results.add(executor.submit(request));
+            }
+
+            // Give the other threads a chance to block waiting for the load in progress.
+
+            Thread.sleep(100);
+
+            releaseLoad.countDown();
+
+            for (Future<Page> result : results)
+            {
+                assertSame(result.get(), page);
+            }
+        } finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(loadCount.get(), 1);
+        assertEquals(cache.getStats().loads, 1L);
+
+        verify();
+    }
+
+    @Test
+    public void waiting_for_a_load_times_out() throws Exception
+    {
+        final Page page = mockPage();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLoad = new CountDownLatch(1);
+
+        replay();
+
+        final PageLoader loader = new PageLoader()
+        {
+            public Page loadPage(String logicalPageName, ComponentResourceSelector selector)
+            {
+                loadStarted.countDown();
+
+                try
+                {
+                    releaseLoad.await();
+                } catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+
+                return page;
+            }
+        };
+
+        final PageCache cache = new PageCacheImpl(10, 50);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try
+        {
+            Future<Page> load = executor.submit(new Callable<Page>()
+            {
+                public Page call()
+                {
+                    return cache.get("Index", ENGLISH, loader);
+                }
+            });
+
+            loadStarted.await();
+
+            try
+            {
+                cache.get("Index", ENGLISH, loader);
+                unreachable();
+            } catch (RuntimeException ex)
+            {
+                assertEquals(ex.getMessage(), "Timed out after 50 ms waiting for page Index (en) to be loaded.");
+                assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+
+            // The load itself is unaffected by the timeout.
+
+            releaseLoad.countDown();
+
+            assertSame(load.get(), page);
+        } finally
+        {
+            executor.shutdown();
+        }
+
+        assertSame(cache.get("Index", ENGLISH, loader), page);
+        assertEquals(cache.getStats().loads, 1L);
+
+        verify();
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.services.ThreadLocale;
+import org.apache.tapestry5.services.Response;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+public class PreloadHintsImplTest extends InternalBaseTestCase
+{
+    private static final List<String> NONE = Collections.emptyList();
+
+    private ThreadLocale english()
+    {
+        ThreadLocale threadLocale = mockThreadLocale();
+
+        expect(threadLocale.getLocale()).andReturn(Locale.ENGLISH).anyTimes();
+
+        return threadLocale;
+    }
+
+    @Test
+    public void no_hints_before_page_has_rendered()
+    {
+        Response response = mockResponse();
+        ThreadLocale threadLocale = english();
+
+        replay();
+
+        new PreloadHintsImpl(response, threadLocale).addHints("Index");
+
+        verify();
+    }
+
+    @Test
+    public void hints_from_earlier_render()
+    {
+        Response response = mockResponse();
+
+        response.setHeader(PreloadHintsImpl.LINK_HEADER,
+                "</assets/1.0/core/default.css>; rel=preload; as=style, " +
+                        "</assets/1.0/stack/en/core.js>; rel=preload; as=script, " +
+                        "</assets/1.0/app/foo.js>; rel=preload; as=script");
+
+        ThreadLocale threadLocale = english();
+
+        replay();
+
+        PreloadHints hints = new PreloadHintsImpl(response, threadLocale);
+
+        hints.recordAssets("Index", Arrays.asList("/assets/1.0/stack/en/core.js", "/assets/1.0/app/foo.js"),
+                Arrays.asList("/assets/1.0/core/default.css"));
+
+        hints.addHints("Index");
+
+        // Hints are per-page.
+
+        hints.addHints("Other");
+
+        verify();
+    }
+
+    @Test
+    public void render_without_assets_removes_hints()
+    {
+        Response response = mockResponse();
+
+        ThreadLocale threadLocale = english();
+
+        replay();
+
+        PreloadHints hints = new PreloadHintsImpl(response, threadLocale);
+
+        hints.recordAssets("Index", Arrays.asList("/assets/1.0/app/foo.js"), NONE);
+        hints.recordAssets("Index", NONE, NONE);
+
+        hints.addHints("Index");
+
+        verify();
+    }
+
+    @Test
+    public void hints_discarded_on_invalidation()
+    {
+        Response response = mockResponse();
+
+        ThreadLocale threadLocale = english();
+
+        replay();
+
+        PreloadHintsImpl hints = new PreloadHintsImpl(response, threadLocale);
+
+        hints.recordAssets("Index", Arrays.asList("/assets/1.0/app/foo.js"), NONE);
+
+        hints.objectWasInvalidated();
+
+        hints.addHints("Index");
+
+        verify();
+    }
+
+    @Test
+    public void hints_are_per_locale()
+    {
+        Response response = mockResponse();
+        ThreadLocale threadLocale = mockThreadLocale();
+
+        expect(threadLocale.getLocale()).andReturn(Locale.ENGLISH);
+        expect(threadLocale.getLocale()).andReturn(Locale.FRENCH);
+        expect(threadLocale.getLocale()).andReturn(Locale.ENGLISH);
+
+        response.setHeader(PreloadHintsImpl.LINK_HEADER, "</assets/1.0/stack/en/core.js>; rel=preload; as=script");
+
+        replay();
+
+        PreloadHints hints = new PreloadHintsImpl(response, threadLocale);
+
+        hints.recordAssets("Index", Arrays.asList("/assets/1.0/stack/en/core.js"), NONE);
+
+        // Not yet rendered in French.
+
+        hints.addHints("Index");
+
+        hints.addHints("Index");
+
+        verify();
+    }
+}
@@ -511,6 +511,28 @@ public class PropertyConduitSourceImplTest extends InternalBaseTestCase
         assertEquals(conduit.get(bean), "B4 - Moe - AFTER");
     }
 
+    @Test
+    public void method_invocation_with_integer_to_double_argument()
+    {
+        PropertyConduit conduit = source.create(EchoBean.class, "echoDouble(storedInt, 2)");
+        EchoBean bean = new EchoBean();
+
+        bean.setStoredInt(7);
+
+        assertEquals(conduit.get(bean), new Double(14.));
+    }
+
+    @Test
+    public void method_invocation_with_primitive_to_string_argument()
+    {
+        PropertyConduit conduit = source.create(EchoBean.class, "echoString(storedInt, 'B4', 'AFTER')");
+        EchoBean bean = new EchoBean();
+
+        bean.setStoredInt(42);
+
+        assertEquals(conduit.get(bean), "B4 - 42 - AFTER");
+    }
+
     @Test
     public void method_invocation_using_dereference()
     {
@@ -637,6 +659,20 @@ public class PropertyConduitSourceImplTest extends InternalBaseTestCase
         assertEquals(conduit.get(holder), Boolean.FALSE);
     }
 
+    @Test
+    public void not_operator_on_boolean_property()
+    {
+        PropertyConduit conduit = source.create(Switch.class, "!value");
+
+        Switch sw = new Switch();
+
+        assertEquals(conduit.get(sw), Boolean.TRUE);
+
+        sw.setValue(true);
+
+        assertEquals(conduit.get(sw), Boolean.FALSE);
+    }
+
     @Test
     public void not_operator_in_subexpression()
     {
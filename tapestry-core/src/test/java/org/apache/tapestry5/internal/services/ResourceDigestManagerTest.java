@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 
+import org.apache.tapestry5.internal.services.assets.AssetBundle;
 import org.apache.tapestry5.internal.services.assets.ResourceChangeTracker;
 import org.apache.tapestry5.internal.test.InternalBaseTestCase;
 import org.apache.tapestry5.ioc.Resource;
@@ -36,16 +37,20 @@ public class ResourceDigestManagerTest extends InternalBaseTestCase
 
     private ResourceChangeTracker resourceChangeTracker;
 
+    private AssetBundle assetBundle;
+
     @BeforeClass
     public void setup()
     {
         resourceChangeTracker = getService(ResourceChangeTracker.class);
+        assetBundle = getService(AssetBundle.class);
     }
 
     @AfterClass
     public void cleanup()
     {
         resourceChangeTracker = null;
+        assetBundle = null;
     }
 
     @Test
@@ -67,7 +72,7 @@ public class ResourceDigestManagerTest extends InternalBaseTestCase
 
         replay();
 
-        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker);
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker, assetBundle);
 
         assertEquals(cache.requiresDigest(r), false);
         assertEquals(cache.getTimeModified(r), lastUpdated);
@@ -90,7 +95,7 @@ public class ResourceDigestManagerTest extends InternalBaseTestCase
 
         replay();
 
-        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, null);
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, null, assetBundle);
 
         assertEquals(cache.requiresDigest(r), true);
         assertEquals(cache.getTimeModified(r), ResourceDigestManagerImpl.MISSING_RESOURCE_TIME_MODIFIED);
@@ -119,7 +124,7 @@ public class ResourceDigestManagerTest extends InternalBaseTestCase
 
         replay();
 
-        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker);
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker, assetBundle);
 
         assertEquals(cache.requiresDigest(r), true);
         assertEquals(cache.getTimeModified(r), lastUpdated);
@@ -128,6 +133,113 @@ public class ResourceDigestManagerTest extends InternalBaseTestCase
         verify();
     }
 
+    @Test
+    public void content_digest_for_unprotected_resource() throws Exception
+    {
+        ResourceDigestGenerator generator = mockResourceDigestGenerator();
+
+        File f = createTestFile();
+        URL url = f.toURL();
+        Resource r = mockResource();
+
+        train_getPath(r, PATH);
+        train_toURL(r, url);
+
+        train_requiresDigest(generator, PATH, false);
+
+        // Generated just once.
+
+        train_generateChecksum(generator, url, DIGEST);
+
+        replay();
+
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker, assetBundle);
+
+        assertEquals(cache.getDigest(r), null);
+        assertEquals(cache.getContentDigest(r), DIGEST);
+        assertEquals(cache.getContentDigest(r), DIGEST);
+
+        verify();
+    }
+
+    @Test
+    public void content_digest_for_missing_resource() throws Exception
+    {
+        ResourceDigestGenerator generator = mockResourceDigestGenerator();
+
+        Resource r = mockResource();
+
+        train_getPath(r, PATH);
+        train_toURL(r, null);
+
+        train_requiresDigest(generator, PATH, false);
+
+        replay();
+
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, null, assetBundle);
+
+        assertNull(cache.getContentDigest(r));
+
+        verify();
+    }
+
+    @Test
+    public void digests_from_asset_bundle_index() throws Exception
+    {
+        ResourceDigestGenerator generator = mockResourceDigestGenerator();
+        AssetBundle bundle = newMock(AssetBundle.class);
+
+        File f = createTestFile();
+        URL url = f.toURL();
+        Resource r = mockResource();
+
+        train_getPath(r, PATH);
+        train_toURL(r, url);
+
+        train_requiresDigest(generator, PATH, true);
+
+        // The resource is not read.
+
+        expect(bundle.getDigest(r.toString())).andReturn(DIGEST);
+
+        replay();
+
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker, bundle);
+
+        assertEquals(cache.getDigest(r), DIGEST);
+        assertEquals(cache.getContentDigest(r), DIGEST);
+
+        verify();
+    }
+
+    @Test
+    public void asset_bundle_index_not_used_after_invalidation() throws Exception
+    {
+        ResourceDigestGenerator generator = mockResourceDigestGenerator();
+        AssetBundle bundle = newMock(AssetBundle.class);
+
+        File f = createTestFile();
+        URL url = f.toURL();
+        Resource r = mockResource();
+
+        train_getPath(r, PATH);
+        train_toURL(r, url);
+
+        train_requiresDigest(generator, PATH, true);
+        train_generateChecksum(generator, url, DIGEST);
+
+        replay();
+
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker, bundle);
+
+        cache.objectWasInvalidated();
+
+        assertEquals(cache.getDigest(r), DIGEST);
+        assertEquals(cache.getContentDigest(r), DIGEST);
+
+        verify();
+    }
+
     @Test
     public void caching_and_invalidation() throws Exception
     {
@@ -149,7 +261,7 @@ public class ResourceDigestManagerTest extends InternalBaseTestCase
 
         replay();
 
-        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker);
+        ResourceDigestManagerImpl cache = new ResourceDigestManagerImpl(generator, resourceChangeTracker, assetBundle);
         cache.listenForInvalidations();
         cache.addInvalidationListener(listener);
 
@@ -0,0 +1,283 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.InternalConstants;
+import org.apache.tapestry5.internal.services.assets.BytestreamCache;
+import org.apache.tapestry5.internal.services.assets.StreamableResourceImpl;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.services.Request;
+import org.apache.tapestry5.services.Response;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class ResourceStreamerImplTest extends InternalBaseTestCase
+{
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    private static final long LAST_MODIFIED = 1234567000L;
+
+    private ByteArrayOutputStream output;
+
+    @BeforeMethod
+    public void create_output()
+    {
+        output = new ByteArrayOutputStream();
+    }
+
+    private StreamableResource streamable() throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/plain", CompressionStatus.COMPRESSABLE, LAST_MODIFIED,
+                new BytestreamCache(CONTENT.getBytes("UTF-8")));
+    }
+
+    private void train_headers(Request request, String ifNoneMatch, String range, String ifRange)
+    {
+        expect(request.getHeader(ResourceStreamerImpl.IF_NONE_MATCH_HEADER)).andReturn(ifNoneMatch).anyTimes();
+        expect(request.getHeader(ResourceStreamerImpl.RANGE_HEADER)).andReturn(range).anyTimes();
+        expect(request.getHeader(ResourceStreamerImpl.IF_RANGE_HEADER)).andReturn(ifRange).anyTimes();
+        expect(request.getDateHeader(ResourceStreamerImpl.IF_MODIFIED_SINCE_HEADER)).andReturn(-1L).anyTimes();
+    }
+
+    private void train_common_headers(Response response, String etag)
+    {
+        response.disableCompression();
+        response.setDateHeader("Last-Modified", LAST_MODIFIED);
+        response.setHeader(ResourceStreamerImpl.ETAG_HEADER, etag);
+        response.setHeader(ResourceStreamerImpl.ACCEPT_RANGES_HEADER, "bytes");
+    }
+
+    private void stream(Request request, Response response, StreamableResource streamable) throws IOException
+    {
+        stream(request, response, streamable, false);
+    }
+
+    private void stream(Request request, Response response, StreamableResource streamable, boolean productionMode)
+            throws IOException
+    {
+        new ResourceStreamerImpl(request, response, null, null, null, productionMode, null).streamResource(streamable);
+    }
+
+    private String output() throws IOException
+    {
+        return output.toString("UTF-8");
+    }
+
+    @Test
+    public void entire_content_with_etag() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, null, null, null);
+        train_common_headers(response, etag);
+        response.setContentLength(CONTENT.length());
+        expect(response.getOutputStream("text/plain")).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+
+        assertEquals(output(), CONTENT);
+    }
+
+    @Test
+    public void matching_if_none_match() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, "\"other\", " + etag, null, null);
+        response.setHeader(ResourceStreamerImpl.ETAG_HEADER, etag);
+        response.sendError(HttpServletResponse.SC_NOT_MODIFIED, "");
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+    }
+
+    @Test
+    public void single_range() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, "\"other\"", "bytes=5-9", etag);
+        train_common_headers(response, etag);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(ResourceStreamerImpl.CONTENT_RANGE_HEADER, "bytes 5-9/20");
+        response.setContentLength(5);
+        expect(response.getOutputStream("text/plain")).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+
+        assertEquals(output(), "56789");
+    }
+
+    @Test
+    public void suffix_range() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, null, "bytes=-3", null);
+        train_common_headers(response, etag);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(ResourceStreamerImpl.CONTENT_RANGE_HEADER, "bytes 17-19/20");
+        response.setContentLength(3);
+        expect(response.getOutputStream("text/plain")).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+
+        assertEquals(output(), "hij");
+    }
+
+    @Test
+    public void multiple_ranges() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+        String boundary = "T5-" + streamable.getChecksum();
+
+        String expected = "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/20\r\n\r\n01" +
+                "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 18-19/20\r\n\r\nij" +
+                "\r\n--" + boundary + "--\r\n";
+
+        train_headers(request, null, "bytes=0-1, 18-", null);
+        train_common_headers(response, etag);
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentLength(expected.length());
+        expect(response.getOutputStream("multipart/byteranges; boundary=" + boundary)).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+
+        assertEquals(output(), expected);
+    }
+
+    @Test
+    public void unsatisfiable_range() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+
+        train_headers(request, null, "bytes=20-", null);
+        response.setHeader(ResourceStreamerImpl.CONTENT_RANGE_HEADER, "bytes */20");
+        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "");
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+    }
+
+    @Test
+    public void range_ignored_when_content_changed() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, null, "bytes=5-9", "\"previous\"");
+        train_common_headers(response, etag);
+        response.setContentLength(CONTENT.length());
+        expect(response.getOutputStream("text/plain")).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable);
+
+        verify();
+
+        assertEquals(output(), CONTENT);
+    }
+
+    @Test
+    public void far_future_expires_in_production_mode() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, null, null, null);
+        train_getAttribute(request, InternalConstants.SUPPRESS_FAR_FUTURE_EXPIRES, null);
+        train_common_headers(response, etag);
+        response.setDateHeader("Expires", LAST_MODIFIED + InternalConstants.TEN_YEARS);
+        response.setContentLength(CONTENT.length());
+        expect(response.getOutputStream("text/plain")).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable, true);
+
+        verify();
+    }
+
+    @Test
+    public void far_future_expires_suppressed() throws IOException
+    {
+        Request request = mockRequest();
+        Response response = mockResponse();
+        StreamableResource streamable = streamable();
+        String etag = "\"" + streamable.getChecksum() + "\"";
+
+        train_headers(request, null, null, null);
+        train_getAttribute(request, InternalConstants.SUPPRESS_FAR_FUTURE_EXPIRES, true);
+        train_common_headers(response, etag);
+        response.setContentLength(CONTENT.length());
+        expect(response.getOutputStream("text/plain")).andReturn(output);
+
+        replay();
+
+        stream(request, response, streamable, true);
+
+        verify();
+    }
+}
@@ -0,0 +1,221 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services;
+
+import org.apache.tapestry5.internal.parser.ComponentTemplate;
+import org.apache.tapestry5.internal.parser.ExtensionPointToken;
+import org.apache.tapestry5.internal.parser.TemplateToken;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.Location;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class TemplateStoreImplTest extends InternalBaseTestCase
+{
+    private final Logger logger = LoggerFactory.getLogger(TemplateStoreImplTest.class);
+
+    private File directory;
+
+    @BeforeClass
+    public void setup()
+    {
+        directory = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString());
+    }
+
+    @AfterClass
+    public void cleanup()
+    {
+        File[] files = directory.listFiles();
+
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+
+    private Resource getResource(String file)
+    {
+        return new ClasspathResource(getClass().getClassLoader(), "org/apache/tapestry5/internal/services/" + file);
+    }
+
+    @DataProvider
+    public Object[][] templates()
+    {
+        return new Object[][]{
+                {"justHTML.tml"},
+                {"component.tml"},
+                {"html4_strict_doctype.tml"},
+                {"cdata.tml"},
+                {"comment.tml"},
+                {"block_element.tml"},
+                {"extension_point.tml"},
+                {"overrides.tml"},
+                {"parameter_element.tml"},
+                {"expansions_in_normal_text.tml"},
+                {"chinese_utf-8.tml"}
+        };
+    }
+
+    @Test(dataProvider = "templates")
+    public void stored_template_matches_parsed_template(String file)
+    {
+        Resource resource = getResource(file);
+
+        ComponentTemplate parsed = getService(TemplateParser.class).parseTemplate(resource);
+
+        TemplateStore store = new TemplateStoreImpl(logger, directory.getPath(), true);
+
+        assertNull(store.load(resource));
+
+        store.store(resource, parsed);
+
+        ComponentTemplate loaded = store.load(resource);
+
+        assertNotNull(loaded);
+
+        assertSame(loaded.getResource(), resource);
+        assertEquals(loaded.isExtension(), parsed.isExtension());
+
+        assertTokensEqual(loaded.getTokens(), parsed.getTokens());
+
+        assertEquals(loaded.getComponentIds().keySet(), parsed.getComponentIds().keySet());
+
+        for (Map.Entry<String, Location> e : parsed.getComponentIds().entrySet())
+        {
+            assertLocationEqual(loaded.getComponentIds().get(e.getKey()), e.getValue());
+        }
+
+        List<TemplateToken> override = parsed.getExtensionPointTokens("title");
+
+        if (override != null)
+        {
+            assertTokensEqual(loaded.getExtensionPointTokens("title"), override);
+        }
+    }
+
+    @Test
+    public void changed_template_is_not_loaded() throws IOException
+    {
+        File root = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString());
+        File templateFile = new File(root, "Changed.tml");
+
+        root.mkdirs();
+
+        try
+        {
+            writeFile(templateFile, "<html><body>Before</body></html>");
+
+            ClassLoader loader = new URLClassLoader(new URL[]{root.toURI().toURL()}, null);
+
+            Resource resource = new ClasspathResource(loader, "Changed.tml");
+
+            TemplateStore store = new TemplateStoreImpl(logger, directory.getPath(), true);
+
+            store.store(resource, getService(TemplateParser.class).parseTemplate(resource));
+
+            assertNotNull(store.load(resource));
+
+            writeFile(templateFile, "<html><body>After</body></html>");
+
+            assertNull(store.load(resource));
+        } finally
+        {
+            templateFile.delete();
+            root.delete();
+        }
+    }
+
+    @Test
+    public void nothing_is_stored_when_disabled()
+    {
+        Resource resource = getResource("justHTML.tml");
+
+        TemplateStore store = new TemplateStoreImpl(logger, "", true);
+
+        store.store(resource, getService(TemplateParser.class).parseTemplate(resource));
+
+        assertNull(store.load(resource));
+    }
+
+    private void writeFile(File file, String content) throws IOException
+    {
+        FileOutputStream stream = new FileOutputStream(file);
+
+        try
+        {
+            stream.write(content.getBytes("UTF-8"));
+        } finally
+        {
+            stream.close();
+        }
+    }
+
+    private void assertTokensEqual(List<TemplateToken> actual, List<TemplateToken> expected)
+    {
+        assertEquals(actual.size(), expected.size());
+
+        for (int i = 0; i < expected.size(); i++)
+        {
+            TemplateToken actualToken = actual.get(i);
+            TemplateToken expectedToken = expected.get(i);
+
+            assertSame(actualToken.getClass(), expectedToken.getClass());
+            assertEquals(describe(actualToken), describe(expectedToken));
+            assertLocationEqual(actualToken.getLocation(), expectedToken.getLocation());
+        }
+    }
+
+    private String describe(TemplateToken token)
+    {
+        switch (token.getTokenType())
+        {
+            case BODY:
+                return "Body";
+
+            case EXTENSION_POINT:
+                return "ExtensionPoint[" + ((ExtensionPointToken) token).getExtensionPointId() + "]";
+
+            default:
+                return token.toString();
+        }
+    }
+
+    private void assertLocationEqual(Location actual, Location expected)
+    {
+        assertEquals(actual.getResource(), expected.getResource());
+        assertEquals(actual.getLine(), expected.getLine());
+        assertEquals(actual.getColumn(), expected.getColumn());
+    }
+}
@@ -0,0 +1,190 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.services.assets.*;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class AssetBundleTest extends InternalBaseTestCase
+{
+    private static final long LAST_MODIFIED = 1234567000L;
+
+    private File directory;
+
+    @BeforeMethod
+    public void create_directory() throws IOException
+    {
+        directory = File.createTempFile("bundle", "");
+
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @AfterMethod
+    public void delete_directory()
+    {
+        for (File file : directory.listFiles())
+        {
+            file.delete();
+        }
+
+        directory.delete();
+    }
+
+    private static StreamableResource streamable(String content, CompressionStatus compression) throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/javascript", compression, LAST_MODIFIED,
+                new BytestreamCache(content.getBytes("UTF-8")));
+    }
+
+    private static String content(StreamableResource resource) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        resource.streamTo(bos);
+
+        return bos.toString("UTF-8");
+    }
+
+    private AssetBundle writeBundle() throws IOException
+    {
+        AssetBundleWriter writer = new AssetBundleWriter(directory);
+
+        writer.add("classpath:foo/bar.js", "foo/bar.js", streamable("minimized", CompressionStatus.COMPRESSABLE),
+                streamable("compressed", CompressionStatus.COMPRESSED));
+
+        StreamableResource small = streamable("small", CompressionStatus.COMPRESSABLE);
+
+        writer.add("context:small.js", "small.js", small, small);
+
+        writer.addDigest("classpath:foo/bar.js", "abc123");
+        writer.addDigest("classpath:foo/Baz.class", "def456");
+
+        assertEquals(writer.writeManifest(), 2);
+
+        return new AssetBundleImpl(LoggerFactory.getLogger(AssetBundleTest.class), directory.getPath(), 8);
+    }
+
+    @Test
+    public void disabled_bundle() throws IOException
+    {
+        AssetBundle bundle = new AssetBundleImpl(null, "", 8);
+
+        assertFalse(bundle.isEnabled());
+        assertNull(bundle.find("classpath:foo/bar.js", true));
+        assertNull(bundle.getDigest("classpath:foo/bar.js"));
+    }
+
+    @Test
+    public void find_bundled_content() throws IOException
+    {
+        AssetBundle bundle = writeBundle();
+
+        assertTrue(bundle.isEnabled());
+
+        StreamableResource uncompressed = bundle.find("classpath:foo/bar.js", false);
+
+        assertEquals(content(uncompressed), "minimized");
+        assertEquals(uncompressed.getCompression(), CompressionStatus.COMPRESSABLE);
+        assertEquals(uncompressed.getContentType(), "text/javascript");
+        assertEquals(uncompressed.getLastModified(), LAST_MODIFIED);
+
+        StreamableResource compressed = bundle.find("classpath:foo/bar.js", true);
+
+        assertEquals(content(compressed), "compressed");
+        assertEquals(compressed.getCompression(), CompressionStatus.COMPRESSED);
+
+        // Content that was not compressed is returned uncompressed.
+
+        assertEquals(content(bundle.find("context:small.js", true)), "small");
+
+        assertNull(bundle.find("classpath:foo/missing.js", false));
+    }
+
+    @Test
+    public void bundled_files_are_named_for_content() throws IOException
+    {
+        writeBundle();
+
+        String[] names = directory.list();
+
+        assertEquals(names.length, 5);
+
+        for (String name : names)
+        {
+            assertTrue(name.equals(AssetBundleImpl.MANIFEST_FILE) || name.equals(AssetBundleImpl.DIGESTS_FILE) ||
+                    name.matches("(bar|small)-[0-9a-f]{32}\\.js(\\.gz)?"),
+                    name);
+        }
+    }
+
+    @Test
+    public void digest_index() throws IOException
+    {
+        AssetBundle bundle = writeBundle();
+
+        assertEquals(bundle.getDigest("classpath:foo/bar.js"), "abc123");
+
+        // Protected resources are indexed, but not bundled.
+
+        assertEquals(bundle.getDigest("classpath:foo/Baz.class"), "def456");
+        assertNull(bundle.find("classpath:foo/Baz.class", false));
+
+        assertNull(bundle.getDigest("context:small.js"));
+    }
+
+    @Test
+    public void interceptor_serves_bundled_resources() throws IOException
+    {
+        AssetBundle bundle = writeBundle();
+
+        StreamableResourceSource delegate = newMock(StreamableResourceSource.class);
+        Resource bundled = new ClasspathResource("foo/bar.js");
+        Resource other = new ClasspathResource("foo/other.js");
+        StreamableResource otherStreamable = newMock(StreamableResource.class);
+        ResourceDependencies dependencies = newMock(ResourceDependencies.class);
+
+        expect(delegate.getStreamableResource(other, StreamableResourceProcessing.COMPRESSION_ENABLED,
+                dependencies)).andReturn(otherStreamable);
+
+        // Aggregated into a stack: the bundled, minimized, content can't be used.
+
+        expect(delegate.getStreamableResource(bundled, StreamableResourceProcessing.FOR_AGGREGATION,
+                dependencies)).andReturn(otherStreamable);
+
+        replay();
+
+        StreamableResourceSource source = new SRSBundleInterceptor(delegate, bundle);
+
+        assertEquals(content(source.getStreamableResource(bundled, StreamableResourceProcessing.COMPRESSION_ENABLED,
+                dependencies)), "compressed");
+        assertSame(source.getStreamableResource(other, StreamableResourceProcessing.COMPRESSION_ENABLED,
+                dependencies), otherStreamable);
+        assertSame(source.getStreamableResource(bundled, StreamableResourceProcessing.FOR_AGGREGATION,
+                dependencies), otherStreamable);
+
+        verify();
+    }
+}
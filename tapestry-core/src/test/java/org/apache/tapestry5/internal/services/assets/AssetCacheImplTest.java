@@ -0,0 +1,139 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.testng.annotations.Test;
+
+public class AssetCacheImplTest extends InternalBaseTestCase
+{
+    private static final Object REGION = "region";
+
+    private static StreamableResource streamable(int size)
+    {
+        return new StreamableResourceImpl("test", "text/plain", CompressionStatus.COMPRESSABLE, 1234567000L,
+                new BytestreamCache(new byte[size]));
+    }
+
+    @Test
+    public void get_and_put()
+    {
+        AssetCache cache = new AssetCacheImpl(100);
+        StreamableResource content = streamable(10);
+
+        assertNull(cache.get(REGION, "a"));
+
+        cache.put(REGION, "a", content);
+
+        assertSame(cache.get(REGION, "a"), content);
+        assertNull(cache.get("other", "a"));
+
+        assertEquals(cache.getSize(), 10);
+        assertEquals(cache.getEntryCount(), 1);
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 2);
+    }
+
+    @Test
+    public void least_recently_used_content_is_evicted()
+    {
+        AssetCache cache = new AssetCacheImpl(100);
+
+        cache.put(REGION, "a", streamable(40));
+        cache.put(REGION, "b", streamable(40));
+
+        // Makes "b" the least recently used.
+
+        cache.get(REGION, "a");
+
+        cache.put(REGION, "c", streamable(40));
+
+        assertNotNull(cache.get(REGION, "a"));
+        assertNull(cache.get(REGION, "b"));
+        assertNotNull(cache.get(REGION, "c"));
+
+        assertEquals(cache.getSize(), 80);
+        assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void content_larger_than_cache_is_not_cached()
+    {
+        AssetCache cache = new AssetCacheImpl(100);
+
+        cache.put(REGION, "a", streamable(40));
+        cache.put(REGION, "b", streamable(101));
+
+        assertNull(cache.get(REGION, "b"));
+        assertNotNull(cache.get(REGION, "a"));
+        assertEquals(cache.getSize(), 40);
+    }
+
+    @Test
+    public void put_replaces_existing_content()
+    {
+        AssetCache cache = new AssetCacheImpl(100);
+        StreamableResource content = streamable(30);
+
+        cache.put(REGION, "a", streamable(60));
+        cache.put(REGION, "a", content);
+
+        assertSame(cache.get(REGION, "a"), content);
+        assertEquals(cache.getSize(), 30);
+        assertEquals(cache.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void replace_expected_content()
+    {
+        AssetCache cache = new AssetCacheImpl(100);
+        StreamableResource original = streamable(50);
+        StreamableResource replacement = streamable(20);
+
+        cache.put(REGION, "a", original);
+
+        assertFalse(cache.replace(REGION, "a", replacement, streamable(10)));
+        assertTrue(cache.replace(REGION, "a", original, replacement));
+
+        assertSame(cache.get(REGION, "a"), replacement);
+        assertEquals(cache.getSize(), 20);
+
+        // Nothing to replace, once cleared.
+
+        cache.clear(REGION);
+
+        assertFalse(cache.replace(REGION, "a", replacement, original));
+        assertNull(cache.get(REGION, "a"));
+    }
+
+    @Test
+    public void clear_only_affects_region()
+    {
+        AssetCache cache = new AssetCacheImpl(100);
+
+        cache.put(REGION, "a", streamable(10));
+        cache.put("other", "a", streamable(20));
+
+        cache.clear(REGION);
+
+        assertNull(cache.get(REGION, "a"));
+        assertNotNull(cache.get("other", "a"));
+        assertEquals(cache.getSize(), 20);
+        assertEquals(cache.getEntryCount(), 1);
+    }
+}
@@ -0,0 +1,183 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.services.assets.CompressionStatus;
+import org.apache.tapestry5.services.assets.StreamableResource;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class AssetSpoolImplTest extends InternalBaseTestCase
+{
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog.";
+
+    private File directory;
+
+    private AssetSpool spool;
+
+    @BeforeMethod
+    public void create_spool() throws IOException
+    {
+        directory = File.createTempFile("spool", "");
+
+        directory.delete();
+
+        spool = new AssetSpoolImpl(LoggerFactory.getLogger(AssetSpoolImplTest.class), directory.getPath(), 20, false);
+    }
+
+    @AfterMethod
+    public void delete_directory()
+    {
+        if (directory.isDirectory())
+        {
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+
+    private static StreamableResource streamable(String content) throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/plain", CompressionStatus.COMPRESSABLE, 1234567000L,
+                new BytestreamCache(content.getBytes("UTF-8")));
+    }
+
+    private static String read(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        TapestryInternalUtils.copy(stream, bos);
+
+        stream.close();
+
+        return bos.toString("UTF-8");
+    }
+
+    @Test
+    public void small_resources_are_not_spooled() throws IOException
+    {
+        StreamableResource resource = streamable("small");
+
+        assertSame(spool.spool(resource), resource);
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void no_spool_directory() throws IOException
+    {
+        StreamableResource resource = streamable(CONTENT);
+
+        assertSame(new AssetSpoolImpl(null, "", 20, false).spool(resource), resource);
+    }
+
+    @Test
+    public void small_resources_copied_off_heap() throws IOException
+    {
+        StreamableResource resource = streamable("small");
+
+        StreamableResource copy = new AssetSpoolImpl(null, "", 20, true).spool(resource);
+
+        assertNotSame(copy, resource);
+        assertEquals(copy.getSize(), 5);
+        assertEquals(copy.getLastModified(), 1234567000L);
+        assertEquals(read(copy.openStream()), "small");
+    }
+
+    @Test
+    public void large_resources_are_spooled() throws IOException
+    {
+        StreamableResource spooled = spool.spool(streamable(CONTENT));
+
+        assertEquals(spooled.getSize(), CONTENT.length());
+        assertEquals(spooled.getContentType(), "text/plain");
+        assertEquals(spooled.getCompression(), CompressionStatus.COMPRESSABLE);
+        assertEquals(spooled.getLastModified(), 1234567000L);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        spooled.streamTo(bos);
+
+        assertEquals(bos.toString("UTF-8"), CONTENT);
+
+        // The content can be read any number of times.
+
+        assertEquals(read(spooled.openStream()), CONTENT);
+        assertEquals(read(spooled.openStream()), CONTENT);
+
+        // The same content is spooled to the same file.
+
+        spool.spool(streamable(CONTENT));
+
+        assertEquals(directory.list().length, 1);
+    }
+
+    @Test
+    public void same_content_shares_mapped_file() throws IOException
+    {
+        StreamableResource first = spool.spool(streamable(CONTENT));
+        StreamableResource second = spool.spool(streamable(CONTENT));
+
+        assertSame(((StreamableResourceImpl) second).getBytestreamCache(), ((StreamableResourceImpl) first).getBytestreamCache());
+
+        // Only the spooled file remains; the temporary file the content was written to is discarded.
+
+        assertEquals(directory.list().length, 1);
+    }
+
+    @Test
+    public void spooled_files_deleted_on_invalidation() throws IOException
+    {
+        StreamableResource spooled = spool.spool(streamable(CONTENT));
+
+        assertEquals(directory.list().length, 1);
+
+        ((AssetSpoolImpl) spool).objectWasInvalidated();
+
+        assertEquals(directory.list().length, 0);
+
+        // Spooled again, as needed.
+
+        StreamableResource respooled = spool.spool(streamable(CONTENT));
+
+        assertEquals(directory.list().length, 1);
+        assertEquals(read(respooled.openStream()), CONTENT);
+    }
+
+    @Test
+    public void files_from_earlier_run_are_deleted() throws IOException
+    {
+        spool.spool(streamable(CONTENT));
+
+        File unrelated = new File(directory, "unrelated.txt");
+
+        assertTrue(unrelated.createNewFile());
+
+        new AssetSpoolImpl(LoggerFactory.getLogger(AssetSpoolImplTest.class), directory.getPath(), 20, false);
+
+        assertEquals(directory.list(), new String[]{"unrelated.txt"});
+    }
+}
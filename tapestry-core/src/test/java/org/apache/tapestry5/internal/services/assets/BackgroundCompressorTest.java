@@ -0,0 +1,200 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.func.Worker;
+import org.apache.tapestry5.internal.TapestryInternalUtils;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.services.NonParallelExecutor;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.assets.*;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
+
+public class BackgroundCompressorTest extends InternalBaseTestCase
+{
+    private static StreamableResource streamable(String content, CompressionStatus compression) throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/plain", compression, 1234567000L,
+                new BytestreamCache(content.getBytes("UTF-8")));
+    }
+
+    /**
+     * Text that compresses better at the highest level than at the default level.
+     */
+    private static String content()
+    {
+        String[] words = {"the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "tapestry", "asset"};
+
+        Random random = new Random(227);
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++)
+        {
+            builder.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append(' ');
+        }
+
+        return builder.toString();
+    }
+
+    private static String gunzip(StreamableResource compressed) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        TapestryInternalUtils.copy(new GZIPInputStream(compressed.openStream()), bos);
+
+        return bos.toString("UTF-8");
+    }
+
+    private static BackgroundCompressor newCompressor(boolean enabled)
+    {
+        return new BackgroundCompressorImpl(new NonParallelExecutor(),
+                LoggerFactory.getLogger(BackgroundCompressorTest.class), enabled);
+    }
+
+    @Test
+    public void smaller_content_is_provided() throws IOException
+    {
+        String content = content();
+        final List<StreamableResource> results = CollectionFactory.newList();
+
+        StreamableResource uncompressed = streamable(content, CompressionStatus.COMPRESSABLE);
+        StreamableResource compressed = streamable(content, CompressionStatus.COMPRESSED);
+
+        newCompressor(true).compress(uncompressed, compressed, new Worker<StreamableResource>()
+        {
+            public void work(StreamableResource value)
+            {
+                results.add(value);
+            }
+        });
+
+        assertEquals(results.size(), 1);
+
+        StreamableResource best = results.get(0);
+
+        assertEquals(best.getCompression(), CompressionStatus.COMPRESSED);
+        assertEquals(gunzip(best), content);
+    }
+
+    @Test
+    public void content_that_is_not_smaller_is_discarded() throws IOException
+    {
+        StreamableResource uncompressed = streamable(content(), CompressionStatus.COMPRESSABLE);
+        StreamableResource compressed = streamable("tiny", CompressionStatus.COMPRESSED);
+
+        Worker<StreamableResource> worker = newMock(Worker.class);
+
+        replay();
+
+        newCompressor(true).compress(uncompressed, compressed, worker);
+
+        verify();
+    }
+
+    @Test
+    public void skipped_when_thread_pool_is_busy() throws IOException
+    {
+        StreamableResource content = streamable(content(), CompressionStatus.COMPRESSABLE);
+
+        Worker<StreamableResource> worker = newMock(Worker.class);
+
+        replay();
+
+        BackgroundCompressor compressor = new BackgroundCompressorImpl(new NonParallelExecutor()
+        {
+            @Override
+            public <T> Future<T> invoke(Invokable<T> invocable)
+            {
+                throw new RejectedExecutionException("Queue is full.");
+            }
+        }, LoggerFactory.getLogger(BackgroundCompressorTest.class), true);
+
+        compressor.compress(content, content, worker);
+
+        verify();
+    }
+
+    @Test
+    public void disabled() throws IOException
+    {
+        StreamableResource content = streamable(content(), CompressionStatus.COMPRESSABLE);
+
+        Worker<StreamableResource> worker = newMock(Worker.class);
+
+        replay();
+
+        newCompressor(false).compress(content, content, worker);
+
+        verify();
+    }
+
+    @Test
+    public void cached_content_is_replaced() throws IOException
+    {
+        String content = content();
+        final StreamableResource uncompressed = streamable(content, CompressionStatus.COMPRESSABLE);
+
+        StreamableResourceSource source = new StreamableResourceSource()
+        {
+            public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing,
+                                                            ResourceDependencies dependencies)
+            {
+                return uncompressed;
+            }
+        };
+
+        ResourceDependencies dependencies = newMock(ResourceDependencies.class);
+        Resource resource = new ClasspathResource("foo/bar.txt");
+
+        dependencies.addDependency(resource);
+
+        replay();
+
+        SRSCompressedCachingInterceptor interceptor = new SRSCompressedCachingInterceptor(
+                new SRSCompressingInterceptor(0, source),
+                new AssetSpoolImpl(null, "", 0, false),
+                new BackgroundMinimizerImpl(null, new NonParallelExecutor(), null, false),
+                new AssetCacheImpl(1000000),
+                newCompressor(true));
+
+        StreamableResource first = interceptor.getStreamableResource(resource,
+                StreamableResourceProcessing.COMPRESSION_ENABLED, dependencies);
+
+        StreamableResource second = interceptor.getStreamableResource(resource,
+                StreamableResourceProcessing.COMPRESSION_ENABLED, dependencies);
+
+        // The executor runs the compression immediately; the cached content is replaced with a smaller version
+        // before the first request completes.
+
+        assertNotSame(second, first);
+        assertTrue(second.getSize() < first.getSize());
+        assertEquals(gunzip(second), content);
+
+        verify();
+    }
+}
@@ -0,0 +1,285 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.services.NonParallelExecutor;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.services.assets.*;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BackgroundMinimizerTest extends InternalBaseTestCase
+{
+    /**
+     * Queues invocations until {@link #runAll()} is invoked.
+     */
+    static class QueueingExecutor extends NonParallelExecutor
+    {
+        private final List<Invokable<?>> queue = CollectionFactory.newList();
+
+        @Override
+        public <T> Future<T> invoke(Invokable<T> invocable)
+        {
+            queue.add(invocable);
+
+            return null;
+        }
+
+        void runAll()
+        {
+            for (Invokable<?> invokable : queue)
+            {
+                invokable.invoke();
+            }
+
+            queue.clear();
+        }
+    }
+
+    /**
+     * Rejects all invocations, as if the thread pool's queue were full.
+     */
+    static class RejectingExecutor extends QueueingExecutor
+    {
+        @Override
+        public <T> Future<T> invoke(Invokable<T> invocable)
+        {
+            throw new RejectedExecutionException("Queue is full.");
+        }
+    }
+
+    private static StreamableResource streamable(String content) throws IOException
+    {
+        return new StreamableResourceImpl("test", "text/plain", CompressionStatus.COMPRESSABLE, 1234567000L,
+                new BytestreamCache(content.getBytes("UTF-8")));
+    }
+
+    private static ResourceMinimizer minimizer(final StreamableResource minimized)
+    {
+        return new ResourceMinimizer()
+        {
+            public StreamableResource minimize(StreamableResource resource) throws IOException
+            {
+                return minimized;
+            }
+        };
+    }
+
+    private static BackgroundMinimizerImpl newMinimizer(ResourceMinimizer minimizer, QueueingExecutor executor,
+                                                        boolean enabled)
+    {
+        return new BackgroundMinimizerImpl(minimizer, executor, LoggerFactory.getLogger(BackgroundMinimizerTest.class),
+                enabled);
+    }
+
+    @Test
+    public void disabled() throws IOException
+    {
+        StreamableResource content = streamable("content");
+        StreamableResource minimized = streamable("minimized");
+        QueueingExecutor executor = new QueueingExecutor();
+
+        BackgroundMinimizer minimizer = newMinimizer(minimizer(minimized), executor, false);
+
+        assertSame(minimizer.minimize("key", content), minimized);
+        assertTrue(minimizer.isFinal("key", 0));
+        assertEquals(minimizer.getPendingCount(), 0);
+        assertEquals(minimizer.getCompletedCount(), 0);
+    }
+
+    @Test
+    public void content_is_unminimized_until_minimization_completes() throws IOException
+    {
+        StreamableResource content = streamable("content");
+        StreamableResource minimized = streamable("minimized");
+        QueueingExecutor executor = new QueueingExecutor();
+
+        BackgroundMinimizer minimizer = newMinimizer(minimizer(minimized), executor, true);
+
+        assertSame(minimizer.minimize("key", content), content);
+        assertSame(minimizer.minimize("key", content), content);
+
+        assertEquals(minimizer.getPendingCount(), 1);
+        assertFalse(minimizer.isFinal("key", 0));
+        assertTrue(minimizer.isFinal("other", 0));
+
+        executor.runAll();
+
+        assertEquals(minimizer.getPendingCount(), 0);
+        assertEquals(minimizer.getCompletedCount(), 1);
+
+        // Content obtained before the minimization completed is not final, even though nothing is pending.
+
+        assertFalse(minimizer.isFinal("key", 0));
+
+        assertSame(minimizer.minimize("key", content), minimized);
+        assertTrue(minimizer.isFinal("key", 1));
+    }
+
+    @Test
+    public void failed_minimization_serves_unminimized_content() throws IOException
+    {
+        StreamableResource content = streamable("content");
+        QueueingExecutor executor = new QueueingExecutor();
+
+        ResourceMinimizer failing = new ResourceMinimizer()
+        {
+            public StreamableResource minimize(StreamableResource resource) throws IOException
+            {
+                throw new IOException("Syntax error.");
+            }
+        };
+
+        BackgroundMinimizer minimizer = newMinimizer(failing, executor, true);
+
+        minimizer.minimize("key", content);
+
+        executor.runAll();
+
+        assertEquals(minimizer.getCompletedCount(), 1);
+        assertSame(minimizer.minimize("key", content), content);
+        assertTrue(minimizer.isFinal("key", 1));
+    }
+
+    @Test
+    public void invalidation_discards_minimized_content() throws IOException
+    {
+        StreamableResource content = streamable("content");
+        StreamableResource minimized = streamable("minimized");
+        QueueingExecutor executor = new QueueingExecutor();
+
+        BackgroundMinimizerImpl minimizer = newMinimizer(minimizer(minimized), executor, true);
+
+        minimizer.minimize("key", content);
+
+        // Invalidated while the minimization is pending.
+
+        minimizer.objectWasInvalidated();
+
+        executor.runAll();
+
+        assertSame(minimizer.minimize("key", content), content);
+
+        executor.runAll();
+
+        assertSame(minimizer.minimize("key", content), minimized);
+
+        minimizer.objectWasInvalidated();
+
+        assertSame(minimizer.minimize("key", content), content);
+    }
+
+    @Test
+    public void content_is_cached_once_minimized() throws IOException
+    {
+        final StreamableResource content = streamable("content");
+        StreamableResource minimized = streamable("minimized");
+        QueueingExecutor executor = new QueueingExecutor();
+        final List<Resource> requests = CollectionFactory.newList();
+
+        StreamableResourceSource source = new StreamableResourceSource()
+        {
+            public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing,
+                                                            ResourceDependencies dependencies)
+            {
+                requests.add(baseResource);
+
+                return content;
+            }
+        };
+
+        ResourceDependencies dependencies = newMock(ResourceDependencies.class);
+        Resource resource = new ClasspathResource("foo/bar.txt");
+
+        dependencies.addDependency(resource);
+
+        replay();
+
+        BackgroundMinimizer minimizer = newMinimizer(minimizer(minimized), executor, true);
+
+        SRSCachingInterceptor interceptor = new SRSCachingInterceptor(new SRSMinimizingInterceptor(source, minimizer),
+                new AssetSpoolImpl(null, "", 0, false), minimizer, new AssetCacheImpl(1000));
+
+        StreamableResourceProcessing processing = StreamableResourceProcessing.COMPRESSION_DISABLED;
+
+        assertSame(interceptor.getStreamableResource(resource, processing, dependencies), content);
+        assertSame(interceptor.getStreamableResource(resource, processing, dependencies), content);
+
+        // Not cached while minimization is pending.
+
+        assertEquals(requests.size(), 2);
+
+        executor.runAll();
+
+        assertSame(interceptor.getStreamableResource(resource, processing, dependencies), minimized);
+        assertSame(interceptor.getStreamableResource(resource, processing, dependencies), minimized);
+
+        assertEquals(requests.size(), 3);
+
+        verify();
+    }
+
+    @Test
+    public void minimized_on_request_thread_when_thread_pool_is_busy() throws IOException
+    {
+        StreamableResource content = streamable("content");
+        StreamableResource minimized = streamable("minimized");
+
+        BackgroundMinimizer minimizer = newMinimizer(minimizer(minimized), new RejectingExecutor(), true);
+
+        assertSame(minimizer.minimize("key", content), minimized);
+
+        assertEquals(minimizer.getPendingCount(), 0);
+        assertEquals(minimizer.getCompletedCount(), 1);
+
+        // Final (and so cacheable) on the next request.
+
+        assertSame(minimizer.minimize("key", content), minimized);
+        assertTrue(minimizer.isFinal("key", 1));
+    }
+
+    @Test
+    public void discarded_content_is_no_longer_retained() throws IOException
+    {
+        StreamableResource content = streamable("content");
+        StreamableResource minimized = streamable("minimized");
+        QueueingExecutor executor = new QueueingExecutor();
+
+        BackgroundMinimizer minimizer = newMinimizer(minimizer(minimized), executor, true);
+
+        minimizer.minimize("key", content);
+
+        executor.runAll();
+
+        assertSame(minimizer.minimize("key", content), minimized);
+
+        minimizer.discard("key");
+
+        // Minimized again, if requested again (for example, after eviction from the cache).
+
+        assertSame(minimizer.minimize("key", content), content);
+        assertEquals(minimizer.getPendingCount(), 1);
+    }
+}
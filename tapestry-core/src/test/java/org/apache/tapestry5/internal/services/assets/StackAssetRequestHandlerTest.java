@@ -0,0 +1,422 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.internal.services.assets;
+
+import org.apache.tapestry5.Asset;
+import org.apache.tapestry5.internal.test.InternalBaseTestCase;
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.Resource;
+import org.apache.tapestry5.ioc.internal.services.NonParallelExecutor;
+import org.apache.tapestry5.ioc.internal.util.ClasspathResource;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.apache.tapestry5.services.InvalidationListener;
+import org.apache.tapestry5.services.LocalizationSetter;
+import org.apache.tapestry5.services.assets.*;
+import org.apache.tapestry5.services.javascript.JavaScriptStack;
+import org.apache.tapestry5.services.javascript.JavaScriptStackSource;
+import org.easymock.EasyMock;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StackAssetRequestHandlerTest extends InternalBaseTestCase
+{
+    /**
+     * Stands in for the (uncached) StreamableResourceSource and the ResourceChangeTracker: the content and last
+     * modified time of each library can be changed, and the libraries read are recorded.
+     */
+    static class Libraries implements StreamableResourceSource, ResourceChangeTracker
+    {
+        final Map<Resource, String> contents = CollectionFactory.newMap();
+
+        final Map<Resource, Long> lastModified = CollectionFactory.newMap();
+
+        final List<Resource> reads = CollectionFactory.newList();
+
+        void update(Resource resource, String content, long modified)
+        {
+            contents.put(resource, content);
+            lastModified.put(resource, modified);
+        }
+
+        public synchronized StreamableResource getStreamableResource(Resource baseResource,
+                                                                     StreamableResourceProcessing processing,
+                                                                     ResourceDependencies dependencies)
+                throws IOException
+        {
+            assertSame(processing, StreamableResourceProcessing.FOR_AGGREGATION);
+
+            reads.add(baseResource);
+
+            return new StreamableResourceImpl(baseResource.toString(), "text/javascript",
+                    CompressionStatus.COMPRESSABLE, lastModified.get(baseResource),
+                    new BytestreamCache(contents.get(baseResource).getBytes("UTF-8")));
+        }
+
+        public long trackResource(Resource resource)
+        {
+            return lastModified.get(resource);
+        }
+
+        public void addDependency(Resource dependency)
+        {
+        }
+
+        public void addInvalidationListener(InvalidationListener listener)
+        {
+        }
+    }
+
+    /**
+     * Blocks the first read of a library until released.
+     */
+    static class BlockingLibraries extends Libraries
+    {
+        final CountDownLatch reading = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public StreamableResource getStreamableResource(Resource baseResource, StreamableResourceProcessing processing,
+                                                        ResourceDependencies dependencies) throws IOException
+        {
+            if (reading.getCount() > 0)
+            {
+                reading.countDown();
+
+                try
+                {
+                    release.await();
+                } catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            return super.getStreamableResource(baseResource, processing, dependencies);
+        }
+    }
+
+    /**
+     * Requests the stack in a new thread.
+     */
+    private static Thread request(final StackAssetRequestHandler handler,
+                                  final AtomicReference<StreamableResource> result)
+    {
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    result.set(handler.getResource("en/stack.js", false));
+                } catch (IOException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+
+        thread.start();
+
+        return thread;
+    }
+
+    private final Resource a = new ClasspathResource("stack/a.js");
+
+    private final Resource b = new ClasspathResource("stack/b.js");
+
+    private final Resource c = new ClasspathResource("stack/c.js");
+
+    private Asset library(Resource resource)
+    {
+        Asset asset = mockAsset();
+
+        expect(asset.getResource()).andReturn(resource).anyTimes();
+        expect(asset.toClientURL()).andReturn("/assets/" + resource.getPath()).anyTimes();
+
+        return asset;
+    }
+
+    private StackAssetRequestHandler newHandler(Libraries libraries, ParallelExecutor executor) throws IOException
+    {
+        return newHandler(libraries, executor, new BackgroundMinimizerImpl(null, executor,
+                LoggerFactory.getLogger(StackAssetRequestHandlerTest.class), false), false);
+    }
+
+    private StackAssetRequestHandler newHandler(Libraries libraries, ParallelExecutor executor,
+                                                BackgroundMinimizer minimizer, boolean minificationEnabled)
+            throws IOException
+    {
+        JavaScriptStack stack = newMock(JavaScriptStack.class);
+        JavaScriptStackSource stackSource = newMock(JavaScriptStackSource.class);
+        LocalizationSetter localizationSetter = newMock(LocalizationSetter.class);
+        AssetBundle bundle = newMock(AssetBundle.class);
+
+        List<Asset> assets = CollectionFactory.newList(library(a), library(b), library(c));
+
+        expect(stack.getJavaScriptLibraries()).andReturn(assets).anyTimes();
+        expect(stackSource.getStack("stack")).andReturn(stack).anyTimes();
+
+        localizationSetter.setNonPeristentLocaleFromLocaleName("en");
+        EasyMock.expectLastCall().anyTimes();
+
+        expect(bundle.find(EasyMock.isA(String.class), EasyMock.eq(false))).andReturn(null).anyTimes();
+
+        replay();
+
+        return new StackAssetRequestHandler(libraries, stackSource, localizationSetter, null, null, minimizer, null,
+                minificationEnabled, libraries, bundle, new AssetSpoolImpl(null, "", 0, false), null, new AssetCacheImpl(100000),
+                executor);
+    }
+
+    private static String read(StreamableResource resource) throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        resource.streamTo(stream);
+
+        return stream.toString("UTF-8");
+    }
+
+    private static void assertInOrder(String content, String... fragments)
+    {
+        int position = -1;
+
+        for (String fragment : fragments)
+        {
+            int next = content.indexOf(fragment);
+
+            assertTrue(next > position, String.format("'%s' out of order in: %s", fragment, content));
+
+            position = next;
+        }
+    }
+
+    @Test
+    public void only_changed_library_is_processed_again() throws IOException
+    {
+        Libraries libraries = new Libraries();
+
+        libraries.update(a, "var a = 1;", 1000L);
+        libraries.update(b, "var b = 1;", 1000L);
+        libraries.update(c, "var c = 1;", 1000L);
+
+        StackAssetRequestHandler handler = newHandler(libraries, new NonParallelExecutor());
+
+        StreamableResource first = handler.getResource("en/stack.js", false);
+
+        assertInOrder(read(first), "var a = 1;", "var b = 1;", "var c = 1;");
+        assertListsEquals(libraries.reads, a, b, c);
+
+        // The assembled stack is cached.
+
+        assertSame(handler.getResource("en/stack.js", false), first);
+        assertEquals(libraries.reads.size(), 3);
+
+        // One library changes; the resource change tracker invalidates.
+
+        libraries.update(b, "var b = 2;", 2000L);
+        handler.objectWasInvalidated();
+
+        StreamableResource second = handler.getResource("en/stack.js", false);
+
+        assertInOrder(read(second), "var a = 1;", "var b = 2;", "var c = 1;");
+        assertEquals(second.getLastModified(), 2000L);
+
+        assertListsEquals(libraries.reads, a, b, c, b);
+
+        verify();
+    }
+
+    @Test
+    public void libraries_processed_inline_when_thread_pool_is_busy() throws IOException
+    {
+        Libraries libraries = new Libraries();
+
+        libraries.update(a, "var a = 1;", 1000L);
+        libraries.update(b, "var b = 1;", 1000L);
+        libraries.update(c, "var c = 1;", 1000L);
+
+        ParallelExecutor rejecting = new NonParallelExecutor()
+        {
+            @Override
+            public <T> Future<T> invoke(Invokable<T> invocable)
+            {
+                throw new RejectedExecutionException("Queue is full.");
+            }
+        };
+
+        StackAssetRequestHandler handler = newHandler(libraries, rejecting);
+
+        assertInOrder(read(handler.getResource("en/stack.js", false)), "var a = 1;", "var b = 1;", "var c = 1;");
+
+        verify();
+    }
+
+    @Test
+    public void stack_not_cached_until_libraries_are_minimized() throws IOException
+    {
+        Libraries libraries = new Libraries();
+
+        libraries.update(a, "var a = 1;", 1000L);
+        libraries.update(b, "var b = 1;", 1000L);
+        libraries.update(c, "var c = 1;", 1000L);
+
+        ResourceMinimizer resourceMinimizer = new ResourceMinimizer()
+        {
+            public StreamableResource minimize(StreamableResource resource) throws IOException
+            {
+                return new StreamableResourceImpl(resource.getDescription(), resource.getContentType(),
+                        CompressionStatus.COMPRESSABLE, resource.getLastModified(),
+                        new BytestreamCache(("/* minimized */ " + read(resource)).getBytes("UTF-8")));
+            }
+        };
+
+        BackgroundMinimizerTest.QueueingExecutor minimizerExecutor = new BackgroundMinimizerTest.QueueingExecutor();
+
+        BackgroundMinimizer minimizer = new BackgroundMinimizerImpl(resourceMinimizer, minimizerExecutor,
+                LoggerFactory.getLogger(StackAssetRequestHandlerTest.class), true);
+
+        StackAssetRequestHandler handler = newHandler(libraries, new NonParallelExecutor(), minimizer, true);
+
+        // Served unminimized, and not cached, while minimization is pending.
+
+        assertFalse(read(handler.getResource("en/stack.js", false)).contains("minimized"));
+        assertFalse(read(handler.getResource("en/stack.js", false)).contains("minimized"));
+
+        assertEquals(libraries.reads.size(), 6);
+
+        minimizerExecutor.runAll();
+
+        StreamableResource minimized = handler.getResource("en/stack.js", false);
+
+        assertInOrder(read(minimized), "/* minimized */ var a = 1;", "/* minimized */ var b = 1;",
+                "/* minimized */ var c = 1;");
+
+        assertSame(handler.getResource("en/stack.js", false), minimized);
+        assertEquals(libraries.reads.size(), 9);
+
+        verify();
+    }
+
+    @Test
+    public void libraries_processed_on_request_thread_when_thread_pool_has_queued_work() throws IOException
+    {
+        Libraries libraries = new Libraries();
+
+        libraries.update(a, "var a = 1;", 1000L);
+        libraries.update(b, "var b = 1;", 1000L);
+        libraries.update(c, "var c = 1;", 1000L);
+
+        // The pooled work is never run, as if the pool's threads were all busy with other work.
+
+        BackgroundMinimizerTest.QueueingExecutor queueing = new BackgroundMinimizerTest.QueueingExecutor();
+
+        StackAssetRequestHandler handler = newHandler(libraries, queueing);
+
+        assertInOrder(read(handler.getResource("en/stack.js", false)), "var a = 1;", "var b = 1;", "var c = 1;");
+
+        // The queued work finds the libraries already processed.
+
+        queueing.runAll();
+
+        assertListsEquals(libraries.reads, a, b, c);
+
+        verify();
+    }
+
+    @Test
+    public void concurrent_requests_for_a_stack_share_one_assembly() throws Exception
+    {
+        BlockingLibraries libraries = new BlockingLibraries();
+
+        libraries.update(a, "var a = 1;", 1000L);
+        libraries.update(b, "var b = 1;", 1000L);
+        libraries.update(c, "var c = 1;", 1000L);
+
+        StackAssetRequestHandler handler = newHandler(libraries, new NonParallelExecutor());
+
+        AtomicReference<StreamableResource> first = new AtomicReference<StreamableResource>();
+        AtomicReference<StreamableResource> second = new AtomicReference<StreamableResource>();
+
+        Thread assembling = request(handler, first);
+
+        libraries.reading.await();
+
+        Thread waiting = request(handler, second);
+
+        while (waiting.getState() != Thread.State.WAITING)
+        {
+            Thread.sleep(10);
+        }
+
+        libraries.release.countDown();
+
+        assembling.join();
+        waiting.join();
+
+        assertInOrder(read(first.get()), "var a = 1;", "var b = 1;", "var c = 1;");
+        assertSame(second.get(), first.get());
+
+        assertListsEquals(libraries.reads, a, b, c);
+
+        verify();
+    }
+
+    @Test
+    public void invalidation_does_not_wait_for_stack_assembly() throws Exception
+    {
+        BlockingLibraries libraries = new BlockingLibraries();
+
+        libraries.update(a, "var a = 1;", 1000L);
+        libraries.update(b, "var b = 1;", 1000L);
+        libraries.update(c, "var c = 1;", 1000L);
+
+        StackAssetRequestHandler handler = newHandler(libraries, new NonParallelExecutor());
+
+        AtomicReference<StreamableResource> first = new AtomicReference<StreamableResource>();
+
+        Thread assembling = request(handler, first);
+
+        libraries.reading.await();
+
+        libraries.update(b, "var b = 2;", 2000L);
+        handler.objectWasInvalidated();
+
+        libraries.release.countDown();
+
+        assembling.join();
+
+        // Assembled before the invalidation, so not cached.
+
+        StreamableResource second = handler.getResource("en/stack.js", false);
+
+        assertNotSame(second, first.get());
+        assertInOrder(read(second), "var a = 1;", "var b = 2;", "var c = 1;");
+
+        verify();
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.services.PerThreadValue;
+import org.apache.tapestry5.ioc.services.ThreadCleanupListener;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates a request's use of per-thread state: a number of per-thread values are read and set, a cleanup listener
+ * is registered, and then the thread is cleaned up. Run with the GC profiler ({@code -prof gc}) to see allocation per
+ * simulated request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PerthreadManagerBenchmark
+{
+    private static final int VALUES = 20;
+
+    private final PerthreadManagerImpl manager = new PerthreadManagerImpl(
+            LoggerFactory.getLogger(PerthreadManagerBenchmark.class));
+
+    private final PerThreadValue<Object>[] values = new PerThreadValue[VALUES];
+
+    private final Object value = new Object();
+
+    private final ThreadCleanupListener listener = new ThreadCleanupListener()
+    {
+        public void threadDidCleanup()
+        {
+        }
+    };
+
+    @Setup
+    public void setup()
+    {
+        for (int i = 0; i < VALUES; i++)
+        {
+            values[i] = manager.createValue();
+        }
+    }
+
+    @Benchmark
+    public int request()
+    {
+        int found = 0;
+
+        manager.addThreadCleanupListener(listener);
+
+        for (PerThreadValue<Object> v : values)
+        {
+            if (v.get() == null)
+                v.set(value);
+
+            if (v.exists())
+                found++;
+        }
+
+        manager.cleanup();
+
+        return found;
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.Registry;
+import org.apache.tapestry5.ioc.RegistryBuilder;
+import org.apache.tapestry5.ioc.services.TypeCoercer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures coercions made concurrently from several threads, as when many requests render pages whose parameter
+ * bindings need coercion. Compare the result with {@code -t 1} to see the cost of contention; the thread count may be
+ * overridden with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class TypeCoercerBenchmark
+{
+    private Registry registry;
+
+    private TypeCoercer coercer;
+
+    private final Long longValue = 97L;
+
+    private final StringBuilder builder = new StringBuilder("12345");
+
+    @Setup
+    public void setup()
+    {
+        registry = new RegistryBuilder().build();
+
+        coercer = registry.getService(TypeCoercer.class);
+    }
+
+    @TearDown
+    public void shutdown()
+    {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public Object longToInteger()
+    {
+        return coercer.coerce(longValue, Integer.class);
+    }
+
+    @Benchmark
+    public Object objectToString()
+    {
+        return coercer.coerce(builder, String.class);
+    }
+}
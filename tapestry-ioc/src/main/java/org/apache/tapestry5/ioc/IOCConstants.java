@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -27,4 +27,25 @@ public class IOCConstants
      * @since 5.2.2
      */
     public static final String SERVICE_CLASS_RELOADING_ENABLED = "tapestry.service-reloading-enabled";
+
+    /**
+     * Name of a JVM System Property (but not a configuration symbol, as it must be known before the Registry exists)
+     * that enables profiling of service realization: the time taken (and, where the JVM can measure it, the memory
+     * allocated) by each service's construction, contributions, decorators and advisors is recorded by the
+     * {@link org.apache.tapestry5.ioc.services.ServiceActivityScoreboard}. Defaults to false.
+     *
+     * @since 5.4
+     */
+    public static final String SERVICE_PROFILING_ENABLED = "tapestry.service-profiling-enabled";
+
+    /**
+     * Name of a JVM System Property (but not a configuration symbol, as it must be known before the Registry exists)
+     * that limits how many per-thread values a thread may set during a single request and still keep its per-thread
+     * storage for its next request; a thread that sets more has its storage discarded (and rebuilt, as needed) at
+     * cleanup. Defaults to 10000, well above what a complex page render sets.
+     *
+     * @see org.apache.tapestry5.ioc.services.PerthreadManager#cleanup()
+     * @since 5.4
+     */
+    public static final String PERTHREAD_MAX_RETAINED_VALUES = "tapestry.perthread-max-retained-values";
 }
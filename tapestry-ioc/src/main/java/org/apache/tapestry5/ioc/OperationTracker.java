@@ -1,4 +1,4 @@
-//  Copyright 2008, 2009 The Apache Software Foundation
+//  Copyright 2008, 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -36,4 +36,30 @@ public interface OperationTracker
      * @return result of operation
      */
     <T> T invoke(String description, Invokable<T> operation);
+
+    /**
+     * Executes the operation, with a description that is only formatted (via {@link String#format(String, Object...)})
+     * when it is actually needed: if there is an exception, or if operations are being logged. This is preferred when
+     * the description would otherwise be formatted every time the operation executes. As the description may be
+     * formatted after the operation has executed, the arguments should be values that the operation does not change.
+     * If the description can not be formatted, the format and the arguments are reported as-is.
+     *
+     * @param operation to execute
+     * @param format    format for the description
+     * @param arguments arguments for the format
+     * @since 5.4
+     */
+    void run(Runnable operation, String format, Object... arguments);
+
+    /**
+     * Executes the operation, returning its value, with a description that is only formatted when needed.
+     *
+     * @param operation to invoke
+     * @param format    format for the description
+     * @param arguments arguments for the format
+     * @return result of operation
+     * @see #run(Runnable, String, Object...)
+     * @since 5.4
+     */
+    <T> T invoke(Invokable<T> operation, String format, Object... arguments);
 }
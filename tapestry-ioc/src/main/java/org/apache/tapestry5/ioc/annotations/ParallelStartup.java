@@ -0,0 +1,49 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks work done at {@linkplain org.apache.tapestry5.ioc.Registry#performRegistryStartup() registry startup} as safe
+ * to run in parallel with other work marked the same way, using the
+ * {@link org.apache.tapestry5.ioc.services.ParallelExecutor}. This annotation may be placed on:
+ * <ul>
+ * <li>the implementation class (or the service interface) of an {@linkplain EagerLoad eagerly loaded} service; all
+ * such services are realized in parallel, before the remaining eagerly loaded services are realized one at a time</li>
+ * <li>a Runnable class contributed to the <em>RegistryStartup</em> service; a run of consecutive marked contributions
+ * (in the configuration's order) executes in parallel, but only once all earlier contributions have completed, and
+ * before any later contribution starts</li>
+ * </ul>
+ * Work marked with this annotation must not depend on other marked work that may be running at the same time: in
+ * particular, the constructor (or service builder method) of a marked service must not invoke methods of another
+ * marked service, as the two services would then be realized on different threads and could deadlock.
+ * <p/>
+ * When any work runs in parallel, a timeline (identifying the critical path through the startup work) is logged.
+ *
+ * @since 5.4
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+@Documented
+@UseWith(AnnotationUseContext.SERVICE)
+public @interface ParallelStartup
+{
+}
@@ -1,4 +1,4 @@
-// Copyright 2006 The Apache Software Foundation
+// Copyright 2006, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,4 +21,19 @@ package org.apache.tapestry5.ioc.internal;
 public interface EagerLoadServiceProxy
 {
     void eagerLoadService();
+
+    /**
+     * Returns the id of the service, used to identify its realization in the startup timeline.
+     *
+     * @since 5.4
+     */
+    String getServiceId();
+
+    /**
+     * Returns true if the service may be realized in parallel with other such services.
+     *
+     * @see org.apache.tapestry5.ioc.annotations.ParallelStartup
+     * @since 5.4
+     */
+    boolean isParallelStartup();
 }
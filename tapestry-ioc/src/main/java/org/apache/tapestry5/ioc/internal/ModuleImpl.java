@@ -16,6 +16,7 @@ package org.apache.tapestry5.ioc.internal;
 
 import org.apache.tapestry5.ioc.*;
 import org.apache.tapestry5.ioc.annotations.Local;
+import org.apache.tapestry5.ioc.annotations.ParallelStartup;
 import org.apache.tapestry5.ioc.def.*;
 import org.apache.tapestry5.ioc.internal.services.JustInTimeObjectCreator;
 import org.apache.tapestry5.ioc.internal.util.*;
@@ -265,7 +266,8 @@ public class ModuleImpl implements Module
                     // Build up a stack of operations that will be needed to realize the service
                     // (by the proxy, at a later date).
 
-                    ObjectCreator creator = def.createServiceCreator(resources);
+                    ObjectCreator creator = tracker.profile(serviceId, "construct",
+                            def.createServiceCreator(resources));
 
 
                     // For non-proxyable services, we immediately create the service implementation
@@ -282,7 +284,7 @@ public class ModuleImpl implements Module
                                             "Service scope '%s' requires a proxy, but the service does not have a service interface (necessary to create a proxy). Provide a service interface or select a different service scope.",
                                             def.getServiceScope()));
 
-                        return creator.createObject();
+                        return tracker.profile(serviceId, null, creator).createObject();
                     }
 
                     creator = new OperationTrackingObjectCreator(registry, String.format("Instantiating service %s implementation via %s", serviceId, creator), creator);
@@ -297,8 +299,10 @@ public class ModuleImpl implements Module
 
                     if (allowDecoration)
                     {
-                        creator = new AdvisorStackBuilder(def, creator, getAspectDecorator(), registry);
-                        creator = new InterceptorStackBuilder(def, creator, registry);
+                        creator = tracker.profile(serviceId, "advise",
+                                new AdvisorStackBuilder(def, creator, getAspectDecorator(), registry));
+                        creator = tracker.profile(serviceId, "decorate",
+                                new InterceptorStackBuilder(def, creator, registry));
                     }
 
                     // Add a wrapper that checks for recursion.
@@ -307,7 +311,13 @@ public class ModuleImpl implements Module
 
                     creator = new OperationTrackingObjectCreator(registry, "Realizing service " + serviceId, creator);
 
-                    JustInTimeObjectCreator delegate = new JustInTimeObjectCreator(tracker, creator, serviceId);
+                    creator = tracker.profile(serviceId, null, creator);
+
+                    boolean parallelStartup = def.isEagerLoad()
+                            && def.getClassAnnotationProvider().getAnnotation(ParallelStartup.class) != null;
+
+                    JustInTimeObjectCreator delegate = new JustInTimeObjectCreator(tracker, creator, serviceId,
+                            parallelStartup);
 
                     Object proxy = createProxy(resources, delegate);
 
@@ -1,4 +1,4 @@
-// Copyright 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -16,43 +16,56 @@ package org.apache.tapestry5.ioc.internal;
 
 import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.OperationTracker;
-import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.InternalUtils;
-import org.apache.tapestry5.ioc.util.Stack;
 import org.slf4j.Logger;
 
+import java.util.Arrays;
+
 /**
  * Core implementation that manages a logger and catches and reports exception.
+ * <p/>
+ * The stack of operations is kept as an array of frames, two slots per operation: the description (or a format for
+ * it), and the arguments to the format (or null). Descriptions are only formatted when logged, so tracking an operation
+ * that succeeds costs little more than storing two references. The array contains only JDK types, and is emptied as
+ * operations complete, so it may be {@linkplain #getFrames() kept} and reused by a later tracker on the same thread.
  *
  * @see org.apache.tapestry5.ioc.internal.PerThreadOperationTracker
  */
 public class OperationTrackerImpl implements OperationTracker
 {
+    private static final int INITIAL_DEPTH = 20;
+
     private final Logger logger;
 
-    private final Stack<String> operations = CollectionFactory.newStack();
+    private Object[] frames;
+
+    private int depth;
 
     private boolean logged;
 
     public OperationTrackerImpl(Logger logger)
+    {
+        this(logger, null);
+    }
+
+    /**
+     * @param logger
+     *         used to log operations, and failures
+     * @param frames
+     *         empty frames, from an earlier tracker, or null
+     */
+    OperationTrackerImpl(Logger logger, Object[] frames)
     {
         this.logger = logger;
+        this.frames = frames == null ? new Object[2 * INITIAL_DEPTH] : frames;
     }
 
-    public void run(String description, final Runnable operation)
+    public void run(String description, Runnable operation)
     {
         assert InternalUtils.isNonBlank(description);
         assert operation != null;
 
-        invoke(description, new Invokable<Void>()
-        {
-            public Void invoke()
-            {
-                operation.run();
-
-                return null;
-            }
-        });
+        invoke(description, null, operation, null);
     }
 
     public <T> T invoke(String description, Invokable<T> operation)
@@ -60,25 +73,56 @@ public class OperationTrackerImpl implements OperationTracker
         assert InternalUtils.isNonBlank(description);
         assert operation != null;
 
-        long startNanos = System.nanoTime();
+        return invoke(description, null, null, operation);
+    }
+
+    public void run(Runnable operation, String format, Object... arguments)
+    {
+        assert InternalUtils.isNonBlank(format);
+        assert operation != null;
+
+        invoke(format, arguments, operation, null);
+    }
+
+    public <T> T invoke(Invokable<T> operation, String format, Object... arguments)
+    {
+        assert InternalUtils.isNonBlank(format);
+        assert operation != null;
+
+        return invoke(format, arguments, null, operation);
+    }
+
+    /**
+     * Executes the runnable, or invokes the invokable, as a tracked operation.
+     */
+    private <T> T invoke(String format, Object[] arguments, Runnable runnable, Invokable<T> invokable)
+    {
+        boolean debugEnabled = logger.isDebugEnabled();
+
+        long startNanos = debugEnabled ? System.nanoTime() : 0;
 
-        if (logger.isDebugEnabled())
+        push(format, arguments);
+
+        if (debugEnabled)
         {
-            logger.debug(String.format("[%3d] --> %s", operations.getDepth() + 1, description));
+            logger.debug(String.format("[%3d] --> %s", depth, describe(depth - 1)));
         }
 
-        operations.push(description);
-
         try
         {
-            T result = operation.invoke();
+            T result = null;
 
-            if (logger.isDebugEnabled())
+            if (runnable != null)
+                runnable.run();
+            else
+                result = invokable.invoke();
+
+            if (debugEnabled)
             {
                 long elapsedNanos = System.nanoTime() - startNanos;
                 double elapsedMillis = ((double) elapsedNanos) / 1000000.d;
 
-                logger.debug(String.format("[%3d] <-- %s [%,.2f ms]", operations.getDepth(), description, elapsedMillis));
+                logger.debug(String.format("[%3d] <-- %s [%,.2f ms]", depth, describe(depth - 1), elapsedMillis));
             }
 
             return result;
@@ -92,22 +136,99 @@ public class OperationTrackerImpl implements OperationTracker
         {
             if (!logged)
             {
-                log(ex);
                 logged = true;
+
+                try
+                {
+                    log(ex);
+                } catch (Throwable ignored)
+                {
+                    // Possible for a StackOverflowError or OutOfMemoryError; the original error matters more.
+                }
             }
 
             throw ex;
         } finally
         {
-            operations.pop();
+            pop();
 
             // We've finally backed out of the operation stack ... but there may be more to come!
 
-            if (operations.isEmpty())
+            if (depth == 0)
                 logged = false;
         }
+    }
+
+    private void push(String format, Object[] arguments)
+    {
+        int slot = 2 * depth;
+
+        if (slot == frames.length)
+        {
+            Object[] expanded = new Object[2 * frames.length];
+
+            System.arraycopy(frames, 0, expanded, 0, frames.length);
+
+            frames = expanded;
+        }
+
+        frames[slot] = format;
+        frames[slot + 1] = arguments;
+
+        depth++;
+    }
+
+    private void pop()
+    {
+        depth--;
+
+        // Don't hold onto the description, or the arguments, once the operation completes.
+
+        frames[2 * depth] = null;
+        frames[2 * depth + 1] = null;
+    }
+
+    /**
+     * Returns the description of the operation at the given index in the stack (0 is the outermost operation),
+     * formatting it if necessary. This is invoked while reporting a failure, so a failure to format the description
+     * (an argument's toString() may throw an exception, or there may be too little memory) must not replace the
+     * original exception.
+     */
+    private String describe(int index)
+    {
+        String format = (String) frames[2 * index];
+        Object[] arguments = (Object[]) frames[2 * index + 1];
+
+        if (arguments == null)
+            return format;
+
+        try
+        {
+            return String.format(format, arguments);
+        } catch (Throwable ex)
+        {
+            return describeUnformatted(format, arguments);
+        }
+    }
+
+    private static String describeUnformatted(String format, Object[] arguments)
+    {
+        String[] strings = new String[arguments.length];
+
+        for (int i = 0; i < arguments.length; i++)
+        {
+            Object argument = arguments[i];
 
+            try
+            {
+                strings[i] = String.valueOf(argument);
+            } catch (Throwable ex)
+            {
+                strings[i] = argument.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(argument));
+            }
+        }
 
+        return format + " " + Arrays.toString(strings);
     }
 
     private void logAndRethrow(Throwable ex)
@@ -127,12 +248,11 @@ public class OperationTrackerImpl implements OperationTracker
         logger.error(InternalUtils.toMessage(ex));
         logger.error("Operations trace:");
 
-        Object[] snapshot = operations.getSnapshot();
-        String[] trace = new String[snapshot.length];
+        String[] trace = new String[depth];
 
-        for (int i = 0; i < snapshot.length; i++)
+        for (int i = 0; i < depth; i++)
         {
-            trace[i] = snapshot[i].toString();
+            trace[i] = describe(i);
 
             logger.error(String.format("[%2d] %s", i + 1, trace[i]));
         }
@@ -141,6 +261,14 @@ public class OperationTrackerImpl implements OperationTracker
 
     boolean isEmpty()
     {
-        return operations.isEmpty();
+        return depth == 0;
+    }
+
+    /**
+     * Returns the (possibly expanded) frames, which are empty when the tracker {@linkplain #isEmpty() is empty}.
+     */
+    Object[] getFrames()
+    {
+        return frames;
     }
 }
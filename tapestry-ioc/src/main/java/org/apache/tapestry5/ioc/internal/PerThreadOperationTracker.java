@@ -1,4 +1,4 @@
-//  Copyright 2008, 2009, 2011 The Apache Software Foundation
+//  Copyright 2008, 2009, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -22,7 +22,9 @@ import org.slf4j.Logger;
 import java.util.concurrent.locks.Lock;
 
 /**
- * Manages a per-thread OperationTracker using a ThreadLocal.
+ * Manages a per-thread OperationTracker using a ThreadLocal. The tracker is discarded once the outermost operation
+ * completes, but its (emptied) frames are kept, in a separate ThreadLocal, for reuse by the thread's next operation.
+ * The frames are a simple array, so keeping them does not pin the application's class loader to a pooled thread.
  */
 public class PerThreadOperationTracker implements OperationTracker
 {
@@ -35,10 +37,12 @@ public class PerThreadOperationTracker implements OperationTracker
         @Override
         protected OperationTrackerImpl initialValue()
         {
-            return new OperationTrackerImpl(logger);
+            return new OperationTrackerImpl(logger, frames.get());
         }
     };
 
+    private final ThreadLocal<Object[]> frames = new ThreadLocal<Object[]>();
+
     public PerThreadOperationTracker(Logger logger)
     {
         this.logger = logger;
@@ -62,7 +66,14 @@ public class PerThreadOperationTracker implements OperationTracker
         try
         {
             lock.lock();
-            if (perThread.get().isEmpty()) perThread.remove();
+
+            OperationTrackerImpl tracker = perThread.get();
+
+            if (tracker.isEmpty())
+            {
+                frames.set(tracker.getFrames());
+                perThread.remove();
+            }
         } finally
         {
             lock.unlock();
@@ -90,4 +101,26 @@ public class PerThreadOperationTracker implements OperationTracker
             cleanup();
         }
     }
+
+    public void run(Runnable operation, String format, Object... arguments)
+    {
+        try
+        {
+            get().run(operation, format, arguments);
+        } finally
+        {
+            cleanup();
+        }
+    }
+
+    public <T> T invoke(Invokable<T> operation, String format, Object... arguments)
+    {
+        try
+        {
+            return get().invoke(operation, format, arguments);
+        } finally
+        {
+            cleanup();
+        }
+    }
 }
@@ -1,4 +1,4 @@
-//  Copyright 2008, 2009 The Apache Software Foundation
+//  Copyright 2008, 2009, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -31,4 +31,14 @@ public class QuietOperationTracker implements OperationTracker
     {
         return operation.invoke();
     }
+
+    public void run(Runnable operation, String format, Object... arguments)
+    {
+        operation.run();
+    }
+
+    public <T> T invoke(Invokable<T> operation, String format, Object... arguments)
+    {
+        return operation.invoke();
+    }
 }
@@ -23,6 +23,7 @@ import org.apache.tapestry5.ioc.annotations.Local;
 import org.apache.tapestry5.ioc.def.*;
 import org.apache.tapestry5.ioc.internal.services.PerthreadManagerImpl;
 import org.apache.tapestry5.ioc.internal.services.RegistryShutdownHubImpl;
+import org.apache.tapestry5.ioc.internal.services.StartupTasks;
 import org.apache.tapestry5.ioc.internal.util.*;
 import org.apache.tapestry5.ioc.services.*;
 import org.apache.tapestry5.ioc.util.AvailableValues;
@@ -131,7 +132,8 @@ public class RegistryImpl implements Registry, InternalRegistry, ServiceProxyPro
 
         perthreadManager = new PerthreadManagerImpl(logger);
 
-        final ServiceActivityTrackerImpl scoreboardAndTracker = new ServiceActivityTrackerImpl(perthreadManager);
+        final ServiceActivityTrackerImpl scoreboardAndTracker = new ServiceActivityTrackerImpl(perthreadManager,
+                InternalUtils.SERVICE_PROFILING_ENABLED);
 
         tracker = scoreboardAndTracker;
 
@@ -303,10 +305,30 @@ public class RegistryImpl implements Registry, InternalRegistry, ServiceProxyPro
         for (Module m : moduleToServiceDefs.keySet())
             m.collectEagerLoadServices(proxies);
 
-        // TAPESTRY-2267: Gather up all the proxies before instantiating any of them.
+        // TAPESTRY-2267: Gather up all the proxies before instantiating any of them. Services that may be realized in
+        // parallel go first, as they can all be started together.
 
-        for (EagerLoadServiceProxy proxy : proxies)
-            proxy.eagerLoadService();
+        StartupTasks tasks = new StartupTasks(getServiceLogger("RegistryStartup"), getService(ParallelExecutor.class),
+                "Eager load");
+
+        for (boolean parallel : new boolean[]{true, false})
+        {
+            for (final EagerLoadServiceProxy proxy : proxies)
+            {
+                if (proxy.isParallelStartup() != parallel)
+                    continue;
+
+                tasks.add("Realizing service " + proxy.getServiceId(), parallel, new Runnable()
+                {
+                    public void run()
+                    {
+                        proxy.eagerLoadService();
+                    }
+                });
+            }
+        }
+
+        tasks.run();
 
         getService("RegistryStartup", Runnable.class).run();
 
@@ -547,13 +569,13 @@ public class RegistryImpl implements Registry, InternalRegistry, ServiceProxyPro
 
             logger.debug(description);
 
-            operationTracker.run(description, new Runnable()
+            operationTracker.run(description, tracker.profile(serviceId, description, new Runnable()
             {
                 public void run()
                 {
                     def.contribute(module, resources, validating);
                 }
-            });
+            }));
         }
     }
 
@@ -579,13 +601,13 @@ public class RegistryImpl implements Registry, InternalRegistry, ServiceProxyPro
 
             logger.debug(description);
 
-            operationTracker.run(description, new Runnable()
+            operationTracker.run(description, tracker.profile(serviceId, description, new Runnable()
             {
                 public void run()
                 {
                     def.contribute(module, resources, validating);
                 }
-            });
+            }));
         }
     }
 
@@ -612,13 +634,13 @@ public class RegistryImpl implements Registry, InternalRegistry, ServiceProxyPro
 
             logger.debug(description);
 
-            operationTracker.run(description, new Runnable()
+            operationTracker.run(description, tracker.profile(serviceId, description, new Runnable()
             {
                 public void run()
                 {
                     def.contribute(module, resources, validating);
                 }
-            });
+            }));
         }
     }
 
@@ -1103,6 +1125,16 @@ public class RegistryImpl implements Registry, InternalRegistry, ServiceProxyPro
         return operationTracker.invoke(description, operation);
     }
 
+    public void run(Runnable operation, String format, Object... arguments)
+    {
+        operationTracker.run(operation, format, arguments);
+    }
+
+    public <T> T invoke(Invokable<T> operation, String format, Object... arguments)
+    {
+        return operationTracker.invoke(operation, format, arguments);
+    }
+
     public Set<Class> getMarkerAnnotations()
     {
         return markerToServiceDef.keySet();
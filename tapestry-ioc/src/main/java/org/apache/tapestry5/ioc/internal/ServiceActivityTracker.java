@@ -1,4 +1,4 @@
-// Copyright 2007 The Apache Software Foundation
+// Copyright 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,7 @@
 
 package org.apache.tapestry5.ioc.internal;
 
+import org.apache.tapestry5.ioc.ObjectCreator;
 import org.apache.tapestry5.ioc.def.ServiceDef;
 import org.apache.tapestry5.ioc.services.ServiceActivityScoreboard;
 import org.apache.tapestry5.ioc.services.Status;
@@ -39,4 +40,26 @@ public interface ServiceActivityTracker
      * @param status    the new status value
      */
     void setStatus(String serviceId, Status status);
+
+    /**
+     * Wraps an object creator so that the time it takes is recorded as a step in the realization of a service. Steps
+     * nest within each other, and within the steps of other services realized along the way. When profiling is not
+     * enabled, the creator is returned unchanged.
+     *
+     * @param serviceId identifies the service, which must be previously defined
+     * @param step      describes the step (such as "construct" or "decorate"), or null for the realization of the
+     *                  service as a whole
+     * @param creator   performs the step
+     * @return the creator, possibly wrapped
+     * @since 5.4
+     */
+    <T> ObjectCreator<T> profile(String serviceId, String step, ObjectCreator<T> creator);
+
+    /**
+     * As with {@link #profile(String, String, ObjectCreator)}, but for a step, such as invoking a contribution method,
+     * that does not produce an object.
+     *
+     * @since 5.4
+     */
+    Runnable profile(String serviceId, String step, Runnable runnable);
 }
@@ -1,4 +1,4 @@
-// Copyright 2007 The Apache Software Foundation
+// Copyright 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,12 +14,15 @@
 
 package org.apache.tapestry5.ioc.internal;
 
+import org.apache.tapestry5.ioc.ObjectCreator;
 import org.apache.tapestry5.ioc.def.ServiceDef;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.services.ServiceActivity;
 import org.apache.tapestry5.ioc.services.ServiceActivityScoreboard;
 import org.apache.tapestry5.ioc.services.Status;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -88,12 +91,127 @@ public class ServiceActivityTrackerImpl implements ServiceActivityScoreboard,
             if (perThreadStatus != null) perThreadStatus.set(status);
             else this.status = status;
         }
+
+        private long realizationTime, nestedRealizationTime, realizationAllocatedBytes = -1;
+
+        public synchronized long getRealizationTime()
+        {
+            return realizationTime;
+        }
+
+        public synchronized long getNestedRealizationTime()
+        {
+            return nestedRealizationTime;
+        }
+
+        public synchronized long getRealizationAllocatedBytes()
+        {
+            return realizationAllocatedBytes;
+        }
+
+        synchronized void addRealization(long elapsed, long nested, long allocatedBytes)
+        {
+            realizationTime += elapsed;
+            nestedRealizationTime += nested;
+
+            if (allocatedBytes >= 0)
+                realizationAllocatedBytes = Math.max(realizationAllocatedBytes, 0) + allocatedBytes;
+        }
+    }
+
+    /**
+     * A step in the realization of a service, on the current thread's stack of steps.
+     */
+    private static class Frame
+    {
+        final Frame parent;
+
+        /**
+         * The names of this frame and all of its parents, in the collapsed stack format.
+         */
+        final String stack;
+
+        /**
+         * Total time of the immediately nested steps.
+         */
+        long childTime;
+
+        /**
+         * Total time spent, within this step, realizing other services.
+         */
+        long nestedRealizationTime;
+
+        Frame(Frame parent, String name)
+        {
+            this.parent = parent;
+
+            // Semicolons separate frames in the collapsed stack format.
+
+            String safeName = name.replace(';', ',');
+
+            this.stack = parent == null ? safeName : parent.stack + ";" + safeName;
+        }
+    }
+
+    /**
+     * Uses the HotSpot extension to ThreadMXBean, when available, to find out how many bytes the current thread has
+     * allocated. A nested class, so that management is only initialized when profiling.
+     */
+    private static class AllocationCounter
+    {
+        private static final Object threadMXBean = ManagementFactory.getThreadMXBean();
+
+        private static final Method getThreadAllocatedBytes = findMethod();
+
+        private static Method findMethod()
+        {
+            try
+            {
+                Class beanClass = Class.forName("com.sun.management.ThreadMXBean");
+
+                return beanClass.isInstance(threadMXBean) ? beanClass.getMethod("getThreadAllocatedBytes", long.class)
+                        : null;
+            } catch (Exception ex)
+            {
+                return null;
+            }
+        }
+
+        static long allocatedBytes()
+        {
+            if (getThreadAllocatedBytes == null)
+                return -1;
+
+            try
+            {
+                return (Long) getThreadAllocatedBytes.invoke(threadMXBean, Thread.currentThread().getId());
+            } catch (Exception ex)
+            {
+                return -1;
+            }
+        }
     }
 
     private final PerthreadManager perthreadManager;
 
-    public ServiceActivityTrackerImpl(PerthreadManager perthreadManager) {
+    private final boolean profilingEnabled;
+
+    private final ThreadLocal<Frame> currentFrame = new ThreadLocal<Frame>();
+
+    /**
+     * Time spent in each distinct stack of steps, in nanoseconds; sorted so that the profile is stable.
+     */
+    private final Map<String, Long> stackToSelfTime = new TreeMap<String, Long>();
+
+    /**
+     * @param perthreadManager used to track the status of perthread services
+     * @param profilingEnabled if true, service realization is
+     *                         {@linkplain #profile(String, String, ObjectCreator) profiled}
+     * @since 5.4
+     */
+    public ServiceActivityTrackerImpl(PerthreadManager perthreadManager, boolean profilingEnabled) {
         this.perthreadManager = perthreadManager;
+        this.profilingEnabled = profilingEnabled;
     }
 
     /**
@@ -138,4 +256,113 @@ public class ServiceActivityTrackerImpl implements ServiceActivityScoreboard,
         serviceIdToServiceStatus.get(serviceId).setStatus(status);
     }
 
+    public <T> ObjectCreator<T> profile(final String serviceId, final String step, final ObjectCreator<T> creator)
+    {
+        if (!profilingEnabled)
+            return creator;
+
+        return new ObjectCreator<T>()
+        {
+            public T createObject()
+            {
+                Frame frame = push(serviceId, step);
+                long allocatedAtStart = step == null ? AllocationCounter.allocatedBytes() : -1;
+                long start = System.nanoTime();
+
+                try
+                {
+                    return creator.createObject();
+                } finally
+                {
+                    pop(frame, serviceId, step, start, allocatedAtStart);
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return creator.toString();
+            }
+        };
+    }
+
+    public Runnable profile(final String serviceId, final String step, final Runnable runnable)
+    {
+        if (!profilingEnabled)
+            return runnable;
+
+        final ObjectCreator<Void> creator = profile(serviceId, step, new ObjectCreator<Void>()
+        {
+            public Void createObject()
+            {
+                runnable.run();
+
+                return null;
+            }
+        });
+
+        return new Runnable()
+        {
+            public void run()
+            {
+                creator.createObject();
+            }
+        };
+    }
+
+    private Frame push(String serviceId, String step)
+    {
+        Frame frame = new Frame(currentFrame.get(), step == null ? serviceId : serviceId + " " + step);
+
+        currentFrame.set(frame);
+
+        return frame;
+    }
+
+    private void pop(Frame frame, String serviceId, String step, long start, long allocatedAtStart)
+    {
+        long elapsed = System.nanoTime() - start;
+
+        Frame parent = frame.parent;
+
+        if (parent == null)
+            currentFrame.remove();
+        else
+        {
+            currentFrame.set(parent);
+
+            parent.childTime += elapsed;
+
+            // The whole of a nested service realization counts against the parent; for any other step, only the
+            // service realizations nested within it.
+
+            parent.nestedRealizationTime += step == null ? elapsed : frame.nestedRealizationTime;
+        }
+
+        long allocatedBytes = allocatedAtStart < 0 ? -1 : AllocationCounter.allocatedBytes() - allocatedAtStart;
+
+        synchronized (this)
+        {
+            Long selfTime = stackToSelfTime.get(frame.stack);
+
+            stackToSelfTime.put(frame.stack, (selfTime == null ? 0 : selfTime) + elapsed - frame.childTime);
+
+            if (step == null)
+                serviceIdToServiceStatus.get(serviceId).addRealization(elapsed, frame.nestedRealizationTime,
+                        allocatedBytes);
+        }
+    }
+
+    public synchronized String getRealizationProfile()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (Map.Entry<String, Long> entry : stackToSelfTime.entrySet())
+        {
+            builder.append(entry.getKey()).append(' ').append(entry.getValue() / 1000).append('\n');
+        }
+
+        return builder.toString();
+    }
+
 }
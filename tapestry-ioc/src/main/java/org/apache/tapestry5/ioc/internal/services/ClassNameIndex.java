@@ -0,0 +1,205 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * An index of the top-level classes in a JAR, stored in the JAR (by the {@link ClassNameIndexGenerator}) so that the
+ * {@link ClassNameLocatorImpl} can find the classes in a package without scanning the JAR's entries. The index is a
+ * text file with one line per package: the package name followed by the simple names of the package's classes,
+ * separated by spaces. Lines starting with '#' are comments.
+ * <p/>
+ * The index is stored under a path that includes its {@linkplain #getRootPackage() root package} (see
+ * {@link #toResourcePath(String)}), so that when the JARs of several libraries are merged into one, the indexes of
+ * libraries with different root packages do not overwrite each other.
+ *
+ * @since 5.4
+ */
+class ClassNameIndex
+{
+    static final String RESOURCE_DIRECTORY = "META-INF/tapestry/class-index/";
+
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Package name to simple class names, sorted by package name (so that a package and its sub-packages are
+     * adjacent).
+     */
+    private final SortedMap<String, List<String>> packages = new TreeMap<String, List<String>>();
+
+    void add(String className)
+    {
+        int dotx = className.lastIndexOf('.');
+
+        String packageName = dotx < 0 ? "" : className.substring(0, dotx);
+
+        List<String> names = packages.get(packageName);
+
+        if (names == null)
+        {
+            names = CollectionFactory.newList();
+            packages.put(packageName, names);
+        }
+
+        names.add(className.substring(dotx + 1));
+    }
+
+    /**
+     * Returns the path, within a JAR, of the index with the given root package.
+     */
+    static String toResourcePath(String rootPackage)
+    {
+        return RESOURCE_DIRECTORY + rootPackage + ".txt";
+    }
+
+    /**
+     * Returns the longest package that contains (directly, or in a sub-package) every indexed class, or the empty
+     * string if there is no such package.
+     */
+    String getRootPackage()
+    {
+        if (packages.isEmpty())
+            return "";
+
+        // As the package names are sorted, the common prefix of the first and last names is common to all names.
+
+        String[] first = packages.firstKey().split("\\.");
+        String[] last = packages.lastKey().split("\\.");
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < Math.min(first.length, last.length) && first[i].equals(last[i]); i++)
+        {
+            if (i > 0)
+                builder.append('.');
+
+            builder.append(first[i]);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Returns true if the index contains any classes in the package, or in any sub-package.
+     */
+    boolean covers(String packageName)
+    {
+        return packages.containsKey(packageName) || !subPackages(packageName).isEmpty();
+    }
+
+    /**
+     * Returns the entries for the sub-packages of the package ('/' immediately follows '.').
+     */
+    private SortedMap<String, List<String>> subPackages(String packageName)
+    {
+        return packages.subMap(packageName + ".", packageName + "/");
+    }
+
+    /**
+     * Adds the fully qualified names of the classes in the package, and in any sub-package, to the result.
+     */
+    void addClassNames(String packageName, Collection<String> result)
+    {
+        addClassNames(packageName, packages.get(packageName), result);
+
+        for (Map.Entry<String, List<String>> e : subPackages(packageName).entrySet())
+        {
+            addClassNames(e.getKey(), e.getValue(), result);
+        }
+    }
+
+    private static void addClassNames(String packageName, List<String> simpleNames, Collection<String> result)
+    {
+        if (simpleNames == null)
+            return;
+
+        for (String simpleName : simpleNames)
+        {
+            result.add(packageName + "." + simpleName);
+        }
+    }
+
+    static ClassNameIndex read(InputStream stream) throws IOException
+    {
+        ClassNameIndex result = new ClassNameIndex();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, CHARSET));
+
+        try
+        {
+            while (true)
+            {
+                String line = reader.readLine();
+
+                if (line == null)
+                    break;
+
+                line = line.trim();
+
+                if (line.length() == 0 || line.startsWith("#"))
+                    continue;
+
+                String[] tokens = line.split("\\s+");
+
+                List<String> names = CollectionFactory.newList(Arrays.asList(tokens).subList(1, tokens.length));
+
+                result.packages.put(tokens[0], names);
+            }
+
+            reader.close();
+            reader = null;
+        } finally
+        {
+            InternalUtils.close(reader);
+        }
+
+        return result;
+    }
+
+    void write(OutputStream stream) throws IOException
+    {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(stream, CHARSET));
+
+        writer.println("# Top-level classes, by package; generated by " + ClassNameIndexGenerator.class.getName());
+
+        for (Map.Entry<String, List<String>> e : packages.entrySet())
+        {
+            List<String> names = CollectionFactory.newList(e.getValue());
+
+            Collections.sort(names);
+
+            writer.print(e.getKey());
+
+            for (String name : names)
+            {
+                writer.print(' ');
+                writer.print(name);
+            }
+
+            writer.println();
+        }
+
+        writer.close();
+
+        if (writer.checkError())
+            throw new IOException("Unable to write class index.");
+    }
+}
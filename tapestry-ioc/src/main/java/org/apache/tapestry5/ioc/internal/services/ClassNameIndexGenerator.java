@@ -0,0 +1,96 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.internal.util.InternalUtils;
+
+import java.io.*;
+
+/**
+ * Writes a {@link ClassNameIndex} of the top-level classes in a directory of compiled classes; the index is then
+ * packaged into the JAR built from the directory. Run as a main class, at build time (for example, from a Gradle
+ * {@code JavaExec} task):
+ * <pre>
+ * java org.apache.tapestry5.ioc.internal.services.ClassNameIndexGenerator &lt;classes directory&gt; &lt;output directory&gt;
+ * </pre>
+ * The index is written to {@code META-INF/tapestry/class-index/<root package>.txt} under the output directory (no index
+ * is written if the classes do not share a root package).
+ *
+ * @since 5.4
+ */
+public class ClassNameIndexGenerator
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: ClassNameIndexGenerator <classes directory> <output directory>");
+            System.exit(-1);
+        }
+
+        ClassNameIndex index = new ClassNameIndex();
+
+        File root = new File(args[0]);
+
+        if (root.isDirectory())
+            collect(index, root, "");
+
+        File directory = new File(args[1], ClassNameIndex.RESOURCE_DIRECTORY);
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException(String.format("Unable to create directory %s.", directory));
+
+        // Without a common root package, the JAR will simply be scanned.
+
+        String rootPackage = index.getRootPackage();
+
+        if (rootPackage.length() == 0)
+            return;
+
+        File file = new File(args[1], ClassNameIndex.toResourcePath(rootPackage));
+
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
+
+        try
+        {
+            index.write(stream);
+
+            stream = null;
+        } finally
+        {
+            InternalUtils.close(stream);
+        }
+    }
+
+    /**
+     * Classes in the default package are not indexed, as they can't be located by package.
+     */
+    private static void collect(ClassNameIndex index, File dir, String packagePrefix)
+    {
+        for (File file : dir.listFiles())
+        {
+            String fileName = file.getName();
+
+            if (file.isDirectory())
+            {
+                collect(index, file, packagePrefix + fileName + ".");
+            } else if (packagePrefix.length() > 0 && ClassNameLocatorImpl.isClassName(fileName))
+            {
+                index.add(packagePrefix + fileName.substring(0, fileName.length() - ClassNameLocatorImpl.CLASS_SUFFIX.length()));
+            }
+        }
+    }
+}
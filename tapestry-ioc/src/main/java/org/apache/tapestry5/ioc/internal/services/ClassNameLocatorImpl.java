@@ -1,4 +1,4 @@
-// Copyright 2007, 2008, 2010 The Apache Software Foundation
+// Copyright 2007, 2008, 2010, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -26,19 +26,31 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Pattern;
 
+/**
+ * Scans directories and JARs on the classpath. When a JAR contains a {@linkplain ClassNameIndex class index} whose root
+ * package is the requested package, or one of its parent packages, and the index includes the requested package, the
+ * JAR is not scanned; the index is read instead (once, as JARs don't change). Otherwise (for example, a JAR merged from
+ * several libraries, only some of which are indexed), the JAR is scanned.
+ */
 public class ClassNameLocatorImpl implements ClassNameLocator
 {
-    private static final String CLASS_SUFFIX = ".class";
+    static final String CLASS_SUFFIX = ".class";
     public static final String PACKAGE_INFO = "package-info.class";
 
     private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 
     private final ClasspathURLConverter converter;
 
+    /**
+     * Keyed on JAR file name and index resource path; a null value records that the JAR has no such index.
+     */
+    private final Map<String, ClassNameIndex> jarIndexes = CollectionFactory.newMap();
+
     // This matches normal class files but not inner class files (which contain a '$'.
 
     private final Pattern CLASS_NAME_PATTERN = Pattern.compile("^\\p{javaJavaIdentifierStart}[\\p{javaJavaIdentifierPart}&&[^\\$]]*\\.class$", Pattern.CASE_INSENSITIVE);
@@ -115,7 +127,12 @@ public class ClassNameLocatorImpl implements ClassNameLocator
 
         if (jarFile != null)
         {
-            scanJarFile(packagePath, componentClassNames, jarFile);
+            String packageName = packagePath.substring(0, packagePath.length() - 1).replace('/', '.');
+
+            if (!addIndexedClassNames(jarFile, packageName, componentClassNames))
+            {
+                scanJarFile(packagePath, componentClassNames, jarFile);
+            }
         } else if (supportsDirStream(url))
         {
             Stack<Queued> queue = CollectionFactory.newStack();
@@ -238,6 +255,54 @@ public class ClassNameLocatorImpl implements ClassNameLocator
 
     }
 
+    /**
+     * Adds the class names from each of the JAR's indexes that covers the package: an index whose root package is the
+     * package, or a parent package, and that includes the package.
+     *
+     * @return true if any index covers the package, false if the JAR must be scanned
+     */
+    private boolean addIndexedClassNames(JarFile jarFile, String packageName, Collection<String> componentClassNames)
+            throws IOException
+    {
+        boolean covered = false;
+
+        int dotx = 0;
+
+        while (dotx >= 0)
+        {
+            dotx = packageName.indexOf('.', dotx + 1);
+
+            String rootPackage = dotx < 0 ? packageName : packageName.substring(0, dotx);
+
+            ClassNameIndex index = getIndex(jarFile, ClassNameIndex.toResourcePath(rootPackage));
+
+            if (index != null && index.covers(packageName))
+            {
+                index.addClassNames(packageName, componentClassNames);
+
+                covered = true;
+            }
+        }
+
+        return covered;
+    }
+
+    private ClassNameIndex getIndex(JarFile jarFile, String resourcePath) throws IOException
+    {
+        String name = jarFile.getName() + "!" + resourcePath;
+
+        if (jarIndexes.containsKey(name))
+            return jarIndexes.get(name);
+
+        JarEntry entry = jarFile.getJarEntry(resourcePath);
+
+        ClassNameIndex index = entry == null ? null : ClassNameIndex.read(jarFile.getInputStream(entry));
+
+        jarIndexes.put(name, index);
+
+        return index;
+    }
+
     private void scanJarFile(String packagePath, Collection<String> componentClassNames, JarFile jarFile)
     {
         Enumeration<JarEntry> e = jarFile.entries();
@@ -297,7 +362,7 @@ public class ClassNameLocatorImpl implements ClassNameLocator
         }
     }
 
-    private boolean isClassName(String fileName)
+    static boolean isClassName(String fileName)
     {
         return fileName.endsWith(CLASS_SUFFIX) && !fileName.equals(PACKAGE_INFO) && !fileName.contains("$");
     }
@@ -1,4 +1,4 @@
-// Copyright 2007, 2009, 2011 The Apache Software Foundation
+// Copyright 2007, 2009, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -35,11 +35,23 @@ public class JustInTimeObjectCreator<T> implements ObjectCreator<T>, EagerLoadSe
 
     private final String serviceId;
 
+    private final boolean parallelStartup;
+
     public JustInTimeObjectCreator(ServiceActivityTracker tracker, ObjectCreator<T> creator, String serviceId)
+    {
+        this(tracker, creator, serviceId, false);
+    }
+
+    /**
+     * @since 5.4
+     */
+    public JustInTimeObjectCreator(ServiceActivityTracker tracker, ObjectCreator<T> creator, String serviceId,
+                                   boolean parallelStartup)
     {
         this.tracker = tracker;
         this.creator = creator;
         this.serviceId = serviceId;
+        this.parallelStartup = parallelStartup;
     }
 
     /**
@@ -86,6 +98,16 @@ public class JustInTimeObjectCreator<T> implements ObjectCreator<T>, EagerLoadSe
         createObject();
     }
 
+    public String getServiceId()
+    {
+        return serviceId;
+    }
+
+    public boolean isParallelStartup()
+    {
+        return parallelStartup;
+    }
+
     /**
      * Invoked when the Registry is shutdown; deletes the instantiated object (if it exists) and replaces
      * the ObjectCreator with one that throws an IllegalStateException.
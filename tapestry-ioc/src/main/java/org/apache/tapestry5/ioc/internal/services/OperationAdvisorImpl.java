@@ -74,9 +74,7 @@ public class OperationAdvisorImpl implements OperationAdvisor
         {
             Object[] parameters = extractParameters(invocation);
 
-            String description = String.format(format, parameters);
-
-            tracker.run(description, toRunnable(invocation));
+            tracker.run(toRunnable(invocation), format, parameters);
         }
 
         private Object[] extractParameters(MethodInvocation invocation)
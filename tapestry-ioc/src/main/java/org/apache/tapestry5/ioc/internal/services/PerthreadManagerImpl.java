@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -14,6 +14,7 @@
 
 package org.apache.tapestry5.ioc.internal.services;
 
+import org.apache.tapestry5.ioc.IOCConstants;
 import org.apache.tapestry5.ioc.Invokable;
 import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.internal.util.JDKUtils;
@@ -22,69 +23,107 @@ import org.apache.tapestry5.ioc.services.PerthreadManager;
 import org.apache.tapestry5.ioc.services.ThreadCleanupListener;
 import org.slf4j.Logger;
 
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
+/**
+ * The per-thread values are stored in an {@link IdentityHashMap}, keyed on the {@link PerThreadValue} itself, so
+ * creating a value costs nothing per-thread, and reading or setting a value does not allocate. The values set during
+ * a request are also listed; at cleanup, just those values are removed from the map (at a cost proportional to the
+ * number of values set during the request, not to the number of values ever created, or to the size of the map), and
+ * the map is kept for the thread's next request. The map and its contents are JDK types, so nothing retained by a
+ * pooled thread prevents an application's class loader from being released; the map of a thread that set an unusually
+ * large number of values in one request is discarded rather than kept.
+ *
+ * @see IOCConstants#PERTHREAD_MAX_RETAINED_VALUES
+ */
 @SuppressWarnings("all")
 public class PerthreadManagerImpl implements PerthreadManager
 {
-    private final Lock lock = JDKUtils.createLockForThreadLocalCreation();
+    /**
+     * Stored in the map to distinguish a value set to null from a value never set.
+     */
+    private static final Object NULL_VALUE = new Object();
 
-    private final PerThreadValue<List<ThreadCleanupListener>> listenersValue;
+    /**
+     * Key for the list of {@link ThreadCleanupListener}s; the list is kept (but emptied) at cleanup.
+     */
+    private static final Object LISTENERS_KEY = new Object();
 
-    private static class MapHolder extends ThreadLocal<Map>
-    {
-        @Override
-        protected Map initialValue()
-        {
-            return CollectionFactory.newMap();
-        }
-    }
+    /**
+     * Key for the list of values set during the current request; the list is kept (but emptied) at cleanup.
+     */
+    private static final Object SET_VALUES_KEY = new Object();
 
-    private final Logger logger;
+    static final int DEFAULT_MAX_RETAINED_VALUES = 10000;
+
+    /**
+     * If more values than this were set by a thread during a request, its map is discarded at cleanup, rather than
+     * emptied and kept, so that a single unusual request does not leave the thread holding a very large map.
+     */
+    private final int maxRetainedValues;
 
-    private final MapHolder holder = new MapHolder();
+    private final Lock lock = JDKUtils.createLockForThreadLocalCreation();
 
-    private final AtomicInteger uuidGenerator = new AtomicInteger();
+    private final ThreadLocal<Map<Object, Object>> holder = new ThreadLocal<Map<Object, Object>>();
+
+    private final Logger logger;
 
     public PerthreadManagerImpl(Logger logger)
     {
-        this.logger = logger;
+        this(logger, Integer.getInteger(IOCConstants.PERTHREAD_MAX_RETAINED_VALUES, DEFAULT_MAX_RETAINED_VALUES));
+    }
 
-        listenersValue = createValue();
+    PerthreadManagerImpl(Logger logger, int maxRetainedValues)
+    {
+        this.logger = logger;
+        this.maxRetainedValues = maxRetainedValues;
     }
 
-    private Map getPerthreadMap()
+    Map<Object, Object> getPerthreadMap()
     {
         lock.lock();
 
         try
         {
-            return holder.get();
+            Map<Object, Object> map = holder.get();
+
+            if (map == null)
+            {
+                map = new IdentityHashMap<Object, Object>();
+                holder.set(map);
+            }
+
+            return map;
         } finally
         {
             lock.unlock();
         }
     }
 
-    private List<ThreadCleanupListener> getListeners()
+    private static <T> List<T> getList(Map<Object, Object> map, Object key)
     {
-        List<ThreadCleanupListener> result = listenersValue.get();
+        List<T> result = (List<T>) map.get(key);
 
         if (result == null)
         {
             result = CollectionFactory.newList();
-            listenersValue.set(result);
+            map.put(key, result);
         }
 
         return result;
     }
 
+    private static List<ThreadCleanupListener> getListeners(Map<Object, Object> map)
+    {
+        return getList(map, LISTENERS_KEY);
+    }
+
     public void addThreadCleanupListener(ThreadCleanupListener listener)
     {
-        getListeners().add(listener);
+        getListeners(getPerthreadMap()).add(listener);
     }
 
     /**
@@ -93,12 +132,19 @@ public class PerthreadManagerImpl implements PerthreadManager
      */
     public void cleanup()
     {
-        List<ThreadCleanupListener> listeners = getListeners();
+        Map<Object, Object> map = getPerthreadMap();
+
+        List<ThreadCleanupListener> listeners = getListeners(map);
 
-        listenersValue.set(null);
+        // Only the listeners registered before cleanup started are notified. Listeners should not re-add
+        // themselves or store any per-thread state here, it will be lost.
 
-        for (ThreadCleanupListener listener : listeners)
+        int count = listeners.size();
+
+        for (int i = 0; i < count; i++)
         {
+            ThreadCleanupListener listener = listeners.get(i);
+
             try
             {
                 listener.threadDidCleanup();
@@ -108,28 +154,36 @@ public class PerthreadManagerImpl implements PerthreadManager
             }
         }
 
-        // Listeners should not re-add themselves or store any per-thread state
-        // here, it will be lost.
+        listeners.clear();
 
-        try
+        List<Object> setValues = getList(map, SET_VALUES_KEY);
+
+        if (setValues.size() > maxRetainedValues)
         {
             lock.lock();
 
-            // Discard the per-thread map of values, including the key that stores
-            // the listeners. This means that if a listener attempts to register
-            // new listeners, the new listeners will not be triggered and will be
-            // released to the GC.
+            try
+            {
+                holder.remove();
+            } finally
+            {
+                lock.unlock();
+            }
 
-            holder.remove();
-        } finally
+            return;
+        }
+
+        // Discard the per-thread values (but keep the map, and the now empty lists, for the thread's next request).
+
+        for (int i = 0; i < setValues.size(); i++)
         {
-            lock.unlock();
+            map.remove(setValues.get(i));
         }
-    }
 
-    private static Object NULL_VALUE = new Object();
+        setValues.clear();
+    }
 
-    <T> PerThreadValue<T> createValue(final Object key)
+    public <T> PerThreadValue<T> createValue()
     {
         return new PerThreadValue<T>()
         {
@@ -140,40 +194,34 @@ public class PerthreadManagerImpl implements PerthreadManager
 
             public T get(T defaultValue)
             {
-                Map map = getPerthreadMap();
+                Object storedValue = getPerthreadMap().get(this);
 
-                if (map.containsKey(key))
-                {
-                    Object storedValue = map.get(key);
+                if (storedValue == null)
+                    return defaultValue;
 
-                    if (storedValue == NULL_VALUE)
-                        return null;
+                if (storedValue == NULL_VALUE)
+                    return null;
 
-                    return (T) storedValue;
-                }
-
-                return defaultValue;
+                return (T) storedValue;
             }
 
             public T set(T newValue)
             {
-                getPerthreadMap().put(key, newValue == null ? NULL_VALUE : newValue);
+                Map<Object, Object> map = getPerthreadMap();
+
+                if (map.put(this, newValue == null ? NULL_VALUE : newValue) == null)
+                    getList(map, SET_VALUES_KEY).add(this);
 
                 return newValue;
             }
 
             public boolean exists()
             {
-                return getPerthreadMap().containsKey(key);
+                return getPerthreadMap().containsKey(this);
             }
         };
     }
 
-    public <T> PerThreadValue<T> createValue()
-    {
-        return createValue(uuidGenerator.getAndIncrement());
-    }
-
     public void run(Runnable runnable)
     {
         assert runnable != null;
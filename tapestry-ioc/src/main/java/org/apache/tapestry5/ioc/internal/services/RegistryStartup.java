@@ -1,4 +1,4 @@
-// Copyright 2007 The Apache Software Foundation
+// Copyright 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,26 +15,32 @@
 package org.apache.tapestry5.ioc.internal.services;
 
 import org.apache.tapestry5.ioc.Registry;
+import org.apache.tapestry5.ioc.annotations.ParallelStartup;
 import org.apache.tapestry5.ioc.internal.util.OneShotLock;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
 import org.slf4j.Logger;
 
 import java.util.List;
 
 /**
  * Startup service for Tapestry IoC: automatically invoked at {@linkplain Registry#performRegistryStartup() registry
- * startup} to execute a series of operations, via its ordered configuration of Runnable objects.
+ * startup} to execute a series of operations, via its ordered configuration of Runnable objects. Consecutive
+ * contributions whose class is marked with {@link ParallelStartup} are executed in parallel.
  */
 public class RegistryStartup implements Runnable
 {
     private final Logger logger;
 
+    private final ParallelExecutor executor;
+
     private final List<Runnable> configuration;
 
     private final OneShotLock lock = new OneShotLock();
 
-    public RegistryStartup(Logger logger, final List<Runnable> configuration)
+    public RegistryStartup(Logger logger, ParallelExecutor executor, final List<Runnable> configuration)
     {
         this.logger = logger;
+        this.executor = executor;
         this.configuration = configuration;
     }
 
@@ -46,20 +52,28 @@ public class RegistryStartup implements Runnable
     {
         lock.lock();
 
-        // Do we want extra exception catching here?
+        StartupTasks tasks = new StartupTasks(logger, executor, "Registry startup");
 
-        for (Runnable r : configuration)
+        for (final Runnable r : configuration)
         {
-            try
-            {
-                r.run();
-            }
-            catch (RuntimeException ex)
+            tasks.add(r.toString(), r.getClass().isAnnotationPresent(ParallelStartup.class), new Runnable()
             {
-                logger.error(ServiceMessages.startupFailure(ex));
-            }
+                public void run()
+                {
+                    try
+                    {
+                        r.run();
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        logger.error(ServiceMessages.startupFailure(ex));
+                    }
+                }
+            });
         }
 
+        tasks.run();
+
         // We don't need them any more since this method can only be run once. It's a insignificant
         // savings, but still a nice thing to do.
 
@@ -0,0 +1,242 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.annotations.ParallelStartup;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executes a series of tasks at registry startup, in order. A run of consecutive tasks that are {@linkplain
+ * ParallelStartup safe to run in parallel} is executed using the {@link ParallelExecutor}; any other task is executed
+ * by itself, on the calling thread, once all earlier tasks have completed. When any tasks were executed in parallel, a
+ * timeline of all the tasks is logged, with the tasks on the critical path (the longest task of each run) marked.
+ *
+ * @since 5.4
+ */
+public class StartupTasks
+{
+    private static final long NANOS_PER_MILLI = 1000L * 1000L;
+
+    private final Logger logger;
+
+    private final ParallelExecutor executor;
+
+    private final String title;
+
+    private final List<Task> tasks = CollectionFactory.newList();
+
+    private long startNanos;
+
+    private class Task implements Invokable<Void>
+    {
+        final String description;
+
+        final boolean parallel;
+
+        final Runnable runnable;
+
+        volatile long start, elapsed;
+
+        volatile String threadName;
+
+        volatile boolean critical;
+
+        Task(String description, boolean parallel, Runnable runnable)
+        {
+            this.description = description;
+            this.parallel = parallel;
+            this.runnable = runnable;
+        }
+
+        public Void invoke()
+        {
+            threadName = Thread.currentThread().getName();
+
+            long taskStart = System.nanoTime();
+
+            start = taskStart - startNanos;
+
+            try
+            {
+                runnable.run();
+            } finally
+            {
+                elapsed = System.nanoTime() - taskStart;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * @param logger
+     *         used to log the timeline
+     * @param executor
+     *         used to execute tasks in parallel
+     * @param title
+     *         identifies the tasks in the timeline
+     */
+    public StartupTasks(Logger logger, ParallelExecutor executor, String title)
+    {
+        this.logger = logger;
+        this.executor = executor;
+        this.title = title;
+    }
+
+    /**
+     * Adds a task.
+     *
+     * @param description
+     *         describes the task in the timeline
+     * @param parallel
+     *         if true, the task may be executed at the same time as adjacent parallel tasks
+     * @param runnable
+     *         the work to execute
+     */
+    public void add(String description, boolean parallel, Runnable runnable)
+    {
+        tasks.add(new Task(description, parallel, runnable));
+    }
+
+    /**
+     * Executes all tasks. An exception thrown by a task is rethrown once the task, and any other tasks executing in
+     * parallel with it, have completed; later tasks are not executed.
+     */
+    public void run()
+    {
+        startNanos = System.nanoTime();
+
+        boolean parallelized = false;
+
+        int i = 0;
+
+        while (i < tasks.size())
+        {
+            int end = i + 1;
+
+            if (tasks.get(i).parallel)
+            {
+                while (end < tasks.size() && tasks.get(end).parallel)
+                    end++;
+            }
+
+            List<Task> batch = tasks.subList(i, end);
+
+            if (batch.size() == 1)
+            {
+                batch.get(0).invoke();
+            } else
+            {
+                parallelized = true;
+
+                invokeInParallel(batch);
+            }
+
+            markCriticalTask(batch);
+
+            i = end;
+        }
+
+        if (parallelized && logger.isInfoEnabled())
+            logger.info(toTimeline(System.nanoTime() - startNanos));
+    }
+
+    private void invokeInParallel(List<Task> batch)
+    {
+        List<Future<Void>> futures = CollectionFactory.newList();
+
+        for (Task task : batch)
+        {
+            try
+            {
+                futures.add(executor.invoke(task));
+            } catch (RejectedExecutionException ex)
+            {
+                // The thread pool's queue is full; do the work here instead.
+
+                task.invoke();
+            }
+        }
+
+        Throwable failure = null;
+
+        for (Future<Void> future : futures)
+        {
+            try
+            {
+                future.get();
+            } catch (ExecutionException ex)
+            {
+                if (failure == null)
+                    failure = ex.getCause();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException(ex);
+            }
+        }
+
+        if (failure == null)
+            return;
+
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+
+        if (failure instanceof Error)
+            throw (Error) failure;
+
+        throw new RuntimeException(failure);
+    }
+
+    private static void markCriticalTask(List<Task> batch)
+    {
+        Task longest = batch.get(0);
+
+        for (Task task : batch)
+        {
+            if (task.elapsed > longest.elapsed)
+                longest = task;
+        }
+
+        longest.critical = true;
+    }
+
+    private String toTimeline(long totalElapsed)
+    {
+        StringBuilder builder = new StringBuilder(String.format(
+                "%s timeline (%,d ms elapsed; '*' marks the critical path):", title, totalElapsed / NANOS_PER_MILLI));
+
+        for (Task task : tasks)
+        {
+            builder.append(String.format("%n %s %,7d ms +%,7d ms  %-20s %s",
+                    task.critical ? "*" : " ",
+                    task.start / NANOS_PER_MILLI,
+                    task.elapsed / NANOS_PER_MILLI,
+                    task.threadName,
+                    task.description));
+        }
+
+        return builder.toString();
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.apache.tapestry5.plastic.PlasticUtils;
 import org.apache.tapestry5.util.StringToEnumCoercion;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 @SuppressWarnings("all")
 public class TypeCoercerImpl implements TypeCoercer
@@ -49,11 +50,6 @@ public class TypeCoercerImpl implements TypeCoercer
             this.type = type;
         }
 
-        void clearCache()
-        {
-            cache.clear();
-        }
-
         Object coerce(Object input)
         {
 
@@ -92,9 +88,11 @@ public class TypeCoercerImpl implements TypeCoercer
     }
 
     /**
-     * Map from a target type to a TargetCoercion for that type.
+     * Map from a target type to a TargetCoercion for that type. This is read on every coercion, from many threads, so
+     * it is a concurrent map rather than a synchronized one. Because keys are strongly held, {@link #clearCache()}
+     * discards the entire map (releasing any references to classes that are being unloaded).
      */
-    private final Map<Class, TargetCoercion> typeToTargetCoercion = new WeakHashMap<Class, TargetCoercion>();
+    private final ConcurrentMap<Class, TargetCoercion> typeToTargetCoercion = CollectionFactory.newConcurrentMap();
 
     private static final Coercion NO_COERCION = new Coercion<Object, Object>()
     {
@@ -216,32 +214,28 @@ if (type == void.class)
         return getTargetCoercion(effectiveTargetType).explain(effectiveSourceType);
     }
 
-    private synchronized TargetCoercion getTargetCoercion(Class targetType)
+    private TargetCoercion getTargetCoercion(Class targetType)
     {
         TargetCoercion tc = typeToTargetCoercion.get(targetType);
 
-        if (tc == null)
-        {
-            tc = new TargetCoercion(targetType);
-            typeToTargetCoercion.put(targetType, tc);
-        }
+        if (tc != null)
+            return tc;
+
+        tc = new TargetCoercion(targetType);
 
-        return tc;
+        // Another thread may have added a TargetCoercion for the same type first; if so, use that one.
+
+        TargetCoercion existing = typeToTargetCoercion.putIfAbsent(targetType, tc);
+
+        return existing == null ? tc : existing;
     }
 
-    public synchronized void clearCache()
+    public void clearCache()
     {
-        // There's no need to clear the typeToTargetCoercion map, as it is a WeakHashMap and
-        // will release the keys for classes that are no longer in existence. On the other hand,
-        // there's likely all sorts of references to unloaded classes inside each TargetCoercion's
-        // individual cache, so clear all those.
+        // The TargetCoercions, both as keys and inside each TargetCoercion's individual cache, are likely to
+        // reference classes that are being unloaded, so discard them all; they are re-created as needed.
 
-        for (TargetCoercion tc : typeToTargetCoercion.values())
-        {
-            // Can tc ever be null?
-
-            tc.clearCache();
-        }
+        typeToTargetCoercion.clear();
     }
 
     /**
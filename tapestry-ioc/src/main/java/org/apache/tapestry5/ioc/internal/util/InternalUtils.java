@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2009, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2009, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -53,6 +53,11 @@ public class InternalUtils
     public static final boolean SERVICE_CLASS_RELOADING_ENABLED = Boolean.parseBoolean(System.getProperty(
             IOCConstants.SERVICE_CLASS_RELOADING_ENABLED, "true"));
 
+    /**
+     * @since 5.4
+     */
+    public static final boolean SERVICE_PROFILING_ENABLED = Boolean.getBoolean(IOCConstants.SERVICE_PROFILING_ENABLED);
+
 
     /**
      * Pattern used to eliminate leading and trailing underscores and dollar signs.
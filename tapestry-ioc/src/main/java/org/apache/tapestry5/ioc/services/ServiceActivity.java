@@ -1,4 +1,4 @@
-// Copyright 2007 The Apache Software Foundation
+// Copyright 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -48,4 +48,29 @@ public interface ServiceActivity
      * The markers on this service
      */
     Set<Class> getMarkers();
+
+    /**
+     * The wall time, in nanoseconds, spent realizing the service (for a perthread service, this is the total over
+     * all threads). This is only tracked when {@linkplain org.apache.tapestry5.ioc.IOCConstants#SERVICE_PROFILING_ENABLED
+     * profiling is enabled}; otherwise it is always zero.
+     *
+     * @since 5.4
+     */
+    long getRealizationTime();
+
+    /**
+     * The portion of the {@linkplain #getRealizationTime() realization time} spent realizing other services (for
+     * example, services invoked from this service's constructor).
+     *
+     * @since 5.4
+     */
+    long getNestedRealizationTime();
+
+    /**
+     * The number of bytes allocated while realizing the service (including any nested realizations), or -1 if the
+     * JVM can not measure allocations (or profiling is not enabled).
+     *
+     * @since 5.4
+     */
+    long getRealizationAllocatedBytes();
 }
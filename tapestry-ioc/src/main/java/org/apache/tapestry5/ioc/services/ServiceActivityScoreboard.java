@@ -1,4 +1,4 @@
-// Copyright 2007 The Apache Software Foundation
+// Copyright 2007, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -25,4 +25,15 @@ public interface ServiceActivityScoreboard
      * Returns the status of all services, sorted alphabetically by service id.
      */
     List<ServiceActivity> getServiceActivity();
+
+    /**
+     * Returns the time spent realizing services in the "collapsed stack" text format read by flame graph tools. Each
+     * line is a stack of realization steps (outermost first, separated by semicolons) followed by a space and the
+     * time, in microseconds, spent in the innermost step itself. Returns an empty string unless {@linkplain
+     * org.apache.tapestry5.ioc.IOCConstants#SERVICE_PROFILING_ENABLED profiling is enabled}.
+     *
+     * @see ServiceActivity#getRealizationTime()
+     * @since 5.4
+     */
+    String getRealizationProfile();
 }
@@ -0,0 +1,242 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal;
+
+import org.apache.tapestry5.ioc.Invokable;
+import org.easymock.EasyMock;
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+public class OperationTrackerImplTest extends IOCInternalTestCase
+{
+    /**
+     * Fails the test if formatted, via toString(), as part of an operation description.
+     */
+    private static final Object UNFORMATTABLE = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            throw new AssertionError("Operation description should not have been formatted.");
+        }
+    };
+
+    @Test
+    public void description_not_formatted_on_success()
+    {
+        Logger logger = mockLogger();
+
+        expect(logger.isDebugEnabled()).andReturn(false).times(2);
+
+        replay();
+
+        final OperationTrackerImpl tracker = new OperationTrackerImpl(logger);
+
+        String result = tracker.invoke(new Invokable<String>()
+        {
+            public String invoke()
+            {
+                tracker.run(new Runnable()
+                {
+                    public void run()
+                    {
+                    }
+                }, "Inner %s", UNFORMATTABLE);
+
+                return "done";
+            }
+        }, "Outer %s", UNFORMATTABLE);
+
+        assertEquals(result, "done");
+        assertTrue(tracker.isEmpty());
+
+        verify();
+    }
+
+    @Test
+    public void trace_formatted_on_failure()
+    {
+        Logger logger = mockLogger();
+        final RuntimeException failure = new RuntimeException("Inner failure.");
+
+        expect(logger.isDebugEnabled()).andReturn(false).times(2);
+
+        logger.error("Inner failure.");
+        logger.error("Operations trace:");
+        logger.error("[ 1] Outer operation");
+        logger.error("[ 2] Inner #2 of 3");
+
+        replay();
+
+        final OperationTrackerImpl tracker = new OperationTrackerImpl(logger);
+
+        try
+        {
+            tracker.run("Outer operation", new Runnable()
+            {
+                public void run()
+                {
+                    tracker.run(new Runnable()
+                    {
+                        public void run()
+                        {
+                            throw failure;
+                        }
+                    }, "Inner #%d of %d", 2, 3);
+                }
+            });
+
+            unreachable();
+        } catch (OperationException ex)
+        {
+            assertSame(ex.getCause(), failure);
+            assertEquals(ex.getTrace(), new String[]{"Outer operation", "Inner #2 of 3"});
+        }
+
+        assertTrue(tracker.isEmpty());
+
+        verify();
+    }
+
+    @Test
+    public void frames_are_emptied_and_reused()
+    {
+        Logger logger = mockLogger();
+
+        expect(logger.isDebugEnabled()).andReturn(false).anyTimes();
+
+        replay();
+
+        Object[] frames = new Object[2];
+
+        final OperationTrackerImpl tracker = new OperationTrackerImpl(logger, frames);
+
+        tracker.run(new Runnable()
+        {
+            public void run()
+            {
+                tracker.run("Nested operation", new Runnable()
+                {
+                    public void run()
+                    {
+                    }
+                });
+            }
+        }, "Operation %s", "outer");
+
+        Object[] expanded = tracker.getFrames();
+
+        assertNotSame(expanded, frames);
+
+        for (Object frame : expanded)
+        {
+            assertNull(frame);
+        }
+
+        assertSame(new OperationTrackerImpl(logger, expanded).getFrames(), expanded);
+
+        verify();
+    }
+
+    @Test
+    public void per_thread_tracker_reuses_frames()
+    {
+        Logger logger = mockLogger();
+
+        expect(logger.isDebugEnabled()).andReturn(false).anyTimes();
+
+        replay();
+
+        final PerThreadOperationTracker tracker = new PerThreadOperationTracker(logger);
+
+        final Object[][] frames = new Object[2][];
+
+        for (int i = 0; i < 2; i++)
+        {
+            final int index = i;
+
+            tracker.run(new Runnable()
+            {
+                public void run()
+                {
+                    frames[index] = ((OperationTrackerImpl) tracker.get()).getFrames();
+                }
+            }, "Operation #%d", i);
+        }
+
+        assertSame(frames[1], frames[0]);
+
+        verify();
+    }
+
+    @Test
+    public void failure_to_format_description_does_not_replace_exception()
+    {
+        Logger logger = mockLogger();
+        final RuntimeException failure = new RuntimeException("Operation failure.");
+
+        final Object unprintable = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                throw new IllegalStateException("Not printable.");
+            }
+        };
+
+        expect(logger.isDebugEnabled()).andReturn(false).times(2);
+
+        logger.error("Operation failure.");
+        logger.error("Operations trace:");
+        logger.error("[ 1] Outer operation for 'x'");
+        logger.error(EasyMock.startsWith("[ 2] Inner %s and %d ["));
+
+        replay();
+
+        final OperationTrackerImpl tracker = new OperationTrackerImpl(logger);
+
+        try
+        {
+            tracker.run(new Runnable()
+            {
+                public void run()
+                {
+                    // The format does not match the arguments.
+
+                    tracker.run(new Runnable()
+                    {
+                        public void run()
+                        {
+                            throw failure;
+                        }
+                    }, "Inner %s and %d", unprintable, "not a number");
+                }
+            }, "Outer operation for '%s'", "x");
+
+            unreachable();
+        } catch (OperationException ex)
+        {
+            assertSame(ex.getCause(), failure);
+
+            String[] trace = ex.getTrace();
+
+            assertEquals(trace[0], "Outer operation for 'x'");
+            assertTrue(trace[1].startsWith("Inner %s and %d ["), trace[1]);
+            assertTrue(trace[1].endsWith(", not a number]"), trace[1]);
+        }
+
+        verify();
+    }
+}
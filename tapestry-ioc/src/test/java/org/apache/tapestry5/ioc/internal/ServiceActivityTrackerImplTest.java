@@ -0,0 +1,139 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal;
+
+import org.apache.tapestry5.ioc.ObjectCreator;
+import org.apache.tapestry5.ioc.ScopeConstants;
+import org.apache.tapestry5.ioc.def.ServiceDef;
+import org.apache.tapestry5.ioc.services.ServiceActivity;
+import org.apache.tapestry5.ioc.services.Status;
+import org.testng.annotations.Test;
+
+public class ServiceActivityTrackerImplTest extends IOCInternalTestCase
+{
+    private ServiceDef serviceDef(String serviceId)
+    {
+        ServiceDef def = mockServiceDef();
+
+        expect(def.getServiceId()).andReturn(serviceId).anyTimes();
+        expect(def.getServiceScope()).andReturn(ScopeConstants.DEFAULT).anyTimes();
+
+        return def;
+    }
+
+    private static ObjectCreator<Object> sleeper(final long millis, final Runnable nested)
+    {
+        return new ObjectCreator<Object>()
+        {
+            public Object createObject()
+            {
+                if (nested != null)
+                    nested.run();
+
+                try
+                {
+                    Thread.sleep(millis);
+                } catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+
+                return "created";
+            }
+        };
+    }
+
+    private static ServiceActivity find(ServiceActivityTrackerImpl tracker, String serviceId)
+    {
+        for (ServiceActivity activity : tracker.getServiceActivity())
+        {
+            if (activity.getServiceId().equals(serviceId))
+                return activity;
+        }
+
+        throw new IllegalArgumentException(serviceId);
+    }
+
+    @Test
+    public void creator_unchanged_when_profiling_disabled()
+    {
+        ObjectCreator creator = mockObjectCreator();
+        Runnable runnable = mockRunnable();
+
+        replay();
+
+        ServiceActivityTrackerImpl tracker = new ServiceActivityTrackerImpl(null, false);
+
+        assertSame(tracker.profile("Foo", "construct", creator), creator);
+        assertSame(tracker.profile("Foo", "Invoking contribution", runnable), runnable);
+        assertEquals(tracker.getRealizationProfile(), "");
+
+        verify();
+    }
+
+    @Test
+    public void nested_realizations_are_profiled()
+    {
+        ServiceDef outer = serviceDef("Outer");
+        ServiceDef inner = serviceDef("Inner");
+
+        replay();
+
+        final ServiceActivityTrackerImpl tracker = new ServiceActivityTrackerImpl(null, true);
+
+        tracker.define(outer, Status.DEFINED);
+        tracker.define(inner, Status.DEFINED);
+
+        // Outer's constructor realizes Inner.
+
+        Runnable realizeInner = new Runnable()
+        {
+            public void run()
+            {
+                tracker.profile("Inner", null, tracker.profile("Inner", "construct", sleeper(20, null))).createObject();
+            }
+        };
+
+        ObjectCreator<Object> realizeOuter = tracker.profile("Outer", null,
+                tracker.profile("Outer", "construct", sleeper(10, realizeInner)));
+
+        assertEquals(realizeOuter.createObject(), "created");
+
+        ServiceActivity outerActivity = find(tracker, "Outer");
+        ServiceActivity innerActivity = find(tracker, "Inner");
+
+        assertTrue(outerActivity.getRealizationTime() >= 30 * 1000000L);
+        assertTrue(outerActivity.getNestedRealizationTime() >= 20 * 1000000L);
+        assertEquals(outerActivity.getNestedRealizationTime(), innerActivity.getRealizationTime());
+        assertEquals(innerActivity.getNestedRealizationTime(), 0L);
+
+        String[] lines = tracker.getRealizationProfile().split("\n");
+
+        assertEquals(lines.length, 4);
+
+        // Sorted by stack.
+
+        assertTrue(lines[0].matches("Outer \\d+"));
+        assertTrue(lines[1].matches("Outer;Outer construct \\d+"));
+        assertTrue(lines[2].matches("Outer;Outer construct;Inner \\d+"));
+        assertTrue(lines[3].matches("Outer;Outer construct;Inner;Inner construct \\d+"));
+
+        long outerConstructSelf = Long.parseLong(lines[1].substring(lines[1].lastIndexOf(' ') + 1));
+
+        assertTrue(outerConstructSelf >= 10 * 1000L, lines[1]);
+
+        verify();
+    }
+}
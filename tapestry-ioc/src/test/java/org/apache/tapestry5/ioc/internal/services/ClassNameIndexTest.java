@@ -0,0 +1,100 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.test.TestBase;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+public class ClassNameIndexTest extends TestBase
+{
+    @Test
+    public void write_and_read() throws Exception
+    {
+        ClassNameIndex index = new ClassNameIndex();
+
+        index.add("com.example.pages.Login");
+        index.add("com.example.pages.Index");
+        index.add("com.example.pages.admin.Users");
+        index.add("com.example.components.Layout");
+        index.add("com.examples.Other");
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        index.write(bos);
+
+        ClassNameIndex read = ClassNameIndex.read(new ByteArrayInputStream(bos.toByteArray()));
+
+        List<String> names = CollectionFactory.newList();
+
+        read.addClassNames("com.example.pages", names);
+
+        assertListsEquals(names, "com.example.pages.Index", "com.example.pages.Login",
+                "com.example.pages.admin.Users");
+
+        names.clear();
+
+        // A package whose name merely starts with the same characters is not a sub-package.
+
+        read.addClassNames("com.example", names);
+
+        assertListsEquals(names, "com.example.components.Layout", "com.example.pages.Index",
+                "com.example.pages.Login", "com.example.pages.admin.Users");
+
+        names.clear();
+
+        read.addClassNames("com.missing", names);
+
+        assertTrue(names.isEmpty());
+    }
+
+    @Test
+    public void root_package_and_coverage()
+    {
+        ClassNameIndex index = new ClassNameIndex();
+
+        assertEquals(index.getRootPackage(), "");
+
+        index.add("com.example.pages.Login");
+        index.add("com.example.pages.admin.Users");
+
+        assertEquals(index.getRootPackage(), "com.example.pages");
+
+        index.add("com.example.components.Layout");
+
+        assertEquals(index.getRootPackage(), "com.example");
+
+        assertTrue(index.covers("com.example"));
+        assertTrue(index.covers("com.example.pages"));
+        assertTrue(index.covers("com.example.pages.admin"));
+
+        assertFalse(index.covers("com.example.mixins"));
+        assertFalse(index.covers("com.examples"));
+        assertFalse(index.covers("com.example.pages.adm"));
+
+        index.add("com.examples.Other");
+
+        assertEquals(index.getRootPackage(), "com");
+
+        index.add("org.example.Other");
+
+        assertEquals(index.getRootPackage(), "");
+    }
+}
@@ -1,4 +1,4 @@
-// Copyright 2007, 2008 The Apache Software Foundation
+// Copyright 2007, 2008, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -21,8 +21,14 @@ import org.apache.tapestry5.ioc.services.ClasspathURLConverter;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Collection;
 import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 /**
  * Tricky to test, since the code is literally hunting around inside its own brain. There's a lot of room for unintended
@@ -98,6 +104,120 @@ public class ClassNameLocatorImplTest extends Assert
         assertNotInList(names, "org.apache.tapestry5.ioc", "services.TapestryIOCModule$1");
     }
 
+    /**
+     * Creates a JAR containing the entries (an entry ending with '/' is a directory) and the indexes.
+     *
+     * @param indexes
+     *         pairs of index root package and index content
+     */
+    private static File createJar(String[] entries, String... indexes) throws Exception
+    {
+        File jarFile = File.createTempFile("indexed", ".jar");
+        jarFile.deleteOnExit();
+
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+
+        for (String entry : entries)
+        {
+            jar.putNextEntry(new JarEntry(entry));
+        }
+
+        for (int i = 0; i < indexes.length; i += 2)
+        {
+            jar.putNextEntry(new JarEntry(ClassNameIndex.toResourcePath(indexes[i])));
+            jar.write(indexes[i + 1].getBytes("UTF-8"));
+        }
+
+        jar.close();
+
+        return jarFile;
+    }
+
+    private ClassNameLocator newLocator(File jarFile) throws Exception
+    {
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, null));
+
+        return new ClassNameLocatorImpl(converter);
+    }
+
+    /**
+     * The JAR's index lists classes that the JAR doesn't actually contain (and omits the one it does), to show that the
+     * JAR isn't scanned.
+     */
+    @Test
+    public void classes_in_jar_file_with_index() throws Exception
+    {
+        File jarFile = createJar(new String[]{"com/example/", "com/example/pages/", "com/example/pages/Unindexed.class"},
+                "com",
+                "# Comment\n" +
+                        "com.example.pages Index Login\n" +
+                        "com.example.components Layout\n" +
+                        "com.examples Other\n");
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        try
+        {
+            ClassNameLocator locator = newLocator(jarFile);
+
+            Collection<String> names = locator.locateClassNames("com.example");
+
+            assertEquals(CollectionFactory.newSet(names), CollectionFactory.newSet("com.example.pages.Index",
+                    "com.example.pages.Login", "com.example.components.Layout"));
+
+            // The index is kept.
+
+            assertEquals(locator.locateClassNames("com.example.pages").size(), 2);
+        } finally
+        {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * A JAR merged from several libraries: only some packages are indexed, and the indexes of libraries with different
+     * root packages are both present.
+     */
+    @Test
+    public void merged_jar_file_scanned_for_packages_not_in_index() throws Exception
+    {
+        File jarFile = createJar(new String[]{
+                "com/example/", "com/example/pages/", "com/example/pages/Index.class",
+                "com/example/admin/", "com/example/admin/pages/", "com/example/admin/pages/Users.class",
+                "org/other/", "org/other/pages/", "org/other/pages/Other.class",
+                "net/third/", "net/third/pages/", "net/third/pages/Third.class"},
+                "com.example", "com.example.pages Index\n",
+                "net.third", "net.third.pages Third\n");
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        try
+        {
+            ClassNameLocator locator = newLocator(jarFile);
+
+            // Indexed.
+
+            assertEquals(CollectionFactory.newSet(locator.locateClassNames("com.example.pages")),
+                    CollectionFactory.newSet("com.example.pages.Index"));
+
+            assertEquals(CollectionFactory.newSet(locator.locateClassNames("net.third.pages")),
+                    CollectionFactory.newSet("net.third.pages.Third"));
+
+            // The index has no entry for the package (though its root package is a parent); scanned.
+
+            assertEquals(CollectionFactory.newSet(locator.locateClassNames("com.example.admin.pages")),
+                    CollectionFactory.newSet("com.example.admin.pages.Users"));
+
+            // Not indexed at all; scanned.
+
+            assertEquals(CollectionFactory.newSet(locator.locateClassNames("org.other")),
+                    CollectionFactory.newSet("org.other.pages.Other"));
+        } finally
+        {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
     void assertInList(Collection<String> names, String packageName, String... classNames)
     {
         Set<String> classNameSet = CollectionFactory.newSet(names);
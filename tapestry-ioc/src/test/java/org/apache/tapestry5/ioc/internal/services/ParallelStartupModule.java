@@ -0,0 +1,91 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.OrderedConfiguration;
+import org.apache.tapestry5.ioc.ServiceBinder;
+import org.apache.tapestry5.ioc.StringHolder;
+import org.apache.tapestry5.ioc.StringHolderImpl;
+import org.apache.tapestry5.ioc.annotations.ParallelStartup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Each pair of services, and of contributions, can only complete when both are started at the same time.
+ */
+public class ParallelStartupModule
+{
+    public static class Rendezvous
+    {
+        public static CountDownLatch realizing, running;
+
+        public static final AtomicInteger contributionsRun = new AtomicInteger();
+
+        public static void reset()
+        {
+            realizing = new CountDownLatch(2);
+            running = new CountDownLatch(2);
+
+            contributionsRun.set(0);
+        }
+
+        public static boolean await(CountDownLatch latch)
+        {
+            latch.countDown();
+
+            try
+            {
+                return latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex)
+            {
+                return false;
+            }
+        }
+    }
+
+    @ParallelStartup
+    public static class RendezvousStringHolder extends StringHolderImpl
+    {
+        public RendezvousStringHolder()
+        {
+            if (!Rendezvous.await(Rendezvous.realizing))
+                throw new IllegalStateException("Services were not realized in parallel.");
+        }
+    }
+
+    @ParallelStartup
+    public static class RendezvousRunnable implements Runnable
+    {
+        public void run()
+        {
+            if (Rendezvous.await(Rendezvous.running))
+                Rendezvous.contributionsRun.incrementAndGet();
+        }
+    }
+
+    public static void bind(ServiceBinder binder)
+    {
+        binder.bind(StringHolder.class, RendezvousStringHolder.class).withId("First").eagerLoad();
+        binder.bind(StringHolder.class, RendezvousStringHolder.class).withId("Second").eagerLoad();
+    }
+
+    public static void contributeRegistryStartup(OrderedConfiguration<Runnable> configuration)
+    {
+        configuration.add("First", new RendezvousRunnable());
+        configuration.add("Second", new RendezvousRunnable());
+    }
+}
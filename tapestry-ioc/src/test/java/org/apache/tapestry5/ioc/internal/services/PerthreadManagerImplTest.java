@@ -1,4 +1,4 @@
-// Copyright 2006, 2007, 2008, 2010, 2011 The Apache Software Foundation
+// Copyright 2006, 2007, 2008, 2010, 2011, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -15,12 +15,17 @@
 package org.apache.tapestry5.ioc.internal.services;
 
 import org.apache.tapestry5.ioc.Invokable;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
 import org.apache.tapestry5.ioc.services.PerThreadValue;
 import org.apache.tapestry5.ioc.services.ThreadCleanupListener;
 import org.apache.tapestry5.ioc.test.IOCTestCase;
 import org.slf4j.Logger;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 public class PerthreadManagerImplTest extends IOCTestCase
 {
     @Test
@@ -123,12 +128,11 @@ public class PerthreadManagerImplTest extends IOCTestCase
     @Test
     public void per_thread_value()
     {
-        Object key = new Object();
         Object value = "Tapestry";
 
         PerthreadManagerImpl m = new PerthreadManagerImpl(null);
 
-        PerThreadValue<Object> v = m.createValue(key);
+        PerThreadValue<Object> v = m.createValue();
 
         assertFalse(v.exists());
         assertNull(v.get());
@@ -144,7 +148,7 @@ public class PerthreadManagerImplTest extends IOCTestCase
     {
         PerthreadManagerImpl m = new PerthreadManagerImpl(null);
 
-        PerThreadValue<Object> v = m.createValue(new Object());
+        PerThreadValue<Object> v = m.createValue();
 
         Object def = new Object();
 
@@ -166,7 +170,7 @@ public class PerthreadManagerImplTest extends IOCTestCase
     {
         PerthreadManagerImpl m = new PerthreadManagerImpl(null);
 
-        PerThreadValue<Object> v = m.createValue(new Object());
+        PerThreadValue<Object> v = m.createValue();
 
         v.set(null);
 
@@ -215,4 +219,172 @@ public class PerthreadManagerImplTest extends IOCTestCase
         assertNull(v.get());
 
     }
+
+    @Test
+    public void many_values()
+    {
+        PerthreadManagerImpl m = new PerthreadManagerImpl(null);
+
+        List<PerThreadValue<Integer>> values = CollectionFactory.newList();
+
+        for (int i = 0; i < 100; i++)
+        {
+            PerThreadValue<Integer> v = m.createValue();
+
+            v.set(i);
+
+            values.add(v);
+        }
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(values.get(i).get(), new Integer(i));
+        }
+
+        m.cleanup();
+
+        for (PerThreadValue<Integer> v : values)
+        {
+            assertFalse(v.exists());
+        }
+    }
+
+    @Test
+    public void values_and_listeners_are_reset_by_cleanup()
+    {
+        Logger logger = mockLogger();
+        ThreadCleanupListener listener = mockThreadCleanupListener();
+
+        listener.threadDidCleanup();
+        listener.threadDidCleanup();
+
+        replay();
+
+        PerthreadManagerImpl m = new PerthreadManagerImpl(logger);
+
+        PerThreadValue<String> v = m.createValue();
+
+        for (int i = 0; i < 2; i++)
+        {
+            assertNull(v.get());
+
+            v.set("request " + i);
+            m.addThreadCleanupListener(listener);
+
+            assertEquals(v.get(), "request " + i);
+
+            m.cleanup();
+        }
+
+        verify();
+    }
+
+    @Test
+    public void values_are_per_thread() throws Exception
+    {
+        final PerthreadManagerImpl m = new PerthreadManagerImpl(null);
+
+        final PerThreadValue<String> v = m.createValue();
+
+        v.set("main");
+
+        final List<String> observed = CollectionFactory.newList();
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                observed.add(v.get());
+
+                v.set("other");
+
+                observed.add(v.get());
+            }
+        };
+
+        thread.start();
+        thread.join();
+
+        assertEquals(observed, Arrays.asList(null, "other"));
+        assertEquals(v.get(), "main");
+    }
+
+    @Test
+    public void cleanup_cost_does_not_grow_as_values_are_created()
+    {
+        PerthreadManagerImpl m = new PerthreadManagerImpl(null);
+
+        List<PerThreadValue<String>> values = CollectionFactory.newList();
+
+        for (int i = 0; i < 10000; i++)
+        {
+            values.add(m.<String>createValue());
+        }
+
+        m.cleanup();
+
+        Map<Object, Object> map = m.getPerthreadMap();
+
+        // Just the (empty) lists of cleanup listeners and of values set.
+
+        assertEquals(map.size(), 2);
+
+        for (int i = 0; i < 3; i++)
+        {
+            // Only the values actually set in the request are stored, and so need to be removed.
+
+            values.get(i).set("request " + i);
+            values.get(i).set("again");
+
+            assertEquals(map.size(), 3);
+
+            m.cleanup();
+
+            assertFalse(values.get(i).exists());
+
+            // The same (emptied) map is used for the next request.
+
+            assertSame(m.getPerthreadMap(), map);
+            assertEquals(map.size(), 2);
+        }
+    }
+
+    @Test
+    public void map_is_kept_after_a_large_request()
+    {
+        PerthreadManagerImpl m = new PerthreadManagerImpl(null);
+
+        Map<Object, Object> map = m.getPerthreadMap();
+
+        // Many more values than a complex page render sets, but within the default limit.
+
+        for (int i = 0; i < 5000; i++)
+        {
+            m.createValue().set(i);
+        }
+
+        m.cleanup();
+
+        assertSame(m.getPerthreadMap(), map);
+        assertEquals(map.size(), 2);
+    }
+
+    @Test
+    public void large_map_is_discarded_at_cleanup()
+    {
+        PerthreadManagerImpl m = new PerthreadManagerImpl(null, 100);
+
+        Map<Object, Object> map = m.getPerthreadMap();
+
+        for (int i = 0; i <= 100; i++)
+        {
+            m.createValue().set(i);
+        }
+
+        m.cleanup();
+
+        assertNotSame(m.getPerthreadMap(), map);
+        assertTrue(m.getPerthreadMap().isEmpty());
+    }
 }
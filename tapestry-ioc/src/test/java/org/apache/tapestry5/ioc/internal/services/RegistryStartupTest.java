@@ -1,4 +1,4 @@
-// Copyright 2007, 2008 The Apache Software Foundation
+// Copyright 2007, 2008, 2012 The Apache Software Foundation
 //
 // Licensed under the Apache License, Version 2.0 (the "License");
 // you may not use this file except in compliance with the License.
@@ -47,7 +47,7 @@ public class RegistryStartupTest extends IOCTestCase
 
         replay();
 
-        Runnable startup = new RegistryStartup(logger, configuration);
+        Runnable startup = new RegistryStartup(logger, new NonParallelExecutor(), configuration);
 
         startup.run();
 
@@ -82,7 +82,7 @@ public class RegistryStartupTest extends IOCTestCase
 
         replay();
 
-        Runnable startup = new RegistryStartup(logger, configuration);
+        Runnable startup = new RegistryStartup(logger, new NonParallelExecutor(), configuration);
 
         startup.run();
 
@@ -97,7 +97,7 @@ public class RegistryStartupTest extends IOCTestCase
 
         replay();
 
-        Runnable startup = new RegistryStartup(logger, configuration);
+        Runnable startup = new RegistryStartup(logger, new NonParallelExecutor(), configuration);
 
         startup.run();
 
@@ -132,4 +132,20 @@ public class RegistryStartupTest extends IOCTestCase
 
         r.shutdown();
     }
+
+    @Test
+    public void parallel_startup()
+    {
+        ParallelStartupModule.Rendezvous.reset();
+
+        Registry r = buildRegistry(ParallelStartupModule.class);
+
+        // Each eager loaded service blocks until the other is being realized, and would fail startup.
+
+        r.performRegistryStartup();
+
+        assertEquals(ParallelStartupModule.Rendezvous.contributionsRun.get(), 2);
+
+        r.shutdown();
+    }
 }
@@ -0,0 +1,125 @@
+// Copyright 2012 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.apache.tapestry5.ioc.internal.services;
+
+import org.apache.tapestry5.ioc.internal.IOCInternalTestCase;
+import org.apache.tapestry5.ioc.internal.util.CollectionFactory;
+import org.apache.tapestry5.ioc.services.ParallelExecutor;
+import org.easymock.EasyMock;
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class StartupTasksTest extends IOCInternalTestCase
+{
+    private static Runnable record(final List<String> log, final String name)
+    {
+        return new Runnable()
+        {
+            public void run()
+            {
+                synchronized (log)
+                {
+                    log.add(name);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void sequential_tasks_run_in_order_without_timeline()
+    {
+        Logger logger = mockLogger();
+        List<String> log = CollectionFactory.newList();
+
+        replay();
+
+        StartupTasks tasks = new StartupTasks(logger, getService(ParallelExecutor.class), "Test");
+
+        tasks.add("A", false, record(log, "A"));
+        tasks.add("B", true, record(log, "B"));
+        tasks.add("C", false, record(log, "C"));
+
+        tasks.run();
+
+        assertListsEquals(log, "A", "B", "C");
+
+        verify();
+    }
+
+    @Test
+    public void parallel_tasks_are_bounded_by_sequential_tasks()
+    {
+        Logger logger = mockLogger();
+        final List<String> log = CollectionFactory.newList();
+
+        expect(logger.isInfoEnabled()).andReturn(true);
+        logger.info(EasyMock.and(EasyMock.startsWith("Test timeline"), EasyMock.contains("Task B")));
+
+        replay();
+
+        StartupTasks tasks = new StartupTasks(logger, getService(ParallelExecutor.class), "Test");
+
+        tasks.add("Task A", false, record(log, "A"));
+        tasks.add("Task B", true, record(log, "B"));
+        tasks.add("Task C", true, record(log, "C"));
+        tasks.add("Task D", false, record(log, "D"));
+
+        tasks.run();
+
+        assertEquals(log.size(), 4);
+        assertEquals(log.get(0), "A");
+        assertEquals(CollectionFactory.newSet(log.subList(1, 3)), CollectionFactory.newSet("B", "C"));
+        assertEquals(log.get(3), "D");
+
+        verify();
+    }
+
+    @Test
+    public void parallel_failure_is_rethrown_once_parallel_tasks_complete()
+    {
+        Logger logger = mockLogger();
+        final List<String> log = CollectionFactory.newList();
+        final RuntimeException failure = new RuntimeException("Parallel failure.");
+
+        replay();
+
+        StartupTasks tasks = new StartupTasks(logger, getService(ParallelExecutor.class), "Test");
+
+        tasks.add("A", true, new Runnable()
+        {
+            public void run()
+            {
+                throw failure;
+            }
+        });
+        tasks.add("B", true, record(log, "B"));
+        tasks.add("C", false, record(log, "C"));
+
+        try
+        {
+            tasks.run();
+            unreachable();
+        } catch (RuntimeException ex)
+        {
+            assertSame(ex, failure);
+        }
+
+        assertListsEquals(log, "B");
+
+        verify();
+    }
+}
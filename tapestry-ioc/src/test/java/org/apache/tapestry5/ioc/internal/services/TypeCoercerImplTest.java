@@ -31,6 +31,7 @@ import java.io.File;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
 
 public class TypeCoercerImplTest extends IOCInternalTestCase
 {
@@ -60,6 +61,69 @@ public class TypeCoercerImplTest extends IOCInternalTestCase
         assertEquals(coercer.coerce("2.27", Double.class), new Double(2.27));
     }
 
+    @Test
+    public void coercion_after_cache_cleared()
+    {
+        assertEquals(coercer.coerce("42", Integer.class), new Integer(42));
+
+        coercer.clearCache();
+
+        assertEquals(coercer.coerce("97", Integer.class), new Integer(97));
+    }
+
+    @Test
+    public void concurrent_coercions() throws Exception
+    {
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        List<Thread> threads = CollectionFactory.newList();
+
+        for (int i = 0; i < threadCount; i++)
+        {
+            final int index = i;
+
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < 1000; j++)
+                        {
+                            assertEquals(coercer.coerce(String.valueOf(j), Long.class), new Long(j));
+                            assertEquals(coercer.coerce(j, String.class), String.valueOf(j));
+                            assertEquals(coercer.coerce(j % 2 == 0 ? "true" : "false", Boolean.class),
+                                    Boolean.valueOf(j % 2 == 0));
+
+                            if (index == 0 && j % 100 == 0)
+                                coercer.clearCache();
+                        }
+                    } catch (Throwable t)
+                    {
+                        failures.add(t);
+                    }
+                }
+            };
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(failures, Collections.emptyList());
+    }
+
     @Test
     public void primitive_type_as_target()
     {
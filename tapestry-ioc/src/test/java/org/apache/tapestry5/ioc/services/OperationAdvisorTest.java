@@ -62,6 +62,18 @@ public class OperationAdvisorTest extends IOCTestCase
 
                 return operation.invoke();
             }
+
+            @Override
+            public void run(Runnable operation, String format, Object... arguments)
+            {
+                run(String.format(format, arguments), operation);
+            }
+
+            @Override
+            public <T> T invoke(Invokable<T> operation, String format, Object... arguments)
+            {
+                return invoke(String.format(format, arguments), operation);
+            }
         };
 
         registry = new RegistryImpl(modules, plasticProxyFactory, loggerSource, simpleOperationTracker);